@@ -114,6 +114,21 @@ public interface AdapterGovernor extends BluetoothGovernor {
      */
     void setSignalPropagationExponent(double exponent);
 
+    /**
+     * Returns the fraction of the scan period the adapter is allowed to scan for when scan coordination
+     * is enabled in the bluetooth manager.
+     * @return scan duty cycle, 0 if the default duty cycle of the bluetooth manager is used
+     */
+    double getScanDutyCycle();
+
+    /**
+     * Sets the fraction of the scan period the adapter is allowed to scan for when scan coordination is enabled
+     * in the bluetooth manager. Scan windows of different adapters are staggered so that co-located radios
+     * do not scan at the same time. A duty cycle of 1 lets the adapter scan all the time.
+     * @param dutyCycle scan duty cycle from 0 to 1, 0 to use the default duty cycle of the bluetooth manager
+     */
+    void setScanDutyCycle(double dutyCycle);
+
     /**
      * Returns a list of discovered Bluetooth devices by the adapter.
      * @return a list of discovered Bluetooth devices by the adapter
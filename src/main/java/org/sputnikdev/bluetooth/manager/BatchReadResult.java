@@ -0,0 +1,91 @@
+package org.sputnikdev.bluetooth.manager;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.URL;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A class to capture results of a batched read of characteristics (see {@link DeviceGovernor#readAll}).
+ * Each requested characteristic either has a value or an error.
+ *
+ * @author Vlad Kolotov
+ */
+public class BatchReadResult {
+
+    private final Map<URL, byte[]> values;
+    private final Map<URL, Exception> errors;
+
+    /**
+     * Create a new object.
+     * @param values characteristic values
+     * @param errors characteristic errors
+     */
+    public BatchReadResult(Map<URL, byte[]> values, Map<URL, Exception> errors) {
+        this.values = Collections.unmodifiableMap(values);
+        this.errors = Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * Returns values of characteristics that have been read successfully.
+     * @return characteristic values
+     */
+    public Map<URL, byte[]> getValues() {
+        return values;
+    }
+
+    /**
+     * Returns errors of characteristics that could not be read.
+     * @return characteristic errors
+     */
+    public Map<URL, Exception> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns value of a characteristic.
+     * @param characteristic characteristic URL
+     * @return characteristic value or null if the characteristic could not be read
+     */
+    public byte[] getValue(URL characteristic) {
+        return values.get(characteristic.copyWithProtocol(null));
+    }
+
+    /**
+     * Returns an error of a characteristic.
+     * @param characteristic characteristic URL
+     * @return error or null if the characteristic has been read successfully
+     */
+    public Exception getError(URL characteristic) {
+        return errors.get(characteristic.copyWithProtocol(null));
+    }
+
+    /**
+     * Checks whether all characteristics have been read successfully.
+     * @return true if there are no errors
+     */
+    public boolean isSuccessful() {
+        return errors.isEmpty();
+    }
+
+}
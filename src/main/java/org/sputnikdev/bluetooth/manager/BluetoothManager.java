@@ -202,12 +202,46 @@ public interface BluetoothManager {
      */
     void addManagerListener(ManagerListener listener);
 
+    /**
+     * Adds a new bluetooth manager listener that receives events only for the governor with the provided URL.
+     * The protocol part of the URL is ignored. If the adapter address of the URL is set to
+     * {@link CombinedGovernor#COMBINED_ADDRESS}, then the listener receives events for the governors with
+     * the same URL on any adapter. Events are routed to the listener directly (without checking all registered
+     * listeners), which makes it a preferable option when a listener is interested in a single bluetooth object.
+     * @param listener a manager listener
+     * @param url a URL of a bluetooth object (adapter, device, characteristic)
+     */
+    void addManagerListener(ManagerListener listener, URL url);
+
     /**
      * Removes an existing bluetooth manager listener.
      * @param listener an existing bluetooth manager listener
      */
     void removeManagerListener(ManagerListener listener);
 
+    /**
+     * Removes an existing bluetooth manager listener that was registered for the provided URL
+     * (see {@link #addManagerListener(ManagerListener, URL)}).
+     * @param listener an existing bluetooth manager listener
+     * @param url a URL the listener was registered for
+     */
+    void removeManagerListener(ManagerListener listener, URL url);
+
+    /**
+     * Adds a new RSSI snapshot listener. Once per snapshot tick (see
+     * {@link org.sputnikdev.bluetooth.manager.impl.BluetoothManagerBuilder#withRssiSnapshotRate(long)})
+     * the listener receives a single batch of the latest RSSI readings of all known devices.
+     * Snapshots are not published if the snapshot rate is not set.
+     * @param listener a new RSSI snapshot listener
+     */
+    void addRssiSnapshotListener(RssiSnapshotListener listener);
+
+    /**
+     * Removes an existing RSSI snapshot listener.
+     * @param listener an existing RSSI snapshot listener
+     */
+    void removeRssiSnapshotListener(RssiSnapshotListener listener);
+
     /**
      * Registers a new Bluetooth Object factory (transport).
      * @param transport a new Bluetooth Object factory
@@ -220,5 +254,22 @@ public interface BluetoothManager {
      */
     void unregisterFactory(BluetoothObjectFactory transport);
 
+    /**
+     * Returns statistics of calls into a transport (concurrent call budget, timeout and circuit breaker state).
+     * @param transport transport (protocol) name
+     * @return transport statistics or null if transport calls are not bounded (see {@link
+     *     org.sputnikdev.bluetooth.manager.impl.BluetoothManagerBuilder#withTransportCallLimits(int, long, long)})
+     */
+    TransportStatistics getTransportStatistics(String transport);
+
+    /**
+     * Registers a characteristic value decoder for a given characteristic UUID. Registered decoders are used
+     * by characteristic governors to deliver decoded values to {@link IntValueListener} and
+     * {@link FloatValueListener} listeners. An existing decoder (including default ones) gets replaced.
+     * @param characteristicUUID characteristic UUID (short 16/32 bit or full 128 bit form)
+     * @param decoder a value decoder
+     */
+    void registerValueDecoder(String characteristicUUID, ValueDecoder decoder);
+
 
 }
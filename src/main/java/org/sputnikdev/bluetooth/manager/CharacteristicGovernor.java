@@ -22,6 +22,9 @@ package org.sputnikdev.bluetooth.manager;
 
 import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Set;
 
 /**
@@ -79,6 +82,54 @@ public interface CharacteristicGovernor extends BluetoothGovernor {
      */
     byte[] read() throws NotReadyException;
 
+    /**
+     * Reads state from the characteristic unless the value cache holds a value (either read or notified)
+     * that is not older than the given age (see {@link #setMaxValueAge(long)}).
+     *
+     * @param maxAge maximum age (in milliseconds) of a cached value that can be returned
+     * @return characteristic state
+     * @throws NotReadyException if the bluetooth object is not ready
+     */
+    byte[] read(long maxAge) throws NotReadyException;
+
+    /**
+     * Enables the value cache of the characteristic. The cache is fed by both reads and notifications,
+     * {@link #read()} returns a cached value if it is not older than the given age.
+     * The cache is disabled by default.
+     *
+     * @param maxAge maximum age (in milliseconds) of a cached value, 0 to disable the cache
+     */
+    void setMaxValueAge(long maxAge);
+
+    /**
+     * Returns the maximum age of a cached value, see {@link #setMaxValueAge(long)}.
+     *
+     * @return maximum age in milliseconds, 0 if the cache is disabled
+     */
+    long getMaxValueAge();
+
+    /**
+     * Returns number of reads served from the value cache.
+     *
+     * @return number of cache hits
+     */
+    long getValueCacheHits();
+
+    /**
+     * Returns number of reads that went to the device as the value cache had no fresh value.
+     *
+     * @return number of cache misses
+     */
+    long getValueCacheMisses();
+
+    /**
+     * Returns number of reads that joined a read of the same characteristic which was already in progress
+     * (concurrent reads share a single round trip to the device).
+     *
+     * @return number of joined reads
+     */
+    long getJoinedReads();
+
     /**
      * Writes state to the characteristic.
      * @param data a new characteristic state
@@ -87,6 +138,35 @@ public interface CharacteristicGovernor extends BluetoothGovernor {
      */
     boolean write(byte[] data) throws NotReadyException;
 
+    /**
+     * Writes state to the characteristic with the given priority. GATT operations of a device are executed
+     * one by one, the priority allows urgent writes to jump ahead of other queued operations.
+     * @param data a new characteristic state
+     * @param priority operation priority
+     * @return true if the new state is written
+     * @throws NotReadyException if the bluetooth object is not ready
+     */
+    boolean write(byte[] data, GattOperationPriority priority) throws NotReadyException;
+
+    /**
+     * Streams data to the characteristic, e.g. a firmware image. The characteristic must support write without
+     * response ({@link CharacteristicAccessType#WRITE_WITHOUT_RESPONSE}). Data is split into packets of the maximum
+     * payload size and written back-to-back as fast as the link allows, failed packets are retransmitted.
+     * @param source data source
+     * @return streaming statistics
+     * @throws NotReadyException if the bluetooth object is not ready
+     * @throws IOException if the data source cannot be read
+     */
+    WriteStreamResult writeStream(InputStream source) throws NotReadyException, IOException;
+
+    /**
+     * Streams data to the characteristic, see {@link #writeStream(InputStream)}.
+     * @param source data source
+     * @return streaming statistics
+     * @throws NotReadyException if the bluetooth object is not ready
+     */
+    WriteStreamResult writeStream(ByteBuffer source) throws NotReadyException;
+
     /**
      * Register a new characteristic listener.
      * @param valueListener new characteristic listener
@@ -99,4 +179,32 @@ public interface CharacteristicGovernor extends BluetoothGovernor {
      */
     void removeValueListener(ValueListener valueListener);
 
+    /**
+     * Register a new characteristic listener that receives values decoded into an int.
+     * Values are decoded by a {@link ValueDecoder} registered for the characteristic UUID, if no decoder is
+     * registered, the listener is never notified.
+     * @param valueListener new characteristic listener
+     */
+    void addIntValueListener(IntValueListener valueListener);
+
+    /**
+     * Removes a previously registered int characteristic listener.
+     * @param valueListener a previously registered characteristic listener
+     */
+    void removeIntValueListener(IntValueListener valueListener);
+
+    /**
+     * Register a new characteristic listener that receives values decoded into a float.
+     * Values are decoded by a {@link ValueDecoder} registered for the characteristic UUID, if no decoder is
+     * registered, the listener is never notified.
+     * @param valueListener new characteristic listener
+     */
+    void addFloatValueListener(FloatValueListener valueListener);
+
+    /**
+     * Removes a previously registered float characteristic listener.
+     * @param valueListener a previously registered characteristic listener
+     */
+    void removeFloatValueListener(FloatValueListener valueListener);
+
 }
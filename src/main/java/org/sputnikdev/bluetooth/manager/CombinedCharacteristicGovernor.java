@@ -0,0 +1,61 @@
+package org.sputnikdev.bluetooth.manager;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A characteristic governor that combines characteristics of the same device discovered by different adapters.
+ * Read and write operations are routed to a characteristic of an adapter the device is connected to. When the device
+ * roams from one adapter to another, operations can be held for a bounded time until a new path comes up
+ * (see {@link #setFailoverTimeout(long)}).
+ *
+ * @author Vlad Kolotov
+ */
+public interface CombinedCharacteristicGovernor extends CharacteristicGovernor, CombinedGovernor {
+
+    /**
+     * Sets how long (in milliseconds) read and write operations wait for a new delegate (a characteristic of
+     * a particular adapter) when the current delegate is lost or not available yet. Operations that failed because
+     * the delegate was lost in the middle of the operation are retried through a new delegate within the same time.
+     * @param timeout failover timeout in milliseconds, 0 to fail immediately (default)
+     */
+    void setFailoverTimeout(long timeout);
+
+    /**
+     * Returns the failover timeout in milliseconds.
+     * @return failover timeout in milliseconds
+     */
+    long getFailoverTimeout();
+
+    /**
+     * Enables/disables routing of read operations to a delegate with the lowest observed read latency.
+     * Only makes difference when the device is connected to several adapters, write operations are always routed
+     * to the same delegate to preserve their order.
+     * @param latencyRouting true to route read operations to the fastest delegate
+     */
+    void setLatencyRouting(boolean latencyRouting);
+
+    /**
+     * Checks whether read operations are routed to a delegate with the lowest observed read latency.
+     * @return true if read operations are routed to the fastest delegate
+     */
+    boolean isLatencyRouting();
+
+}
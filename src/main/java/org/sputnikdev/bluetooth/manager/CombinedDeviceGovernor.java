@@ -32,10 +32,33 @@ public interface CombinedDeviceGovernor extends CombinedGovernor {
      */
     URL getPreferredAdapter();
 
+    /**
+     * Returns the RSSI margin (in dBm) used by the load balanced connection strategy
+     * (see {@link ConnectionStrategy#LOAD_BALANCED}).
+     * @return load balancing margin in dBm
+     */
+    int getLoadBalancingMargin();
+
+    /**
+     * Sets the RSSI margin (in dBm) used by the load balanced connection strategy. Only adapters that see
+     * the device with RSSI within the margin of the nearest adapter are considered as connection targets,
+     * the least loaded of them is chosen.
+     * @param margin load balancing margin in dBm, 10 by default
+     */
+    void setLoadBalancingMargin(int margin);
+
     /**
      * Returns the URL of an adapter the device is connected to. If the device is not connected, then the result is null.
      * @return URL of an adapter the device is connected to
      */
     URL getConnectedAdapter();
 
+    /**
+     * Returns the RSSI history of the device as it is seen through the given adapter
+     * (see {@link DeviceGovernor#setRssiHistorySize(int)}).
+     * @param adapter adapter URL
+     * @return RSSI history or null if the history is disabled or the device has not been seen through the adapter
+     */
+    RssiHistory getRssiHistory(URL adapter);
+
 }
@@ -3,6 +3,7 @@ package org.sputnikdev.bluetooth.manager;
 public enum ConnectionStrategy {
 
     NEAREST_ADAPTER,
-    PREFERRED_ADAPTER
+    PREFERRED_ADAPTER,
+    LOAD_BALANCED
 
 }
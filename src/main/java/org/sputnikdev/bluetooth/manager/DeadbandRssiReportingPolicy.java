@@ -0,0 +1,129 @@
+package org.sputnikdev.bluetooth.manager;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An RSSI reporting policy that reports only significant changes of RSSI. A new value is reported if:
+ * <ul>
+ *     <li>it differs from the last reported value by at least the deadband (in dBm) and the minimum interval
+ *     has elapsed since the last report, or</li>
+ *     <li>the maximum interval has elapsed since the last report (heartbeat), regardless of the value.</li>
+ * </ul>
+ *
+ * <p>Optionally the deadband can adapt to the observed signal noise. If the adaptive factor is greater
+ * than zero, then the effective deadband is the greater of the configured deadband and the standard
+ * deviation of the signal (estimated by exponential smoothing) multiplied by the factor. This makes noisy
+ * devices report less often, while changes of quiet signals are reported promptly.
+ *
+ * @author Vlad Kolotov
+ */
+public class DeadbandRssiReportingPolicy implements RssiReportingPolicy {
+
+    // smoothing factor for the signal mean and variance estimation
+    private static final double ALPHA = 0.1;
+
+    private final int deadband;
+    private final long minInterval;
+    private final long maxInterval;
+    private final double adaptiveFactor;
+
+    private boolean reported;
+    private short lastReported;
+    private long lastReportedTime;
+    private double mean;
+    private double variance;
+    private boolean initialized;
+
+    /**
+     * Creates a non-adaptive policy.
+     * @param deadband minimal change (in dBm) to be reported
+     * @param minInterval minimal interval between two reports in milliseconds
+     * @param maxInterval maximal interval between two reports in milliseconds, 0 to disable heartbeats
+     */
+    public DeadbandRssiReportingPolicy(int deadband, long minInterval, long maxInterval) {
+        this(deadband, minInterval, maxInterval, 0);
+    }
+
+    /**
+     * Creates a policy.
+     * @param deadband minimal change (in dBm) to be reported
+     * @param minInterval minimal interval between two reports in milliseconds
+     * @param maxInterval maximal interval between two reports in milliseconds, 0 to disable heartbeats
+     * @param adaptiveFactor a multiplier of the signal standard deviation, 0 to disable the adaptive deadband
+     */
+    public DeadbandRssiReportingPolicy(int deadband, long minInterval, long maxInterval, double adaptiveFactor) {
+        if (deadband < 0 || minInterval < 0 || maxInterval < 0 || adaptiveFactor < 0) {
+            throw new IllegalArgumentException("Reporting policy parameters must not be negative");
+        }
+        this.deadband = deadband;
+        this.minInterval = TimeUnit.MILLISECONDS.toNanos(minInterval);
+        this.maxInterval = TimeUnit.MILLISECONDS.toNanos(maxInterval);
+        this.adaptiveFactor = adaptiveFactor;
+    }
+
+    @Override
+    public boolean report(short rssi, long now) {
+        updateNoise(rssi);
+        if (!reported) {
+            return reported(rssi, now);
+        }
+        long elapsed = now - lastReportedTime;
+        if (maxInterval > 0 && elapsed >= maxInterval) {
+            return reported(rssi, now);
+        }
+        if (elapsed >= minInterval && Math.abs(rssi - lastReported) >= getEffectiveDeadband()) {
+            return reported(rssi, now);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the current deadband in dBm, which includes the adaptive part if enabled.
+     * @return effective deadband
+     */
+    public double getEffectiveDeadband() {
+        return adaptiveFactor > 0 ? Math.max(deadband, adaptiveFactor * Math.sqrt(variance)) : deadband;
+    }
+
+    private boolean reported(short rssi, long now) {
+        reported = true;
+        lastReported = rssi;
+        lastReportedTime = now;
+        return true;
+    }
+
+    private void updateNoise(short rssi) {
+        if (adaptiveFactor == 0) {
+            return;
+        }
+        if (!initialized) {
+            mean = rssi;
+            initialized = true;
+            return;
+        }
+        double deviation = rssi - mean;
+        mean += ALPHA * deviation;
+        variance = (1 - ALPHA) * (variance + ALPHA * deviation * deviation);
+    }
+
+}
@@ -22,9 +22,12 @@ package org.sputnikdev.bluetooth.manager;
 
 import org.sputnikdev.bluetooth.Filter;
 import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.filter.ShortFilter;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 
 /**
@@ -120,7 +123,9 @@ public interface DeviceGovernor extends BluetoothGovernor {
     /**
      * Checks whether the device is online.
      * A device is "online" if the device has shown its activity (see {@link BluetoothGovernor#getLastActivity()})
-     * within configured "online timeout" setting (see {@link #getOnlineTimeout()}).
+     * within configured "online timeout" setting (see {@link #getOnlineTimeout()}). Once online, the device is
+     * considered offline only after the offline hysteresis (see {@link #getOfflineHysteresis()}) has also elapsed,
+     * i.e. the returned state is the one the online/offline events have been fired for.
      * @return true if online, false otherwise
      */
     boolean isOnline();
@@ -137,6 +142,20 @@ public interface DeviceGovernor extends BluetoothGovernor {
      */
     void setOnlineTimeout(int onlineTimeout);
 
+    /**
+     * Returns the offline hysteresis in seconds. An online device is declared offline only when it has been
+     * inactive for longer than the online timeout plus the offline hysteresis, this prevents devices that
+     * advertise rarely from flapping between online and offline states.
+     * @return offline hysteresis in seconds
+     */
+    int getOfflineHysteresis();
+
+    /**
+     * Sets the offline hysteresis in seconds (see {@link #getOfflineHysteresis()}).
+     * @param offlineHysteresis a new value for the offline hysteresis, 0 by default
+     */
+    void setOfflineHysteresis(int offlineHysteresis);
+
     /**
      * Returns device RSSI.
      * @return device RSSI
@@ -151,6 +170,15 @@ public interface DeviceGovernor extends BluetoothGovernor {
      */
     void setRssiFilter(Class<? extends Filter<Short>> filter);
 
+    /**
+     * Sets a primitive RSSI filter (see {@link org.sputnikdev.bluetooth.manager.filter} package for available
+     * implementations). Unlike {@link #setRssiFilter(Class)}, a new instance is created by the provided factory,
+     * e.g. {@code governor.setRssiFilterFactory(() -> new MovingMedianFilter(7))}, and RSSI values are filtered
+     * without boxing. {@link #getRssiFilter()} returns a generic view of the primitive filter.
+     * @param factory RSSI filter factory
+     */
+    void setRssiFilterFactory(Supplier<? extends ShortFilter> factory);
+
     /**
      * Returns RSSI filter.
      * @return RSSI filter
@@ -182,6 +210,58 @@ public interface DeviceGovernor extends BluetoothGovernor {
      */
     long getRssiReportingRate();
 
+    /**
+     * Sets a factory of RSSI reporting policies (see {@link RssiReportingPolicy}). If a policy is set,
+     * it takes precedence over the RSSI reporting rate ({@link #setRssiReportingRate(long)}).
+     * A combined device governor applies the policy to the RSSI of the nearest device,
+     * its delegates keep reporting RSSI according to the reporting rate.
+     * @param factory a factory of reporting policies or null to report RSSI according to the reporting rate
+     */
+    void setRssiReportingPolicyFactory(Supplier<? extends RssiReportingPolicy> factory);
+
+    /**
+     * Returns total number of RSSI samples received from the device (or devices if the governor represents
+     * a group of devices).
+     * @return number of received RSSI samples
+     */
+    long getRssiSamplesReceived();
+
+    /**
+     * Returns total number of RSSI samples processed by the RSSI filter (or passed through if filtering
+     * is disabled). Samples are buffered and never dropped, so that this value catches up with
+     * {@link #getRssiSamplesReceived()} once all buffered samples are processed.
+     * @return number of processed RSSI samples
+     */
+    long getRssiSamplesFiltered();
+
+    /**
+     * Sets the size (number of samples) of the RSSI history, see {@link #getRssiHistory()}.
+     * The history is disabled by default, a value of zero disables it and discards collected samples.
+     * @param size history size
+     */
+    void setRssiHistorySize(int size);
+
+    /**
+     * Returns the size of the RSSI history, see {@link #setRssiHistorySize(int)}.
+     * @return history size, 0 if the history is disabled
+     */
+    int getRssiHistorySize();
+
+    /**
+     * Returns the recent history of raw RSSI samples. If the governor represents a group of devices (combined
+     * device governor), then the history of the nearest device is returned.
+     * @return RSSI history or null if the history is disabled
+     */
+    RssiHistory getRssiHistory();
+
+    /**
+     * Returns statistics of GATT operations of the device (time operations spend in the queue
+     * versus their execution time). If the governor represents a group of devices (combined device governor),
+     * then statistics of the connected device is returned.
+     * @return GATT operation statistics or null if not available
+     */
+    GattOperationStatistics getGattOperationStatistics();
+
     /**
      * Returns epoch timestamp when the device was last advertised.
      * @return last advertised epoch timestamp
@@ -298,6 +378,16 @@ public interface DeviceGovernor extends BluetoothGovernor {
      */
     List<URL> getCharacteristics() throws NotReadyException;
 
+    /**
+     * Reads the given characteristics of the device back-to-back. Characteristics are resolved in one pass
+     * and read as a single GATT operation. Characteristics that cannot be found or read are reported
+     * as errors in the result.
+     * @param characteristics characteristic URLs
+     * @return values and errors of the characteristics
+     * @throws NotReadyException if the device object is not ready
+     */
+    BatchReadResult readAll(Collection<URL> characteristics) throws NotReadyException;
+
     /**
      * Returns a list of characteristic governors associated to the device.
      * @return a list of characteristic governors associated to the device
@@ -0,0 +1,38 @@
+package org.sputnikdev.bluetooth.manager;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A value change listener that receives characteristic values decoded into a primitive float
+ * (see {@link ValueDecoder#decodeFloat(byte[])}). Values are decoded once per notification regardless of the number
+ * of registered listeners.
+ *
+ * @author Vlad Kolotov
+ */
+public interface FloatValueListener {
+
+    /**
+     * Reports value changed event.
+     * @param value a new state decoded into a float
+     */
+    void changed(float value);
+
+}
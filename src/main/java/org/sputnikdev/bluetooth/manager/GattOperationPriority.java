@@ -0,0 +1,44 @@
+package org.sputnikdev.bluetooth.manager;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Priority of a GATT operation. Operations of a device are executed one by one, the ones with higher priority
+ * go first, operations of the same priority are executed in order they were submitted.
+ *
+ * @author Vlad Kolotov
+ */
+public enum GattOperationPriority {
+
+    /**
+     * Time critical operations, e.g. writes controlling actuators.
+     */
+    URGENT,
+    /**
+     * Regular operations (default).
+     */
+    NORMAL,
+    /**
+     * Operations that can be delayed, e.g. periodic polling.
+     */
+    BACKGROUND
+
+}
@@ -0,0 +1,81 @@
+package org.sputnikdev.bluetooth.manager;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Statistics of GATT operations (reads, writes, notification subscriptions) of a device. Operations of a device
+ * are queued and executed one by one, the statistics help to tell how long operations wait in the queue
+ * compared to how long they take to execute (see {@link DeviceGovernor#getGattOperationStatistics()}).
+ *
+ * @author Vlad Kolotov
+ */
+public interface GattOperationStatistics {
+
+    /**
+     * Returns number of executed operations.
+     * @return number of executed operations
+     */
+    long getOperations();
+
+    /**
+     * Returns number of operations that timed out while waiting in the queue.
+     * @return number of timed out operations
+     */
+    long getTimeouts();
+
+    /**
+     * Returns number of operations that have not completed within the timeout, the queue does not wait for such
+     * operations and lets the next operation through.
+     * @return number of overrun operations
+     */
+    long getOverruns();
+
+    /**
+     * Returns number of operations waiting in the queue at the moment.
+     * @return queue length
+     */
+    int getQueueLength();
+
+    /**
+     * Returns average time (in nanoseconds) operations spend waiting in the queue.
+     * @return average queue wait time in nanoseconds
+     */
+    long getAverageWaitTime();
+
+    /**
+     * Returns maximum time (in nanoseconds) an operation has spent waiting in the queue.
+     * @return maximum queue wait time in nanoseconds
+     */
+    long getMaxWaitTime();
+
+    /**
+     * Returns average execution time (in nanoseconds) of operations.
+     * @return average execution time in nanoseconds
+     */
+    long getAverageExecutionTime();
+
+    /**
+     * Returns maximum execution time (in nanoseconds) of an operation.
+     * @return maximum execution time in nanoseconds
+     */
+    long getMaxExecutionTime();
+
+}
@@ -0,0 +1,95 @@
+package org.sputnikdev.bluetooth.manager;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A fixed capacity history of raw (unfiltered) RSSI samples of a device seen through a single adapter
+ * (see {@link DeviceGovernor#setRssiHistorySize(int)}).
+ *
+ * <p>Statistics are computed over a time window that ends now, e.g. a window of 5000 milliseconds covers samples
+ * received within the last 5 seconds. Windows are measured with the monotonic clock, hence they are not
+ * affected by wall clock adjustments. All statistics methods are O(window) and do not allocate any memory.
+ * If the window does not contain any samples, then the statistics methods return 0.
+ *
+ * @author Vlad Kolotov
+ */
+public interface RssiHistory {
+
+    /**
+     * Returns the maximum number of samples the history can keep.
+     * @return history capacity
+     */
+    int capacity();
+
+    /**
+     * Returns the number of samples currently kept in the history.
+     * @return number of samples
+     */
+    int size();
+
+    /**
+     * Returns the number of samples received within the given window.
+     * @param window window in milliseconds
+     * @return number of samples
+     */
+    int count(long window);
+
+    /**
+     * Returns the arithmetic mean of the samples received within the given window.
+     * @param window window in milliseconds
+     * @return mean RSSI
+     */
+    double getMean(long window);
+
+    /**
+     * Returns the (population) variance of the samples received within the given window.
+     * @param window window in milliseconds
+     * @return RSSI variance
+     */
+    double getVariance(long window);
+
+    /**
+     * Returns a percentile (nearest-rank method) of the samples received within the given window.
+     * @param percentile percentile from 0 to 100, e.g. 50 for the median
+     * @param window window in milliseconds
+     * @return RSSI percentile
+     */
+    short getPercentile(double percentile, long window);
+
+    /**
+     * Returns the rate of the samples (number of samples per second) received within the given window.
+     * @param window window in milliseconds
+     * @return sample rate
+     */
+    double getSampleRate(long window);
+
+    /**
+     * Copies the most recent samples received within the given window into the provided arrays (oldest first).
+     * The number of copied samples is limited by the length of the shortest array.
+     * @param rssi an array to copy RSSI values to
+     * @param timestamps an array to copy timestamps to (monotonic time in nanoseconds, only meaningful for measuring
+     *                   intervals between samples)
+     * @param window window in milliseconds
+     * @return number of copied samples
+     */
+    int copy(short[] rssi, long[] timestamps, long window);
+
+}
@@ -0,0 +1,44 @@
+package org.sputnikdev.bluetooth.manager;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A policy that decides whether a new (filtered) RSSI value gets reported to
+ * {@link GenericBluetoothDeviceListener#rssiChanged(short)} listeners
+ * (see {@link DeviceGovernor#setRssiReportingPolicyFactory(java.util.function.Supplier)}).
+ *
+ * <p>A policy is stateful, a new instance is created for each device governor. Calls to a policy instance are
+ * serialized by its governor, so that implementations do not need to be thread safe.
+ *
+ * @author Vlad Kolotov
+ */
+public interface RssiReportingPolicy {
+
+    /**
+     * Checks whether a new RSSI value should be reported. If the method returns true, the value is reported
+     * and the policy is expected to remember it as the last reported value.
+     * @param rssi a new RSSI value
+     * @param now current time in nanoseconds (monotonic, only differences between two values are meaningful)
+     * @return true if the value should be reported
+     */
+    boolean report(short rssi, long now);
+
+}
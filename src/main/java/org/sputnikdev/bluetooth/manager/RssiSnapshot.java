@@ -0,0 +1,94 @@
+package org.sputnikdev.bluetooth.manager;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.URL;
+
+/**
+ * A dense, manager-wide view of RSSI readings of all known devices captured at a single point in time
+ * (see {@link BluetoothManager#addRssiSnapshotListener(RssiSnapshotListener)}).
+ *
+ * <p>Entries are addressed by index from 0 to {@link #size()} - 1. Each entry also carries a stable device id
+ * ({@link #getDeviceId(int)}) which does not change between snapshots, so that consumers can keep their own
+ * per-device state in arrays indexed by the device id.
+ *
+ * <p>A snapshot object (and its internal arrays) is reused between ticks, therefore it must not be retained
+ * or accessed outside of {@link RssiSnapshotListener#snapshot(RssiSnapshot)} method.
+ *
+ * @author Vlad Kolotov
+ */
+public interface RssiSnapshot {
+
+    /**
+     * Returns the time (in milliseconds) when the snapshot was taken.
+     * @return snapshot timestamp
+     */
+    long getTimestamp();
+
+    /**
+     * Returns number of entries in the snapshot.
+     * @return number of entries
+     */
+    int size();
+
+    /**
+     * Returns a stable (dense) device id of an entry.
+     * @param index entry index
+     * @return device id
+     */
+    int getDeviceId(int index);
+
+    /**
+     * Returns a device URL of an entry.
+     * @param index entry index
+     * @return device URL
+     */
+    URL getURL(int index);
+
+    /**
+     * Returns an adapter URL (the adapter through which the device was seen) of an entry.
+     * @param index entry index
+     * @return adapter URL
+     */
+    URL getAdapterURL(int index);
+
+    /**
+     * Returns filtered (if filtering is enabled) RSSI of an entry.
+     * @param index entry index
+     * @return RSSI
+     */
+    short getRSSI(int index);
+
+    /**
+     * Returns estimated distance (in meters) of an entry.
+     * @param index entry index
+     * @return estimated distance
+     */
+    double getEstimatedDistance(int index);
+
+    /**
+     * Returns the last time (in milliseconds) when the device was advertising.
+     * @param index entry index
+     * @return last advertised timestamp
+     */
+    long getLastAdvertised(int index);
+
+}
@@ -0,0 +1,38 @@
+package org.sputnikdev.bluetooth.manager;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A listener of manager-wide RSSI snapshots. One callback is made per snapshot tick
+ * (see {@link BluetoothManager#addRssiSnapshotListener(RssiSnapshotListener)}).
+ *
+ * @author Vlad Kolotov
+ */
+@FunctionalInterface
+public interface RssiSnapshotListener {
+
+    /**
+     * Reports a new RSSI snapshot. The snapshot is reused between ticks and therefore must not be retained.
+     * @param snapshot RSSI snapshot
+     */
+    void snapshot(RssiSnapshot snapshot);
+
+}
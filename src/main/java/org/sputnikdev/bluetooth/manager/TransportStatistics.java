@@ -0,0 +1,99 @@
+package org.sputnikdev.bluetooth.manager;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Statistics of calls into a transport (see {@link BluetoothManager#getTransportStatistics(String)}).
+ * Calls into a transport are bounded by a concurrent call budget and a deadline, a circuit breaker stops
+ * calling the transport when calls repeatedly time out.
+ *
+ * @author Vlad Kolotov
+ */
+public interface TransportStatistics {
+
+    /**
+     * Circuit breaker state.
+     */
+    enum State {
+        /**
+         * Calls are allowed.
+         */
+        CLOSED,
+        /**
+         * Calls are rejected as the transport has repeatedly timed out.
+         */
+        OPEN,
+        /**
+         * A probe call is allowed to check whether the transport has recovered.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Returns the transport (protocol) name.
+     * @return transport name
+     */
+    String getTransport();
+
+    /**
+     * Returns the maximum number of concurrent calls into the transport.
+     * @return concurrent call budget
+     */
+    int getMaxCalls();
+
+    /**
+     * Returns number of calls in progress, including calls that have timed out but have not returned yet.
+     * @return number of active calls
+     */
+    int getActiveCalls();
+
+    /**
+     * Returns the timeout of connect calls in milliseconds.
+     * @return connect call timeout in milliseconds
+     */
+    long getConnectTimeout();
+
+    /**
+     * Returns the timeout of GATT I/O calls (e.g. read, write, notification subscription) in milliseconds.
+     * @return GATT I/O call timeout in milliseconds
+     */
+    long getTimeout();
+
+    /**
+     * Returns the circuit breaker state.
+     * @return circuit breaker state
+     */
+    State getState();
+
+    /**
+     * Returns number of calls that have timed out.
+     * @return number of timed out calls
+     */
+    long getTimeouts();
+
+    /**
+     * Returns number of calls that have been rejected because the budget was exhausted or the circuit breaker
+     * was open.
+     * @return number of rejected calls
+     */
+    long getRejectedCalls();
+
+}
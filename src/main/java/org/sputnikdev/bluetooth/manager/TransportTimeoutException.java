@@ -0,0 +1,39 @@
+package org.sputnikdev.bluetooth.manager;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Signals that a call into a transport has not completed within its timeout. Unlike other cases of
+ * {@link NotReadyException}, the call might have already reached the device (e.g. a value might have been written),
+ * therefore operations that are not idempotent must not be retried blindly.
+ *
+ * @author Vlad Kolotov
+ */
+public class TransportTimeoutException extends NotReadyException {
+
+    /**
+     * A constructor with a message.
+     * @param message a message
+     */
+    public TransportTimeoutException(String message) {
+        super(message);
+    }
+}
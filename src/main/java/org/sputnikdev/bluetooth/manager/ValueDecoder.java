@@ -0,0 +1,50 @@
+package org.sputnikdev.bluetooth.manager;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A decoder of raw characteristic values into primitive types. Decoders are resolved once per characteristic
+ * (by characteristic UUID) and then used for every received value, therefore implementations must be stateless
+ * and thread safe.
+ *
+ * <p>Decoders for some standard (Bluetooth SIG) characteristics are registered by default, custom decoders
+ * can be registered via {@link BluetoothManager#registerValueDecoder(String, ValueDecoder)}.
+ *
+ * @author Vlad Kolotov
+ */
+public interface ValueDecoder {
+
+    /**
+     * Decodes a characteristic value into an int. For scaled formats (e.g. temperature in 0.01 degrees)
+     * the raw (unscaled) integer is returned.
+     * @param value raw characteristic value
+     * @return decoded value
+     */
+    int decodeInt(byte[] value);
+
+    /**
+     * Decodes a characteristic value into a float. Scaling (if any) is applied to the resulting value.
+     * @param value raw characteristic value
+     * @return decoded value
+     */
+    float decodeFloat(byte[] value);
+
+}
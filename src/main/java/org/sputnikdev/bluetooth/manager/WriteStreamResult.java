@@ -0,0 +1,93 @@
+package org.sputnikdev.bluetooth.manager;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A class to capture results of streaming data to a characteristic
+ * (see {@link CharacteristicGovernor#writeStream(java.io.InputStream)}).
+ *
+ * @author Vlad Kolotov
+ */
+public class WriteStreamResult {
+
+    private final long bytes;
+    private final long packets;
+    private final long retransmits;
+    private final long duration;
+
+    /**
+     * Create a new object.
+     * @param bytes number of written bytes
+     * @param packets number of written packets
+     * @param retransmits number of packets of failed bursts that had to be written again
+     * @param duration how long the streaming took in nanoseconds
+     */
+    public WriteStreamResult(long bytes, long packets, long retransmits, long duration) {
+        this.bytes = bytes;
+        this.packets = packets;
+        this.retransmits = retransmits;
+        this.duration = duration;
+    }
+
+    /**
+     * Returns number of written bytes.
+     * @return number of written bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns number of written packets.
+     * @return number of written packets
+     */
+    public long getPackets() {
+        return packets;
+    }
+
+    /**
+     * Returns number of packets that had to be written again. Packets are written in bursts, when a packet fails,
+     * the failed packet and the remaining packets of its burst are counted.
+     * @return number of retransmitted packets
+     */
+    public long getRetransmits() {
+        return retransmits;
+    }
+
+    /**
+     * Returns how long the streaming took in nanoseconds.
+     * @return streaming duration in nanoseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns average throughput in bytes per second.
+     * @return throughput in bytes per second
+     */
+    public double getThroughput() {
+        return duration > 0 ? (double) bytes * TimeUnit.SECONDS.toNanos(1) / duration : 0;
+    }
+
+}
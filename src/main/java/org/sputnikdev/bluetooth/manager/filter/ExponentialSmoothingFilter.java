@@ -0,0 +1,70 @@
+package org.sputnikdev.bluetooth.manager.filter;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Exponential smoothing (exponentially weighted moving average) filter: s = alpha * x + (1 - alpha) * s.
+ *
+ * @author Vlad Kolotov
+ */
+public class ExponentialSmoothingFilter implements ShortFilter {
+
+    private static final double DEFAULT_ALPHA = 0.25;
+
+    private final double alpha;
+    private double smoothed;
+    private boolean initialized;
+
+    /**
+     * Creates a new filter with default smoothing factor (0.25).
+     */
+    public ExponentialSmoothingFilter() {
+        this(DEFAULT_ALPHA);
+    }
+
+    /**
+     * Creates a new filter with a given smoothing factor.
+     * @param alpha smoothing factor, the higher value the less smoothing, must be within (0, 1]
+     */
+    public ExponentialSmoothingFilter(double alpha) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("Smoothing factor must be within (0, 1]: " + alpha);
+        }
+        this.alpha = alpha;
+    }
+
+    @Override
+    public short next(short value) {
+        if (initialized) {
+            smoothed += alpha * (value - smoothed);
+        } else {
+            smoothed = value;
+            initialized = true;
+        }
+        return current();
+    }
+
+    @Override
+    public short current() {
+        return (short) Math.round(smoothed);
+    }
+
+}
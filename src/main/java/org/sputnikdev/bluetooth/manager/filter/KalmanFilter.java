@@ -0,0 +1,95 @@
+package org.sputnikdev.bluetooth.manager.filter;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A primitive one-dimensional Kalman filter. It is equivalent to {@link org.sputnikdev.bluetooth.RssiKalmanFilter},
+ * but values are not boxed.
+ *
+ * @author Vlad Kolotov
+ */
+public class KalmanFilter implements ShortFilter {
+
+    private static final double DEFAULT_PROCESS_NOISE = 0.125;
+    private static final double DEFAULT_MEASUREMENT_NOISE = 30.0;
+
+    private double processNoise;
+    private double measurementNoise;
+    private double estimate;
+    private double errorCovariance;
+
+    /**
+     * Creates a new filter with default process noise (0.125) and measurement noise (30) parameters
+     * that are suitable for RSSI filtering.
+     */
+    public KalmanFilter() {
+        this(DEFAULT_PROCESS_NOISE, DEFAULT_MEASUREMENT_NOISE);
+    }
+
+    /**
+     * Creates a new filter with given process noise and measurement noise parameters.
+     * @param processNoise process noise
+     * @param measurementNoise measurement noise
+     */
+    public KalmanFilter(double processNoise, double measurementNoise) {
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+    }
+
+    @Override
+    public short next(short value) {
+        double prior;
+        double priorCovariance;
+        if (estimate == 0) {
+            prior = value;
+            priorCovariance = 1;
+        } else {
+            prior = estimate;
+            priorCovariance = errorCovariance + processNoise;
+        }
+        double gain = priorCovariance / (priorCovariance + measurementNoise);
+        estimate = prior + gain * (value - prior);
+        errorCovariance = (1 - gain) * priorCovariance;
+        return (short) estimate;
+    }
+
+    @Override
+    public short current() {
+        return (short) estimate;
+    }
+
+    public double getProcessNoise() {
+        return processNoise;
+    }
+
+    public void setProcessNoise(double processNoise) {
+        this.processNoise = processNoise;
+    }
+
+    public double getMeasurementNoise() {
+        return measurementNoise;
+    }
+
+    public void setMeasurementNoise(double measurementNoise) {
+        this.measurementNoise = measurementNoise;
+    }
+
+}
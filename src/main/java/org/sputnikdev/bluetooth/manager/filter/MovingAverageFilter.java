@@ -0,0 +1,75 @@
+package org.sputnikdev.bluetooth.manager.filter;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Simple moving average filter over a fixed size window of the most recent values.
+ *
+ * @author Vlad Kolotov
+ */
+public class MovingAverageFilter implements ShortFilter {
+
+    private static final int DEFAULT_WINDOW_SIZE = 10;
+
+    private final short[] window;
+    private int position;
+    private int count;
+    private int sum;
+    private short current;
+
+    /**
+     * Creates a new filter with default window size (10).
+     */
+    public MovingAverageFilter() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a new filter with a given window size.
+     * @param windowSize window size
+     */
+    public MovingAverageFilter(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        window = new short[windowSize];
+    }
+
+    @Override
+    public short next(short value) {
+        if (count == window.length) {
+            sum -= window[position];
+        } else {
+            count++;
+        }
+        window[position] = value;
+        sum += value;
+        position = (position + 1) % window.length;
+        current = (short) Math.round((float) sum / count);
+        return current;
+    }
+
+    @Override
+    public short current() {
+        return current;
+    }
+
+}
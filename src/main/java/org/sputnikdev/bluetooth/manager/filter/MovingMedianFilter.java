@@ -0,0 +1,98 @@
+package org.sputnikdev.bluetooth.manager.filter;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Moving median filter over a fixed size window of the most recent values. The filter is robust to outliers
+ * (e.g. occasional RSSI spikes). A sorted copy of the window is maintained incrementally, so that no allocations
+ * and no full sorting happen per value.
+ *
+ * @author Vlad Kolotov
+ */
+public class MovingMedianFilter implements ShortFilter {
+
+    private static final int DEFAULT_WINDOW_SIZE = 5;
+
+    private final short[] window;
+    private final short[] sorted;
+    private int position;
+    private int count;
+    private short current;
+
+    /**
+     * Creates a new filter with default window size (5).
+     */
+    public MovingMedianFilter() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a new filter with a given window size.
+     * @param windowSize window size
+     */
+    public MovingMedianFilter(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        window = new short[windowSize];
+        sorted = new short[windowSize];
+    }
+
+    @Override
+    public short next(short value) {
+        if (count == window.length) {
+            remove(window[position]);
+        } else {
+            count++;
+        }
+        window[position] = value;
+        position = (position + 1) % window.length;
+        insert(value);
+        int middle = (count - 1) / 2;
+        current = count % 2 == 1 ? sorted[middle] : (short) ((sorted[middle] + sorted[middle + 1]) / 2);
+        return current;
+    }
+
+    @Override
+    public short current() {
+        return current;
+    }
+
+    private void remove(short value) {
+        // the window is full, the last slot gets freed
+        int index = 0;
+        while (sorted[index] != value) {
+            index++;
+        }
+        System.arraycopy(sorted, index + 1, sorted, index, count - index - 1);
+    }
+
+    private void insert(short value) {
+        // count already includes the new value
+        int index = count - 1;
+        while (index > 0 && sorted[index - 1] > value) {
+            sorted[index] = sorted[index - 1];
+            index--;
+        }
+        sorted[index] = value;
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.sputnikdev.bluetooth.manager.filter;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A primitive (short) filter contract, e.g. for RSSI filtering. Unlike {@link org.sputnikdev.bluetooth.Filter},
+ * values are not boxed. Implementations are not required to be thread safe, governors guarantee that a filter
+ * is accessed by one thread at a time.
+ *
+ * @author Vlad Kolotov
+ */
+public interface ShortFilter {
+
+    /**
+     * Adds a new measurement to the filter and returns a new filtered value.
+     * @param value a new measurement
+     * @return filtered value
+     */
+    short next(short value);
+
+    /**
+     * Returns the current filtered value.
+     * @return the current filtered value or 0 if there has not been any measurement yet
+     */
+    short current();
+
+}
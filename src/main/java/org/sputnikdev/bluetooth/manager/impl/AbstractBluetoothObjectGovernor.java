@@ -32,6 +32,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
  * A root class for all governors in the system. Defines lifecycle and error handling/recovery processes for governors.
@@ -82,17 +83,25 @@ abstract class AbstractBluetoothObjectGovernor<T extends BluetoothObject> implem
 
     protected final BluetoothManagerImpl bluetoothManager;
     protected final URL url;
+    protected final MonotonicClock clock;
     private T bluetoothObject;
     private String transport;
-    private Date lastActivity;
-    private Date lastActivityNotified;
+    // wall clock time (for reporting) and monotonic time (for measuring intervals) of the last activity
+    private volatile long lastActivity;
+    private volatile long lastActivityNanos;
+    private long lastActivityNotified;
     private final List<GovernorListener> governorListeners = new CopyOnWriteArrayList<>();
 
     private final ReentrantLock updateLock = new ReentrantLock();
 
     AbstractBluetoothObjectGovernor(BluetoothManagerImpl bluetoothManager, URL url) {
+        this(bluetoothManager, url, MonotonicClock.SYSTEM);
+    }
+
+    AbstractBluetoothObjectGovernor(BluetoothManagerImpl bluetoothManager, URL url, MonotonicClock clock) {
         this.bluetoothManager = bluetoothManager;
         this.url = url;
+        this.clock = clock;
     }
 
     @Override
@@ -117,7 +126,8 @@ abstract class AbstractBluetoothObjectGovernor<T extends BluetoothObject> implem
 
     @Override
     public Date getLastActivity() {
-        return lastActivity;
+        long lastChanged = lastActivity;
+        return lastChanged != 0 ? new Date(lastChanged) : null;
     }
 
     @Override
@@ -218,7 +228,48 @@ abstract class AbstractBluetoothObjectGovernor<T extends BluetoothObject> implem
     abstract void reset(T object);
 
     void updateLastChanged() {
-        lastActivity = new Date();
+        lastActivityNanos = clock.nanoTime();
+        lastActivity = clock.currentTimeMillis();
+    }
+
+    /**
+     * Returns the time (see {@link MonotonicClock#nanoTime()}) of the last activity.
+     * @return the time of the last activity or Long.MIN_VALUE if there has not been any activity yet
+     */
+    long getLastActivityNanos() {
+        return lastActivity != 0 ? lastActivityNanos : Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns how long (in nanoseconds) the governor has been inactive.
+     * @return inactivity time in nanoseconds or Long.MAX_VALUE if there has not been any activity yet
+     */
+    long getIdleNanos() {
+        return lastActivity != 0 ? clock.nanoTime() - lastActivityNanos : Long.MAX_VALUE;
+    }
+
+    /**
+     * Makes a call into the transport within the transport bulkhead (if enabled), see {@link TransportBulkhead}.
+     * @param call transport call
+     * @param <V> type of the call result
+     * @return call result
+     * @throws NotReadyException if the call has been rejected or timed out
+     */
+    <V> V callTransport(Supplier<V> call) throws NotReadyException {
+        TransportBulkhead bulkhead = bluetoothManager.getTransportBulkhead(transport);
+        return bulkhead != null ? bulkhead.call(call) : call.get();
+    }
+
+    /**
+     * Makes a connect call into the transport within the transport bulkhead (if enabled) with the connect timeout.
+     * @param call transport call
+     * @param <V> type of the call result
+     * @return call result
+     * @throws NotReadyException if the call has been rejected or timed out
+     */
+    <V> V connectTransport(Supplier<V> call) throws NotReadyException {
+        TransportBulkhead bulkhead = bluetoothManager.getTransportBulkhead(transport);
+        return bulkhead != null ? bulkhead.connect(call) : call.get();
     }
 
     void notifyReady(boolean ready) {
@@ -228,10 +279,11 @@ abstract class AbstractBluetoothObjectGovernor<T extends BluetoothObject> implem
     }
 
     void notifyLastChanged() {
-        Date lastChanged = lastActivity;
-        if (lastChanged != null && !lastChanged.equals(lastActivityNotified)) {
+        long lastChanged = lastActivity;
+        if (lastChanged != 0 && lastChanged != lastActivityNotified) {
+            Date lastChangedDate = new Date(lastChanged);
             BluetoothManagerUtils.safeForEachError(governorListeners, listener -> listener
-                            .lastUpdatedChanged(lastChanged), logger,
+                            .lastUpdatedChanged(lastChangedDate), logger,
                     "Execution error of a governor listener: last changed");
             lastActivityNotified = lastChanged;
         }
@@ -30,7 +30,7 @@ import org.sputnikdev.bluetooth.manager.BluetoothObjectVisitor;
 import org.sputnikdev.bluetooth.manager.DeviceGovernor;
 import org.sputnikdev.bluetooth.manager.NotReadyException;
 import org.sputnikdev.bluetooth.manager.transport.Adapter;
-import org.sputnikdev.bluetooth.manager.transport.Notification;
+import org.sputnikdev.bluetooth.manager.transport.BooleanNotification;
 
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -51,14 +51,23 @@ class AdapterGovernorImpl extends AbstractBluetoothObjectGovernor<Adapter> imple
     private boolean poweredControl = true;
     private boolean discoveringControl = true;
     private double signalPropagationExponent;
+    private volatile double scanDutyCycle;
 
     AdapterGovernorImpl(BluetoothManagerImpl bluetoothManager, URL url) {
         super(bluetoothManager, url);
     }
 
+    AdapterGovernorImpl(BluetoothManagerImpl bluetoothManager, URL url, MonotonicClock clock) {
+        super(bluetoothManager, url, clock);
+    }
+
     void init(Adapter adapter) {
         enablePoweredNotifications(adapter);
         enableDiscoveringNotifications(adapter);
+        ScanCoordinator scanCoordinator = bluetoothManager.getScanCoordinator();
+        if (scanCoordinator != null) {
+            scanCoordinator.register(this);
+        }
     }
 
     void update(Adapter adapter) {
@@ -83,6 +92,10 @@ class AdapterGovernorImpl extends AbstractBluetoothObjectGovernor<Adapter> imple
     @Override
     public void dispose() {
         super.dispose();
+        ScanCoordinator scanCoordinator = bluetoothManager.getScanCoordinator();
+        if (scanCoordinator != null) {
+            scanCoordinator.unregister(this);
+        }
         adapterListeners.clear();
     }
 
@@ -112,6 +125,16 @@ class AdapterGovernorImpl extends AbstractBluetoothObjectGovernor<Adapter> imple
         discoveringControl = discovering;
     }
 
+    @Override
+    public double getScanDutyCycle() {
+        return scanDutyCycle;
+    }
+
+    @Override
+    public void setScanDutyCycle(double dutyCycle) {
+        scanDutyCycle = dutyCycle;
+    }
+
     @Override
     public boolean isDiscovering() throws NotReadyException {
         Adapter adapter = getBluetoothObject();
@@ -222,9 +245,11 @@ class AdapterGovernorImpl extends AbstractBluetoothObjectGovernor<Adapter> imple
 
     private void updateDiscovering(Adapter adapter) {
         boolean isDiscovering = adapter.isDiscovering();
-        if (discoveringControl && !isDiscovering) {
+        ScanCoordinator scanCoordinator = bluetoothManager.getScanCoordinator();
+        boolean discovering = discoveringControl && (scanCoordinator == null || scanCoordinator.isScanAllowed(url));
+        if (discovering && !isDiscovering) {
             adapter.startDiscovery();
-        } else if (!discoveringControl && isDiscovering) {
+        } else if (!discovering && isDiscovering) {
             adapter.stopDiscovery();
         }
     }
@@ -232,28 +257,28 @@ class AdapterGovernorImpl extends AbstractBluetoothObjectGovernor<Adapter> imple
     private void enablePoweredNotifications(Adapter adapter) {
         if (poweredNotification == null) {
             poweredNotification = new PoweredNotification();
-            adapter.enablePoweredNotifications(poweredNotification);
+            adapter.enablePrimitivePoweredNotifications(poweredNotification);
         }
     }
 
     private void enableDiscoveringNotifications(Adapter adapter) {
         if (discoveringNotification == null) {
             discoveringNotification = new DiscoveringNotification();
-            adapter.enableDiscoveringNotifications(discoveringNotification);
+            adapter.enablePrimitiveDiscoveringNotifications(discoveringNotification);
         }
     }
 
-    private class PoweredNotification implements Notification<Boolean> {
+    private class PoweredNotification implements BooleanNotification {
         @Override
-        public void notify(Boolean powered) {
+        public void notify(boolean powered) {
             notifyPowered(powered);
             updateLastChanged();
         }
     }
 
-    private class DiscoveringNotification implements Notification<Boolean> {
+    private class DiscoveringNotification implements BooleanNotification {
         @Override
-        public void notify(Boolean discovering) {
+        public void notify(boolean discovering) {
             notifyDiscovering(discovering);
             updateLastChanged();
         }
@@ -0,0 +1,144 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.URL;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks load of adapters: number of live connections, recent connection latency and failure rate.
+ * Latency and failure rate are smoothed over connection attempts and decay with time, so that an adapter
+ * that has not been used for a while is not penalised by its old failures.
+ * It is used by the load balanced connection strategy of combined device governors
+ * ({@link org.sputnikdev.bluetooth.manager.ConnectionStrategy#LOAD_BALANCED}).
+ *
+ * @author Vlad Kolotov
+ */
+class AdapterLoadTracker {
+
+    // a typical number of simultaneous connections supported by a controller
+    static final int DEFAULT_MAX_CONNECTIONS = 7;
+
+    // smoothing factor for connection latency and failure rate
+    private static final double ALPHA = 0.2;
+    // how many connections a failure rate of 100% is worth
+    private static final double FAILURE_PENALTY = 5;
+    // how many connections a latency of one second is worth
+    private static final double LATENCY_PENALTY = 1;
+    // latency and failure rate halve every minute without connection attempts
+    private static final double DECAY_HALF_LIFE = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<URL, AdapterLoad> loads = new ConcurrentHashMap<>();
+    private volatile int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+    void connected(URL adapter) {
+        getLoad(adapter).connections.incrementAndGet();
+    }
+
+    void disconnected(URL adapter) {
+        getLoad(adapter).connections.updateAndGet(connections -> Math.max(0, connections - 1));
+    }
+
+    /**
+     * Records an outcome of a connection attempt.
+     * @param adapter adapter URL
+     * @param latency how long the attempt took in nanoseconds
+     * @param success true if the device got connected
+     * @param now current time in nanoseconds, see {@link MonotonicClock#nanoTime()}
+     */
+    void connectionAttempted(URL adapter, long latency, boolean success, long now) {
+        getLoad(adapter).attempted(TimeUnit.NANOSECONDS.toMillis(latency), success, now);
+    }
+
+    int getConnections(URL adapter) {
+        AdapterLoad load = loads.get(adapter.copyWithProtocol(null));
+        return load != null ? load.connections.get() : 0;
+    }
+
+    /**
+     * Checks whether the adapter can accept one more connection.
+     * @param adapter adapter URL
+     * @return true if the number of live connections is below the maximum
+     */
+    boolean hasCapacity(URL adapter) {
+        return getConnections(adapter) < maxConnections;
+    }
+
+    /**
+     * Returns a load score of the adapter, the lower the better. The score is the number of live connections
+     * penalised by the recent connection failure rate and latency.
+     * @param adapter adapter URL
+     * @param now current time in nanoseconds, see {@link MonotonicClock#nanoTime()}
+     * @return load score
+     */
+    double getScore(URL adapter, long now) {
+        AdapterLoad load = loads.get(adapter.copyWithProtocol(null));
+        if (load == null) {
+            return 0;
+        }
+        return load.connections.get() + load.getPenalty(now);
+    }
+
+    void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    int getMaxConnections() {
+        return maxConnections;
+    }
+
+    private AdapterLoad getLoad(URL adapter) {
+        return loads.computeIfAbsent(adapter.copyWithProtocol(null), url -> new AdapterLoad());
+    }
+
+    private static final class AdapterLoad {
+
+        private final AtomicInteger connections = new AtomicInteger();
+        // smoothed values as of the last attempt (latency in milliseconds), guarded by "this"
+        private double latency;
+        private double failureRate;
+        private long lastAttempted;
+        private boolean attempted;
+
+        private synchronized void attempted(long latency, boolean success, long now) {
+            double decay = getDecay(now);
+            this.latency *= decay;
+            failureRate *= decay;
+            this.latency += ALPHA * (latency - this.latency);
+            failureRate += ALPHA * ((success ? 0 : 1) - failureRate);
+            lastAttempted = now;
+            attempted = true;
+        }
+
+        private synchronized double getPenalty(long now) {
+            return getDecay(now) * (failureRate * FAILURE_PENALTY + latency / 1000 * LATENCY_PENALTY);
+        }
+
+        private double getDecay(long now) {
+            return attempted ? Math.pow(0.5, Math.max(0, now - lastAttempted) / DECAY_HALF_LIFE) : 0;
+        }
+    }
+
+}
@@ -50,6 +50,18 @@ public class BluetoothManagerBuilder {
     private boolean started = true;
     private boolean discovering;
     private boolean ignoreTransportInitErrors;
+    private long rssiSnapshotRate;
+    private MonotonicClock clock = MonotonicClock.SYSTEM;
+    private boolean rssiFilteringEngine;
+    private int delegateTtl;
+    private int maxAdapterConnections = AdapterLoadTracker.DEFAULT_MAX_CONNECTIONS;
+    private long scanPeriod;
+    private double scanDutyCycle = 1;
+    private int scanPauseConnections;
+    private long gattOperationTimeout = BluetoothManagerImpl.GATT_OPERATION_TIMEOUT_MS;
+    private int transportMaxCalls;
+    private long transportConnectTimeout;
+    private long transportCallTimeout;
 
     /**
      * Sets how frequent the discovery process should update its state.
@@ -153,6 +165,118 @@ public class BluetoothManagerBuilder {
         return this;
     }
 
+    /**
+     * Sets how often a manager-wide RSSI snapshot is published to RSSI snapshot listeners
+     * ({@link BluetoothManager#addRssiSnapshotListener(org.sputnikdev.bluetooth.manager.RssiSnapshotListener)}).
+     * Snapshots are disabled by default (0).
+     * @param milliseconds snapshot rate in milliseconds, 0 to disable
+     */
+    public BluetoothManagerBuilder withRssiSnapshotRate(long milliseconds) {
+        rssiSnapshotRate = milliseconds;
+        return this;
+    }
+
+    /**
+     * Sets a clock which is used by the bluetooth manager and its governors to timestamp events
+     * and measure intervals. The system clock is used by default.
+     * @param clock a clock
+     */
+    public BluetoothManagerBuilder withClock(MonotonicClock clock) {
+        this.clock = clock;
+        return this;
+    }
+
+    /**
+     * If set to true, RSSI of all devices is filtered by a manager level filtering engine (Kalman filter)
+     * that keeps filter state of all devices in primitive arrays rather than in a filter object per device.
+     * This reduces memory footprint and improves performance when a large number of devices is tracked.
+     * {@link org.sputnikdev.bluetooth.manager.DeviceGovernor#getRssiFilter()} returns a view onto the engine.
+     * @param rssiFilteringEngine if true, the RSSI filtering engine is enabled
+     */
+    public BluetoothManagerBuilder withRssiFilteringEngine(boolean rssiFilteringEngine) {
+        this.rssiFilteringEngine = rssiFilteringEngine;
+        return this;
+    }
+
+    /**
+     * Sets how long (in seconds) a delegate of a combined device governor (a device governor of a particular
+     * adapter) is kept since the device was last seen by that adapter. Idle delegates are retired from the combined
+     * device governor and suspended, i.e. they are not refreshed anymore, but they are not disposed, as they might
+     * still be used directly. A suspended delegate is revived (refreshed again and rejoins the combined governor)
+     * once the adapter discovers the device again. Delegates are never retired by default (0).
+     * @param seconds delegate time to live in seconds, 0 to disable retirement
+     */
+    public BluetoothManagerBuilder withCombinedDeviceDelegateTtl(int seconds) {
+        delegateTtl = seconds;
+        return this;
+    }
+
+    /**
+     * Sets the number of simultaneous connections an adapter can handle. Adapters that have reached this number
+     * are avoided by the load balanced connection strategy
+     * ({@link org.sputnikdev.bluetooth.manager.ConnectionStrategy#LOAD_BALANCED}), 7 by default.
+     * @param maxConnections maximum number of connections per adapter
+     */
+    public BluetoothManagerBuilder withMaxAdapterConnections(int maxConnections) {
+        maxAdapterConnections = maxConnections;
+        return this;
+    }
+
+    /**
+     * Enables coordination of scanning between adapters. The scan period is split into windows, each adapter
+     * scans only within its window so that co-located radios do not scan the same channels at the same time.
+     * Windows of different adapters are staggered evenly over the period. The duty cycle can also be set
+     * for individual adapters (see {@link org.sputnikdev.bluetooth.manager.AdapterGovernor#setScanDutyCycle(double)}).
+     * Scan coordination is disabled by default.
+     * @param period scan period in milliseconds
+     * @param dutyCycle fraction of the period adapters scan for, from 0 to 1
+     */
+    public BluetoothManagerBuilder withScanCoordination(long period, double dutyCycle) {
+        scanPeriod = period;
+        scanDutyCycle = dutyCycle;
+        return this;
+    }
+
+    /**
+     * Sets the number of active connections that pauses scanning on an adapter when scan coordination is enabled
+     * (see {@link #withScanCoordination(long, double)}). A busy adapter keeps scanning only if there is no other
+     * adapter to scan in its window. Scanning is never paused by default (0).
+     * @param connections number of active connections that pauses scanning, 0 to never pause
+     */
+    public BluetoothManagerBuilder withScanPauseConnections(int connections) {
+        scanPauseConnections = connections;
+        return this;
+    }
+
+    /**
+     * Sets how long (in milliseconds) a GATT operation (read, write, notification subscription) waits for its turn
+     * in the device operation queue. Operations of a device are executed one by one, an operation that has not
+     * started within the timeout fails. An operation that has not completed within the timeout (e.g. a hung native
+     * call) does not hold the queue anymore. 30 seconds by default.
+     * @param timeout GATT operation timeout in milliseconds, 0 to wait indefinitely
+     */
+    public BluetoothManagerBuilder withGattOperationTimeout(long timeout) {
+        gattOperationTimeout = timeout;
+        return this;
+    }
+
+    /**
+     * Bounds calls into transports (e.g. connect, read value, get services), so that hung native calls cannot block
+     * the bluetooth manager. Calls are made with a deadline and the number of concurrent calls per transport
+     * is limited. A circuit breaker stops calling a transport for a while after repeated timeouts. Calls that
+     * cannot be made fail fast with {@link org.sputnikdev.bluetooth.manager.NotReadyException}.
+     * Transport calls are not bounded by default.
+     * @param maxCalls maximum number of concurrent calls per transport
+     * @param connectTimeout timeout of connect calls in milliseconds
+     * @param timeout timeout of GATT I/O calls (read, write, notification subscription) in milliseconds
+     */
+    public BluetoothManagerBuilder withTransportCallLimits(int maxCalls, long connectTimeout, long timeout) {
+        transportMaxCalls = maxCalls;
+        transportConnectTimeout = connectTimeout;
+        transportCallTimeout = timeout;
+        return this;
+    }
+
     /**
      * Builds a new instance of the Bluetooth Manager.
      * @return a new instance of the Bluetooth Manager
@@ -164,6 +288,14 @@ public class BluetoothManagerBuilder {
         manager.setRefreshRate(refreshRate);
         manager.enableCombinedAdapters(combinedAdapters);
         manager.enableCombinedDevices(combinedDevices);
+        manager.setRssiSnapshotRate(rssiSnapshotRate);
+        manager.setClock(clock);
+        manager.enableRssiFilteringEngine(rssiFilteringEngine);
+        manager.setDelegateTtl(delegateTtl);
+        manager.getAdapterLoadTracker().setMaxConnections(maxAdapterConnections);
+        manager.setGattOperationTimeout(gattOperationTimeout);
+        manager.setTransportCallLimits(transportMaxCalls, transportConnectTimeout, transportCallTimeout);
+        manager.enableScanCoordinator(scanPeriod, scanDutyCycle, scanPauseConnections);
         if (tinybTransport) {
             loadTinyBTransport(manager);
         }
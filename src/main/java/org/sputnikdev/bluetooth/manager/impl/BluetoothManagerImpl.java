@@ -35,6 +35,9 @@ import org.sputnikdev.bluetooth.manager.DeviceGovernor;
 import org.sputnikdev.bluetooth.manager.DiscoveredAdapter;
 import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
 import org.sputnikdev.bluetooth.manager.ManagerListener;
+import org.sputnikdev.bluetooth.manager.RssiSnapshotListener;
+import org.sputnikdev.bluetooth.manager.TransportStatistics;
+import org.sputnikdev.bluetooth.manager.ValueDecoder;
 import org.sputnikdev.bluetooth.manager.transport.BluetoothObject;
 import org.sputnikdev.bluetooth.manager.transport.BluetoothObjectFactory;
 
@@ -46,6 +49,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -63,6 +67,10 @@ class BluetoothManagerImpl implements BluetoothManager {
 
     static final int REFRESH_RATE_SEC = 5;
     static final int DISCOVERY_RATE_SEC = 10;
+    static final int EXPIRY_TICK_MS = 100;
+    static final int EXPIRY_WHEEL_SIZE = 1024;
+    static final int SCAN_COORDINATOR_MIN_TICK_MS = 100;
+    static final int GATT_OPERATION_TIMEOUT_MS = 30000;
 
     private Logger logger = LoggerFactory.getLogger(BluetoothManagerImpl.class);
 
@@ -77,10 +85,15 @@ class BluetoothManagerImpl implements BluetoothManager {
     private final Set<DeviceDiscoveryListener> deviceDiscoveryListeners = new CopyOnWriteArraySet<>();
     private final Set<AdapterDiscoveryListener> adapterDiscoveryListeners = new CopyOnWriteArraySet<>();
     private final Set<ManagerListener> managerListeners = new CopyOnWriteArraySet<>();
+    private final Map<URL, Set<ManagerListener>> routedManagerListeners = new ConcurrentHashMap<>();
+    private final Set<RssiSnapshotListener> rssiSnapshotListeners = new CopyOnWriteArraySet<>();
 
     private final Map<URL, BluetoothObjectGovernor> governors = new ConcurrentHashMap<>();
     private final Set<DiscoveredDevice> discoveredDevices = new CopyOnWriteArraySet<>();
     private final Set<DiscoveredAdapter> discoveredAdapters = new CopyOnWriteArraySet<>();
+    private final ValueDecoderRegistry valueDecoderRegistry = new ValueDecoderRegistry();
+    private final ExpiryWheel expiryWheel = new ExpiryWheel(EXPIRY_TICK_MS, EXPIRY_WHEEL_SIZE);
+    private final AdapterLoadTracker adapterLoadTracker = new AdapterLoadTracker();
 
     private boolean startDiscovering;
     private int discoveryRate = DISCOVERY_RATE_SEC;
@@ -89,6 +102,20 @@ class BluetoothManagerImpl implements BluetoothManager {
     private boolean started;
     private boolean combinedAdapters;
     private boolean combinedDevices = true;
+    private long rssiSnapshotRate;
+    private int delegateTtl;
+    private long gattOperationTimeout = GATT_OPERATION_TIMEOUT_MS;
+    private MonotonicClock clock = MonotonicClock.SYSTEM;
+    private RssiFilteringEngine rssiFilteringEngine;
+    private ScheduledFuture<?> rssiSnapshotFuture;
+    private ScheduledFuture<?> expiryFuture;
+    private ScanCoordinator scanCoordinator;
+    private ScheduledFuture<?> scanCoordinatorFuture;
+    private final Map<String, TransportBulkhead> transportBulkheads = new ConcurrentHashMap<>();
+    private int transportMaxCalls;
+    private long transportConnectTimeout;
+    private long transportCallTimeout;
+    private ExecutorService transportCallExecutor;
 
     @Override
     public void start(boolean startDiscovering) {
@@ -102,6 +129,9 @@ class BluetoothManagerImpl implements BluetoothManager {
         }
         synchronized (governorScheduler) {
             governors.values().forEach(this::scheduleGovernor);
+            scheduleRssiSnapshot();
+            scheduleExpiryWheel();
+            scheduleScanCoordinator();
         }
         started = true;
     }
@@ -130,6 +160,11 @@ class BluetoothManagerImpl implements BluetoothManager {
         }
     }
 
+    @Override
+    public TransportStatistics getTransportStatistics(String transport) {
+        return getTransportBulkhead(transport);
+    }
+
     @Override
     public void stop() {
         cancelAllFutures(false);
@@ -170,6 +205,10 @@ class BluetoothManagerImpl implements BluetoothManager {
             URL protocolLess = url.copyWithProtocol(null);
             if (governors.containsKey(protocolLess)) {
                 BluetoothObjectGovernor governor = governors.get(protocolLess);
+                if (started && !governorFutures.containsKey(governor.getURL())) {
+                    // the governor has been suspended
+                    scheduleGovernor(governor);
+                }
                 if (!governor.isReady()) {
                     update(governor);
                 }
@@ -196,6 +235,20 @@ class BluetoothManagerImpl implements BluetoothManager {
         }
     }
 
+    /**
+     * Stops refreshing a governor without disposing it. The governor gets refreshed again once it is requested
+     * via {@link #getGovernor(URL)}.
+     * @param url governor URL
+     */
+    void suspendGovernor(URL url) {
+        synchronized (governors) {
+            governorFutures.computeIfPresent(url.copyWithProtocol(null), (key, future) -> {
+                future.cancel(false);
+                return null;
+            });
+        }
+    }
+
     @Override
     public void disposeDescendantGovernors(URL url) {
         computeForEachDescendantGovernorAndRemove(url, this::disposeGovernor);
@@ -257,6 +310,10 @@ class BluetoothManagerImpl implements BluetoothManager {
 
         factories.clear();
 
+        if (transportCallExecutor != null) {
+            transportCallExecutor.shutdownNow();
+        }
+
         logger.info("Bluetooth service has been disposed");
     }
 
@@ -303,11 +360,48 @@ class BluetoothManagerImpl implements BluetoothManager {
         managerListeners.add(listener);
     }
 
+    @Override
+    public void addManagerListener(ManagerListener listener, URL url) {
+        routedManagerListeners.computeIfAbsent(url.copyWithProtocol(null), key -> new CopyOnWriteArraySet<>())
+                .add(listener);
+    }
+
     @Override
     public void removeManagerListener(ManagerListener listener) {
         managerListeners.remove(listener);
     }
 
+    @Override
+    public void removeManagerListener(ManagerListener listener, URL url) {
+        routedManagerListeners.computeIfPresent(url.copyWithProtocol(null), (key, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+
+    @Override
+    public void addRssiSnapshotListener(RssiSnapshotListener listener) {
+        rssiSnapshotListeners.add(listener);
+    }
+
+    @Override
+    public void removeRssiSnapshotListener(RssiSnapshotListener listener) {
+        rssiSnapshotListeners.remove(listener);
+    }
+
+    @Override
+    public void registerValueDecoder(String characteristicUUID, ValueDecoder decoder) {
+        valueDecoderRegistry.register(characteristicUUID, decoder);
+    }
+
+    ValueDecoder getValueDecoder(URL url) {
+        return valueDecoderRegistry.resolve(url);
+    }
+
+    int getValueDecoderVersion() {
+        return valueDecoderRegistry.getVersion();
+    }
+
     protected void scheduleUpdate(BluetoothObjectGovernor governor) {
         if (!governorScheduler.isShutdown()) {
             governorScheduler.submit(() -> update(governor));
@@ -334,6 +428,119 @@ class BluetoothManagerImpl implements BluetoothManager {
         this.refreshRate = refreshRate;
     }
 
+    void setClock(MonotonicClock clock) {
+        this.clock = clock;
+    }
+
+    MonotonicClock getClock() {
+        return clock;
+    }
+
+    void enableRssiFilteringEngine(boolean enabled) {
+        rssiFilteringEngine = enabled ? new RssiFilteringEngine() : null;
+    }
+
+    RssiFilteringEngine getRssiFilteringEngine() {
+        return rssiFilteringEngine;
+    }
+
+    void setDelegateTtl(int delegateTtl) {
+        this.delegateTtl = delegateTtl;
+    }
+
+    int getDelegateTtl() {
+        return delegateTtl;
+    }
+
+    /**
+     * Returns URLs of all devices with the given address as they have been discovered by individual adapters.
+     * @param deviceAddress device address
+     * @return discovered device URLs
+     */
+    List<URL> getDiscoveredDeviceURLs(String deviceAddress) {
+        return discoveredDevices.stream().map(DiscoveredDevice::getURL)
+                .filter(deviceURL -> deviceAddress.equals(deviceURL.getDeviceAddress()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Enables coordination of scanning between adapters (see {@link ScanCoordinator}).
+     * @param period scan period in milliseconds, 0 to disable coordination
+     * @param dutyCycle default fraction of the period adapters scan for
+     * @param pauseConnections number of active connections that pauses scanning, 0 to never pause
+     */
+    void enableScanCoordinator(long period, double dutyCycle, int pauseConnections) {
+        scanCoordinator = period > 0 ? new ScanCoordinator(this, period, dutyCycle, pauseConnections) : null;
+    }
+
+    void setGattOperationTimeout(long gattOperationTimeout) {
+        this.gattOperationTimeout = gattOperationTimeout;
+    }
+
+    long getGattOperationTimeout() {
+        return gattOperationTimeout;
+    }
+
+    /**
+     * Returns the GATT operation queue of a device the given object (e.g. a characteristic) belongs to.
+     * @param url URL of an object that belongs to a device
+     * @return GATT operation queue or null if the device governor is not registered
+     */
+    GattOperationQueue getGattOperationQueue(URL url) {
+        BluetoothObjectGovernor governor = governors.get(url.getDeviceURL().copyWithProtocol(null));
+        return governor instanceof DeviceGovernorImpl ? ((DeviceGovernorImpl) governor).getGattOperationQueue() : null;
+    }
+
+    /**
+     * Bounds calls into transports (see {@link TransportBulkhead}).
+     * @param maxCalls maximum number of concurrent calls per transport
+     * @param connectTimeout connect call timeout in milliseconds, 0 to use the GATT I/O call timeout
+     * @param timeout GATT I/O call timeout in milliseconds, 0 to disable bounding
+     */
+    void setTransportCallLimits(int maxCalls, long connectTimeout, long timeout) {
+        transportMaxCalls = maxCalls;
+        transportConnectTimeout = connectTimeout > 0 ? connectTimeout : timeout;
+        transportCallTimeout = timeout;
+        transportBulkheads.clear();
+        if (timeout > 0 && transportCallExecutor == null) {
+            transportCallExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "bluetooth-transport-call");
+                // hung native calls must not prevent the JVM from exiting
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Returns a bulkhead for calls into the given transport.
+     * @param transport transport (protocol) name
+     * @return transport bulkhead or null if transport calls are not bounded
+     */
+    TransportBulkhead getTransportBulkhead(String transport) {
+        if (transportCallTimeout <= 0 || transport == null) {
+            return null;
+        }
+        return transportBulkheads.computeIfAbsent(transport, protocol -> new TransportBulkhead(protocol,
+                transportMaxCalls, transportConnectTimeout, transportCallTimeout, transportCallExecutor, clock));
+    }
+
+    ScanCoordinator getScanCoordinator() {
+        return scanCoordinator;
+    }
+
+    AdapterLoadTracker getAdapterLoadTracker() {
+        return adapterLoadTracker;
+    }
+
+    ExpiryWheel getExpiryWheel() {
+        return expiryWheel;
+    }
+
+    void setRssiSnapshotRate(long rssiSnapshotRate) {
+        this.rssiSnapshotRate = rssiSnapshotRate;
+    }
+
     void enableCombinedAdapters(boolean combineAdapters) {
         combinedAdapters = combineAdapters;
     }
@@ -345,6 +552,21 @@ class BluetoothManagerImpl implements BluetoothManager {
     protected void notifyGovernorReady(BluetoothGovernor governor, boolean ready) {
         BluetoothManagerUtils.safeForEachError(managerListeners, listener -> listener.ready(governor, ready), logger,
                 "Error in manager listener: ready");
+        if (!routedManagerListeners.isEmpty()) {
+            URL url = governor.getURL().copyWithProtocol(null);
+            notifyGovernorReady(routedManagerListeners.get(url), governor, ready);
+            if (!CombinedGovernor.COMBINED_ADDRESS.equals(url.getAdapterAddress())) {
+                notifyGovernorReady(routedManagerListeners.get(url.copyWithAdapter(CombinedGovernor.COMBINED_ADDRESS)),
+                        governor, ready);
+            }
+        }
+    }
+
+    private void notifyGovernorReady(Set<ManagerListener> listeners, BluetoothGovernor governor, boolean ready) {
+        if (listeners != null) {
+            BluetoothManagerUtils.safeForEachError(listeners, listener -> listener.ready(governor, ready), logger,
+                    "Error in manager listener: ready");
+        }
     }
 
     List<BluetoothGovernor> getGovernors(List<? extends BluetoothObject> objects) {
@@ -356,6 +578,14 @@ class BluetoothManagerImpl implements BluetoothManager {
         computeForEachDescendantGovernor(parent, this::update);
     }
 
+    void invalidateSubscriptions(URL parent) {
+        computeForEachDescendantGovernor(parent, governor -> {
+            if (governor instanceof CharacteristicGovernorImpl) {
+                ((CharacteristicGovernorImpl) governor).invalidateSubscription();
+            }
+        });
+    }
+
     void resetDescendants(URL parent) {
         if (parent.isProtocol()) {
             // reset all governors that belongs to the transport specified in the argument
@@ -404,7 +634,7 @@ class BluetoothManagerImpl implements BluetoothManager {
             adapterGovernor.setDiscoveringControl(startDiscovering);
             return (BluetoothObjectGovernor) adapterGovernor;
         } else if (url.isDevice()) {
-            return new CombinedDeviceGovernorImpl(this, url);
+            return new CombinedDeviceGovernorImpl(this, url, clock);
         } else if (url.isCharacteristic()) {
             return new CombinedCharacteristicGovernorImpl(this, url);
         }
@@ -413,13 +643,18 @@ class BluetoothManagerImpl implements BluetoothManager {
 
     private BluetoothObjectGovernor createBasicGovernor(URL url) {
         if (url.isAdapter()) {
-            AdapterGovernor adapterGovernor = new AdapterGovernorImpl(this, url);
+            AdapterGovernor adapterGovernor = new AdapterGovernorImpl(this, url, clock);
             adapterGovernor.setDiscoveringControl(startDiscovering);
             return (BluetoothObjectGovernor) adapterGovernor;
         } else if (url.isDevice()) {
-            return new DeviceGovernorImpl(this, url);
+            DeviceGovernorImpl deviceGovernor = new DeviceGovernorImpl(this, url, clock);
+            RssiFilteringEngine engine = rssiFilteringEngine;
+            if (engine != null) {
+                deviceGovernor.useRssiFilteringEngine(engine);
+            }
+            return deviceGovernor;
         } else if (url.isCharacteristic()) {
-            return new CharacteristicGovernorImpl(this, url);
+            return new CharacteristicGovernorImpl(this, url, clock);
         }
         throw new IllegalStateException("Unknown url");
     }
@@ -461,11 +696,13 @@ class BluetoothManagerImpl implements BluetoothManager {
     }
 
     private void notifyDeviceDiscovered(DiscoveredDevice device) {
+        // combined governors are notified on every discovery, so that retired delegates can be registered again
+        notifyCombinedDeviceGovernor(device);
         if (discoveredDevices.contains(device) && !rediscover) {
             return;
         }
         wrapForEach(deviceDiscoveryListeners, listener -> {
-            if (!combinedDevices || listener instanceof CombinedDeviceGovernorImpl) {
+            if (!combinedDevices) {
                 listener.discovered(device);
             } else {
                 listener.discovered(new DiscoveredDevice(
@@ -476,6 +713,18 @@ class BluetoothManagerImpl implements BluetoothManager {
         },"Error in device discovery listener");
     }
 
+    private void notifyCombinedDeviceGovernor(DiscoveredDevice device) {
+        BluetoothObjectGovernor governor = governors.get(
+                device.getURL().copyWithAdapter(CombinedGovernor.COMBINED_ADDRESS).copyWithProtocol(null));
+        if (governor instanceof CombinedDeviceGovernorImpl) {
+            try {
+                ((CombinedDeviceGovernorImpl) governor).discovered(device);
+            } catch (Exception ex) {
+                logger.error("Error in combined device governor: " + governor.getURL(), ex);
+            }
+        }
+    }
+
     private void notifyAdapterDiscovered(DiscoveredAdapter adapter) {
         if (discoveredAdapters.contains(adapter) && !rediscover) {
             return;
@@ -612,6 +861,47 @@ class BluetoothManagerImpl implements BluetoothManager {
         }
     }
 
+    final class RssiSnapshotJob implements Runnable {
+
+        private final RssiSnapshotImpl snapshot = new RssiSnapshotImpl();
+        private int deviceIdSequence;
+
+        @Override
+        public void run() {
+            if (rssiSnapshotListeners.isEmpty()) {
+                return;
+            }
+            try {
+                takeSnapshot();
+                BluetoothManagerUtils.safeForEachError(rssiSnapshotListeners, listener -> listener.snapshot(snapshot),
+                        logger, "Execution error of a RSSI snapshot listener");
+            } catch (Exception ex) {
+                logger.error("RSSI snapshot job error", ex);
+            }
+        }
+
+        private void takeSnapshot() {
+            snapshot.reset(clock.currentTimeMillis());
+            for (BluetoothObjectGovernor governor : governors.values()) {
+                if (governor instanceof DeviceGovernorImpl) {
+                    DeviceGovernorImpl deviceGovernor = (DeviceGovernorImpl) governor;
+                    long lastAdvertised = deviceGovernor.getLastAdvertised();
+                    if (lastAdvertised == 0) {
+                        continue;
+                    }
+                    int deviceId = deviceGovernor.getSnapshotId();
+                    if (deviceId < 0) {
+                        deviceId = deviceIdSequence++;
+                        deviceGovernor.setSnapshotId(deviceId);
+                    }
+                    short rssi = deviceGovernor.getLastRssi();
+                    snapshot.add(deviceId, deviceGovernor.getURL(), deviceGovernor.getAdapterURL(), rssi,
+                            deviceGovernor.getCachedEstimatedDistance(rssi), lastAdvertised);
+                }
+            }
+        }
+    }
+
     private void computeForEachDescendantGovernorAndRemove(URL url, Consumer<BluetoothObjectGovernor> consumer) {
         URL protocolLess = url.copyWithProtocol(null);
         governors.entrySet().removeIf(entry -> {
@@ -655,6 +945,28 @@ class BluetoothManagerImpl implements BluetoothManager {
             governorScheduler.scheduleWithFixedDelay(() -> update(governor),5, refreshRate, TimeUnit.SECONDS));
     }
 
+    private void scheduleRssiSnapshot() {
+        if (rssiSnapshotRate > 0) {
+            rssiSnapshotFuture = governorScheduler.scheduleAtFixedRate(new RssiSnapshotJob(),
+                    rssiSnapshotRate, rssiSnapshotRate, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void scheduleExpiryWheel() {
+        expiryFuture = governorScheduler.scheduleAtFixedRate(() -> expiryWheel.advance(clock.nanoTime()),
+                EXPIRY_TICK_MS, EXPIRY_TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleScanCoordinator() {
+        ScanCoordinator coordinator = scanCoordinator;
+        if (coordinator != null) {
+            // a few ticks per period to keep windows reasonably accurate
+            long tick = Math.max(SCAN_COORDINATOR_MIN_TICK_MS, coordinator.getPeriod() / 10);
+            scanCoordinatorFuture = governorScheduler.scheduleAtFixedRate(() -> coordinator.tick(clock.nanoTime()),
+                    tick, tick, TimeUnit.MILLISECONDS);
+        }
+    }
+
     private void cancelAllFutures(boolean forceInterrupt) {
         synchronized (discoveryScheduler) {
             adapterDiscoveryFutures.values().forEach(future -> future.cancel(forceInterrupt));
@@ -665,6 +977,18 @@ class BluetoothManagerImpl implements BluetoothManager {
         synchronized (governorScheduler) {
             governorFutures.values().forEach(future -> future.cancel(forceInterrupt));
             governorFutures.clear();
+            if (rssiSnapshotFuture != null) {
+                rssiSnapshotFuture.cancel(forceInterrupt);
+                rssiSnapshotFuture = null;
+            }
+            if (expiryFuture != null) {
+                expiryFuture.cancel(forceInterrupt);
+                expiryFuture = null;
+            }
+            if (scanCoordinatorFuture != null) {
+                scanCoordinatorFuture.cancel(forceInterrupt);
+                scanCoordinatorFuture = null;
+            }
         }
     }
 
@@ -26,15 +26,30 @@ import org.sputnikdev.bluetooth.URL;
 import org.sputnikdev.bluetooth.manager.BluetoothObjectType;
 import org.sputnikdev.bluetooth.manager.BluetoothObjectVisitor;
 import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
+import org.sputnikdev.bluetooth.manager.FloatValueListener;
+import org.sputnikdev.bluetooth.manager.GattOperationPriority;
+import org.sputnikdev.bluetooth.manager.IntValueListener;
 import org.sputnikdev.bluetooth.manager.NotReadyException;
+import org.sputnikdev.bluetooth.manager.ValueDecoder;
 import org.sputnikdev.bluetooth.manager.ValueListener;
+import org.sputnikdev.bluetooth.manager.WriteStreamResult;
 import org.sputnikdev.bluetooth.manager.transport.Characteristic;
 import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
 import org.sputnikdev.bluetooth.manager.transport.Notification;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  *
@@ -43,25 +58,89 @@ import java.util.concurrent.CopyOnWriteArrayList;
 class CharacteristicGovernorImpl extends AbstractBluetoothObjectGovernor<Characteristic>
     implements CharacteristicGovernor {
 
+    private static final int NOTIFY_FLAGS = CharacteristicAccessType.NOTIFY.getBitField()
+            | CharacteristicAccessType.INDICATE.getBitField();
+    // how often the notification subscription is checked if nothing has triggered it
+    static final long SUBSCRIPTION_CHECK_INTERVAL_MS = 60000;
+    // how long the update job (running on the manager threads) waits for its turn in the GATT operation queue
+    static final long SUBSCRIPTION_QUEUE_TIMEOUT_MS = 1000;
+    private static final int WRITE_FLAGS = CharacteristicAccessType.WRITE.getBitField()
+            | CharacteristicAccessType.WRITE_WITHOUT_RESPONSE.getBitField();
+
     private Logger logger = LoggerFactory.getLogger(CharacteristicGovernorImpl.class);
 
     private List<ValueListener> valueListeners = new CopyOnWriteArrayList<>();
+    private List<IntValueListener> intValueListeners = new CopyOnWriteArrayList<>();
+    private List<FloatValueListener> floatValueListeners = new CopyOnWriteArrayList<>();
     private ValueNotification valueNotification;
+    // resolved decoder along with the registry version it was resolved for
+    private volatile ResolvedDecoder valueDecoder;
+    private volatile long maxValueAge;
+    // characteristic properties bit field, cached from the first successful read until reset, -1 if unknown
+    private volatile int flags = -1;
+    // the notification subscription needs to be reconciled with the listeners
+    private volatile boolean subscriptionDirty = true;
+    private long subscriptionChecked;
+    private volatile CachedValue cachedValue;
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    // incremented whenever the cached value gets invalidated, so that reads started before do not re-cache
+    private final AtomicLong cacheGeneration = new AtomicLong();
+    // a read that is in progress, concurrent reads join it instead of issuing their own
+    private final AtomicReference<CompletableFuture<byte[]>> inFlightRead = new AtomicReference<>();
+    private final LongAdder joinedReads = new LongAdder();
 
     CharacteristicGovernorImpl(BluetoothManagerImpl bluetoothManager, URL url) {
         super(bluetoothManager, url);
     }
 
+    CharacteristicGovernorImpl(BluetoothManagerImpl bluetoothManager, URL url, MonotonicClock clock) {
+        super(bluetoothManager, url, clock);
+    }
+
     @Override
-    void init(Characteristic characteristic) { /* do nothing */ }
+    void init(Characteristic characteristic) {
+        // a new native object (e.g. after reconnection), it has to be subscribed from scratch
+        subscriptionDirty = true;
+    }
 
     @Override
     void update(Characteristic characteristic) {
+        long now = clock.nanoTime();
+        if (!subscriptionDirty
+                && now - subscriptionChecked < TimeUnit.MILLISECONDS.toNanos(SUBSCRIPTION_CHECK_INTERVAL_MS)) {
+            return;
+        }
+        // cleared before reconciling, so that changes made in the meantime are not lost
+        subscriptionDirty = false;
+        subscriptionChecked = now;
+        try {
+            updateSubscription(characteristic);
+        } catch (NotReadyException ex) {
+            // e.g. the device is busy with other operations, trying again on the next update
+            logger.debug("Could not update notification subscription {}: {}", url, ex.getMessage());
+            subscriptionDirty = true;
+        } catch (RuntimeException ex) {
+            subscriptionDirty = true;
+            throw ex;
+        }
+    }
+
+    /**
+     * Requests the notification subscription to be reconciled on the next update,
+     * e.g. when services of the device get resolved.
+     */
+    void invalidateSubscription() {
+        subscriptionDirty = true;
+    }
+
+    private void updateSubscription(Characteristic characteristic) {
         if (canNotify(characteristic)) {
-            boolean notifying = characteristic.isNotifying();
-            if (!valueListeners.isEmpty() && (!notifying || valueNotification == null)) {
+            boolean notifying = callTransport(characteristic::isNotifying);
+            boolean hasListeners = hasListeners();
+            if (hasListeners && (!notifying || valueNotification == null)) {
                 enableNotification(characteristic);
-            } else if (valueListeners.isEmpty() && notifying) {
+            } else if (!hasListeners && notifying) {
                 disableNotification(characteristic);
             }
         }
@@ -71,9 +150,14 @@ class CharacteristicGovernorImpl extends AbstractBluetoothObjectGovernor<Charact
     void reset(Characteristic characteristic) {
         logger.info("Disable characteristic notifications: " + getURL());
         valueNotification = null;
+        invalidateCache();
+        flags = -1;
         try {
             // force notification to be disabled and ignore any error
-            characteristic.disableValueNotifications();
+            callTransport(() -> {
+                characteristic.disableValueNotifications();
+                return null;
+            });
         } catch (Exception ignore) { /* do nothing */ }
     }
 
@@ -81,61 +165,191 @@ class CharacteristicGovernorImpl extends AbstractBluetoothObjectGovernor<Charact
     public void dispose() {
         super.dispose();
         valueListeners.clear();
+        intValueListeners.clear();
+        floatValueListeners.clear();
     }
 
     @Override
     public void addValueListener(ValueListener valueListener) {
         valueListeners.add(valueListener);
+        listenersChanged();
     }
 
     @Override
     public void removeValueListener(ValueListener valueListener) {
         valueListeners.remove(valueListener);
+        listenersChanged();
+    }
+
+    @Override
+    public void addIntValueListener(IntValueListener valueListener) {
+        intValueListeners.add(valueListener);
+        listenersChanged();
+    }
+
+    @Override
+    public void removeIntValueListener(IntValueListener valueListener) {
+        intValueListeners.remove(valueListener);
+        listenersChanged();
+    }
+
+    @Override
+    public void addFloatValueListener(FloatValueListener valueListener) {
+        floatValueListeners.add(valueListener);
+        listenersChanged();
+    }
+
+    @Override
+    public void removeFloatValueListener(FloatValueListener valueListener) {
+        floatValueListeners.remove(valueListener);
+        listenersChanged();
     }
 
     @Override
     public Set<CharacteristicAccessType> getFlags() throws NotReadyException {
-        return getBluetoothObject().getFlags();
+        return CharacteristicAccessType.parse(getFlags(getBluetoothObject()));
+    }
+
+    private int getFlags(Characteristic characteristic) {
+        int flags = this.flags;
+        if (flags < 0) {
+            Set<CharacteristicAccessType> types = callTransport(characteristic::getFlags);
+            flags = types != null ? CharacteristicAccessType.toBitField(types) : 0;
+            // characteristic properties never change, but they might not be available yet
+            if (flags != 0) {
+                this.flags = flags;
+            }
+        }
+        return flags;
     }
 
     @Override
     public boolean isNotifiable() throws NotReadyException {
-        Set<CharacteristicAccessType> flgs = getFlags();
-        return flgs.contains(CharacteristicAccessType.NOTIFY) || flgs.contains(CharacteristicAccessType.INDICATE);
+        return canNotify(getBluetoothObject());
     }
 
     @Override
     public boolean isNotifying() throws NotReadyException {
-        return getBluetoothObject().isNotifying();
+        return callTransport(getBluetoothObject()::isNotifying);
     }
 
     @Override
     public boolean isWritable() throws NotReadyException {
-        Set<CharacteristicAccessType> flgs = getFlags();
-        return flgs.contains(CharacteristicAccessType.WRITE)
-            || flgs.contains(CharacteristicAccessType.WRITE_WITHOUT_RESPONSE);
+        return hasFlags(getBluetoothObject(), WRITE_FLAGS);
     }
 
     @Override
     public boolean isReadable() throws NotReadyException {
-        return getFlags().contains(CharacteristicAccessType.READ);
+        return hasFlags(getBluetoothObject(), CharacteristicAccessType.READ.getBitField());
     }
 
     @Override
     public byte[] read() throws NotReadyException {
+        return read(maxValueAge);
+    }
+
+    @Override
+    public byte[] read(long maxAge) throws NotReadyException {
+        CachedValue cached = cachedValue;
+        if (cached != null && maxAge > 0
+                && clock.nanoTime() - cached.timestamp <= TimeUnit.MILLISECONDS.toNanos(maxAge)) {
+            cacheHits.increment();
+            return cached.value.clone();
+        }
+        // only a miss if the cache could have served the read
+        if (maxAge > 0 && maxValueAge > 0) {
+            cacheMisses.increment();
+        }
+        CompletableFuture<byte[]> flight = new CompletableFuture<>();
+        while (!inFlightRead.compareAndSet(null, flight)) {
+            CompletableFuture<byte[]> existing = inFlightRead.get();
+            if (existing != null) {
+                joinedReads.increment();
+                return join(existing);
+            }
+        }
+        try {
+            byte[] result = readValue();
+            flight.complete(result);
+            return result;
+        } catch (Throwable ex) {
+            // joined readers must never be left waiting, whatever happens to the read
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlightRead.compareAndSet(flight, null);
+        }
+    }
+
+    @Override
+    public long getJoinedReads() {
+        return joinedReads.sum();
+    }
+
+    @Override
+    public void setMaxValueAge(long maxAge) {
+        maxValueAge = maxAge;
+        if (maxAge <= 0) {
+            invalidateCache();
+        }
+    }
+
+    @Override
+    public long getMaxValueAge() {
+        return maxValueAge;
+    }
+
+    @Override
+    public long getValueCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getValueCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public boolean write(byte[] data) throws NotReadyException {
+        return write(data, GattOperationPriority.NORMAL);
+    }
+
+    @Override
+    public boolean write(byte[] data, GattOperationPriority priority) throws NotReadyException {
         Characteristic characteristic = getBluetoothObject();
-        if (characteristic == null) {
-            throw new IllegalStateException("Characteristic governor is not initialized");
+        // the value is about to change, the cached one cannot be trusted anymore
+        invalidateCache();
+        boolean result;
+        try {
+            result = execute(priority, () -> callTransport(() -> characteristic.writeValue(data)));
+        } finally {
+            // reads that overlapped the write might have returned the old value
+            invalidateCache();
         }
-        byte[] result = characteristic.readValue();
         updateLastChanged();
         return result;
     }
 
     @Override
-    public boolean write(byte[] data) throws NotReadyException {
-        Characteristic characteristic = getBluetoothObject();
-        boolean result = characteristic.writeValue(data);
+    public WriteStreamResult writeStream(InputStream source) throws NotReadyException, IOException {
+        WriteStreamResult result;
+        try {
+            result = getStreamWriter().write(source);
+        } finally {
+            invalidateCache();
+        }
+        updateLastChanged();
+        return result;
+    }
+
+    @Override
+    public WriteStreamResult writeStream(ByteBuffer source) throws NotReadyException {
+        WriteStreamResult result;
+        try {
+            result = getStreamWriter().write(source);
+        } finally {
+            invalidateCache();
+        }
         updateLastChanged();
         return result;
     }
@@ -159,7 +373,10 @@ class CharacteristicGovernorImpl extends AbstractBluetoothObjectGovernor<Charact
         if (valueNotification == null && canNotify(characteristic)) {
             logger.info("Enable characteristic notifications: " + getURL());
             ValueNotification notification = new ValueNotification();
-            characteristic.enableValueNotifications(notification);
+            execute(GattOperationPriority.NORMAL, SUBSCRIPTION_QUEUE_TIMEOUT_MS, () -> callTransport(() -> {
+                characteristic.enableValueNotifications(notification);
+                return null;
+            }));
             valueNotification = notification;
         }
     }
@@ -169,21 +386,180 @@ class CharacteristicGovernorImpl extends AbstractBluetoothObjectGovernor<Charact
         valueNotification = null;
         if (notification != null && canNotify(characteristic)) {
             logger.info("Disable characteristic notifications: " + getURL());
-            characteristic.disableValueNotifications();
+            execute(GattOperationPriority.NORMAL, SUBSCRIPTION_QUEUE_TIMEOUT_MS, () -> callTransport(() -> {
+                characteristic.disableValueNotifications();
+                return null;
+            }));
+        }
+    }
+
+    private byte[] readValue() {
+        Characteristic characteristic = getBluetoothObject();
+        if (characteristic == null) {
+            throw new IllegalStateException("Characteristic governor is not initialized");
+        }
+        long generation = cacheGeneration.get();
+        byte[] result = execute(GattOperationPriority.NORMAL, () -> callTransport(characteristic::readValue));
+        updateLastChanged();
+        cacheValue(result, generation);
+        return result;
+    }
+
+    private static byte[] join(CompletableFuture<byte[]> flight) {
+        try {
+            byte[] result = flight.join();
+            return result != null ? result.clone() : null;
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private void cacheValue(byte[] value, long generation) {
+        if (maxValueAge > 0 && value != null) {
+            cachedValue = new CachedValue(value.clone(), clock.nanoTime());
+            // invalidated while the value was being obtained, it might predate a write
+            if (cacheGeneration.get() != generation) {
+                cachedValue = null;
+            }
+        }
+    }
+
+    private void invalidateCache() {
+        cacheGeneration.incrementAndGet();
+        cachedValue = null;
+        // new reads must not join a read that might return the old value
+        inFlightRead.set(null);
+    }
+
+    private StreamWriter getStreamWriter() {
+        Characteristic characteristic = getBluetoothObject();
+        invalidateCache();
+        if (!hasFlags(characteristic, CharacteristicAccessType.WRITE_WITHOUT_RESPONSE.getBitField())) {
+            throw new IllegalStateException("Characteristic does not support write without response: " + url);
+        }
+        return new StreamWriter(url, characteristic, bluetoothManager.getGattOperationQueue(url),
+                bluetoothManager.getTransportBulkhead(getTransport()), bluetoothManager.getGattOperationTimeout(),
+                clock);
+    }
+
+    /**
+     * Executes a GATT operation through the operation queue of the device, so that operations of the device
+     * do not overlap.
+     */
+    private <V> V execute(GattOperationPriority priority, Supplier<V> operation) {
+        return execute(priority, bluetoothManager.getGattOperationTimeout(), operation);
+    }
+
+    private <V> V execute(GattOperationPriority priority, long timeout, Supplier<V> operation) {
+        GattOperationQueue queue = bluetoothManager.getGattOperationQueue(url);
+        if (queue == null) {
+            return operation.get();
+        }
+        return queue.execute(priority, timeout, operation);
+    }
+
+    private void listenersChanged() {
+        subscriptionDirty = true;
+        if (isReady()) {
+            scheduleUpdate();
+        }
+    }
+
+    private boolean hasListeners() {
+        return !valueListeners.isEmpty() || !intValueListeners.isEmpty() || !floatValueListeners.isEmpty();
+    }
+
+    private ValueDecoder getValueDecoder() {
+        int version = bluetoothManager.getValueDecoderVersion();
+        ResolvedDecoder resolved = valueDecoder;
+        if (resolved == null || resolved.version != version) {
+            // first use or a decoder has been registered since the last resolution
+            resolved = new ResolvedDecoder(bluetoothManager.getValueDecoder(getURL()), version);
+            valueDecoder = resolved;
+            if (resolved.decoder == null) {
+                logger.warn("No value decoder registered for characteristic, "
+                        + "int/float listeners won't be notified: {}", getURL());
+            }
+        }
+        return resolved.decoder;
+    }
+
+    private void notifyDecoded(byte[] data) {
+        if (intValueListeners.isEmpty() && floatValueListeners.isEmpty()) {
+            return;
+        }
+        ValueDecoder decoder = getValueDecoder();
+        if (decoder == null) {
+            return;
+        }
+        try {
+            if (!intValueListeners.isEmpty()) {
+                int value = decoder.decodeInt(data);
+                for (IntValueListener listener : intValueListeners) {
+                    try {
+                        listener.changed(value);
+                    } catch (Exception ex) {
+                        logger.error("Execution error of a characteristic int listener", ex);
+                    }
+                }
+            }
+            if (!floatValueListeners.isEmpty()) {
+                float value = decoder.decodeFloat(data);
+                for (FloatValueListener listener : floatValueListeners) {
+                    try {
+                        listener.changed(value);
+                    } catch (Exception ex) {
+                        logger.error("Execution error of a characteristic float listener", ex);
+                    }
+                }
+            }
+        } catch (RuntimeException ex) {
+            logger.warn("Could not decode characteristic value: {}", getURL(), ex);
         }
     }
 
     private boolean canNotify(Characteristic characteristic) {
-        Set<CharacteristicAccessType> flgs = characteristic.getFlags();
-        return flgs.contains(CharacteristicAccessType.NOTIFY) || flgs.contains(CharacteristicAccessType.INDICATE);
+        return hasFlags(characteristic, NOTIFY_FLAGS);
+    }
+
+    private boolean hasFlags(Characteristic characteristic, int mask) {
+        return (getFlags(characteristic) & mask) != 0;
+    }
+
+    private static final class ResolvedDecoder {
+        private final ValueDecoder decoder;
+        private final int version;
+
+        private ResolvedDecoder(ValueDecoder decoder, int version) {
+            this.decoder = decoder;
+            this.version = version;
+        }
+    }
+
+    private static final class CachedValue {
+        private final byte[] value;
+        private final long timestamp;
+
+        private CachedValue(byte[] value, long timestamp) {
+            this.value = value;
+            this.timestamp = timestamp;
+        }
     }
 
     private class ValueNotification implements Notification<byte[]> {
         @Override
         public void notify(byte[] data) {
             updateLastChanged();
+            cacheValue(data, cacheGeneration.get());
             BluetoothManagerUtils.safeForEachError(valueListeners, listener -> listener.changed(data), logger,
                     "Execution error of a characteristic listener");
+            notifyDecoded(data);
         }
     }
 
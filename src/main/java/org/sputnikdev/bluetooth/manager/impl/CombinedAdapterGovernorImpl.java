@@ -39,7 +39,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicInteger;
 
 class CombinedAdapterGovernorImpl implements AdapterGovernor, CombinedGovernor,
         BluetoothObjectGovernor, AdapterDiscoveryListener {
@@ -53,17 +52,19 @@ class CombinedAdapterGovernorImpl implements AdapterGovernor, CombinedGovernor,
     private final List<GovernorListener> governorListeners = new CopyOnWriteArrayList<>();
     private final List<AdapterListener> adapterListeners = new CopyOnWriteArrayList<>();
 
-    private Date lastChanged;
+    // wall clock time of the last activity (for reporting only), 0 if there has not been any activity yet
+    private volatile long lastChanged;
 
     private boolean poweredControl = true;
     private boolean discoveringControl = true;
     private double signalPropagationExponent;
+    private double scanDutyCycle;
 
     private final ConcurrentBitMap ready = new ConcurrentBitMap();
     private final ConcurrentBitMap powered = new ConcurrentBitMap();
     private final ConcurrentBitMap discovering = new ConcurrentBitMap();
 
-    private final AtomicInteger governorsCount = new AtomicInteger();
+    private final IndexPool indexes = new IndexPool(ConcurrentBitMap.MAX_INDEX);
 
     CombinedAdapterGovernorImpl(BluetoothManagerImpl bluetoothManager, URL url) {
         this.bluetoothManager = bluetoothManager;
@@ -136,6 +137,18 @@ class CombinedAdapterGovernorImpl implements AdapterGovernor, CombinedGovernor,
                 .setSignalPropagationExponent(exponent));
     }
 
+    @Override
+    public double getScanDutyCycle() {
+        return scanDutyCycle;
+    }
+
+    @Override
+    public void setScanDutyCycle(double dutyCycle) {
+        scanDutyCycle = dutyCycle;
+        governors.values().forEach(adapterGovernorHandler -> adapterGovernorHandler.adapterGovernor
+                .setScanDutyCycle(dutyCycle));
+    }
+
     @Override
     public List<URL> getDevices() throws NotReadyException {
         return null;
@@ -185,7 +198,8 @@ class CombinedAdapterGovernorImpl implements AdapterGovernor, CombinedGovernor,
 
     @Override
     public Date getLastActivity() {
-        return lastChanged;
+        long lastChanged = this.lastChanged;
+        return lastChanged != 0 ? new Date(lastChanged) : null;
     }
 
     @Override
@@ -219,23 +233,25 @@ class CombinedAdapterGovernorImpl implements AdapterGovernor, CombinedGovernor,
     }
 
     @Override
-    public void adapterLost(URL address) { /* do nothing */ }
+    public void adapterLost(URL address) {
+        AdapterGovernorHandler handler = governors.remove(address);
+        if (handler != null) {
+            handler.unregister();
+        }
+    }
 
     private void registerGovernor(URL url) {
-        if (governorsCount.get() > 63) {
-            throw new IllegalStateException("Shared Device Governor can only span upto 63 device governors.");
-        }
         if (url.isAdapter() && !url.equals(this.url)) {
             governors.computeIfAbsent(url, newUrl -> {
                 AdapterGovernor deviceGovernor = bluetoothManager.getAdapterGovernor(url);
-                return new AdapterGovernorHandler(deviceGovernor, governorsCount.getAndIncrement());
+                return new AdapterGovernorHandler(deviceGovernor, indexes.acquire());
             });
         }
     }
 
     private void updateLastUpdated(Date lastActivity) {
-        if (lastChanged == null || lastChanged.before(lastActivity)) {
-            lastChanged = lastActivity;
+        if (lastChanged < lastActivity.getTime()) {
+            lastChanged = lastActivity.getTime();
             BluetoothManagerUtils.safeForEachError(governorListeners, listener -> {
                 listener.lastUpdatedChanged(lastActivity);
             }, logger, "Execution error of a governor listener: last changed");
@@ -255,6 +271,7 @@ class CombinedAdapterGovernorImpl implements AdapterGovernor, CombinedGovernor,
             this.adapterGovernor.setPoweredControl(poweredControl);
             this.adapterGovernor.setDiscoveringControl(discoveringControl);
             this.adapterGovernor.setSignalPropagationExponent(signalPropagationExponent);
+            this.adapterGovernor.setScanDutyCycle(scanDutyCycle);
             ready(true);
         }
 
@@ -290,6 +307,16 @@ class CombinedAdapterGovernorImpl implements AdapterGovernor, CombinedGovernor,
             updateLastUpdated(lastActivity);
         }
 
+        private void unregister() {
+            adapterGovernor.removeAdapterListener(this);
+            adapterGovernor.removeGovernorListener(this);
+            // clearing the delegate state so that its slot can be safely reused
+            powered(false);
+            discovering(false);
+            ready(false);
+            indexes.release(index);
+        }
+
     }
 
 }
@@ -27,39 +27,74 @@ import org.sputnikdev.bluetooth.manager.BluetoothGovernor;
 import org.sputnikdev.bluetooth.manager.BluetoothObjectType;
 import org.sputnikdev.bluetooth.manager.BluetoothObjectVisitor;
 import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
-import org.sputnikdev.bluetooth.manager.CombinedGovernor;
+import org.sputnikdev.bluetooth.manager.CombinedCharacteristicGovernor;
 import org.sputnikdev.bluetooth.manager.DeviceGovernor;
+import org.sputnikdev.bluetooth.manager.FloatValueListener;
+import org.sputnikdev.bluetooth.manager.GattOperationPriority;
 import org.sputnikdev.bluetooth.manager.GovernorListener;
+import org.sputnikdev.bluetooth.manager.IntValueListener;
 import org.sputnikdev.bluetooth.manager.ManagerListener;
 import org.sputnikdev.bluetooth.manager.NotReadyException;
+import org.sputnikdev.bluetooth.manager.TransportTimeoutException;
 import org.sputnikdev.bluetooth.manager.ValueListener;
+import org.sputnikdev.bluetooth.manager.WriteStreamResult;
 import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
+ * A combined characteristic governor. All "ready" characteristics of the same device (discovered by different
+ * adapters) are tracked, one of them is the active delegate which all the listeners are installed on. When the active
+ * delegate is lost, another ready one (if any) is installed straight away and the listeners are replayed on it.
+ * Read and write operations wait for a delegate (and are retried if the delegate is lost in the middle of the
+ * operation) within the failover timeout.
  *
  * @author Vlad Kolotov
  */
 class CombinedCharacteristicGovernorImpl
-        implements CharacteristicGovernor, BluetoothObjectGovernor, CombinedGovernor {
+        implements CombinedCharacteristicGovernor, BluetoothObjectGovernor {
+
+    // smoothing factor for the observed read latency
+    private static final double LATENCY_ALPHA = 0.2;
 
     private Logger logger = LoggerFactory.getLogger(CombinedCharacteristicGovernorImpl.class);
 
     private BluetoothManagerImpl bluetoothManager;
     private final URL url;
-    private CharacteristicGovernor delegate;
+    private final MonotonicClock clock;
+    private volatile CharacteristicGovernor delegate;
+    // incremented each time a delegate is installed, helps to tell a new delegate from the one that has failed
+    private long generation;
+    private final Map<URL, DelegateHandle> readyDelegates = new ConcurrentHashMap<>();
+    private volatile long failoverTimeout;
+    private volatile boolean latencyRouting;
+    private volatile long maxValueAge;
     private final List<ValueListener> valueListeners = new CopyOnWriteArrayList<>();
+    private final List<IntValueListener> intValueListeners = new CopyOnWriteArrayList<>();
+    private final List<FloatValueListener> floatValueListeners = new CopyOnWriteArrayList<>();
     private final List<GovernorListener> governorListeners = new CopyOnWriteArrayList<>();
-    private Date lastActivity;
+    // wall clock time of the last activity of the last installed delegate, 0 if there has not been any activity yet
+    private volatile long lastActivity;
     private final ManagerListener delegateListener = new DelegatesListener();
 
     CombinedCharacteristicGovernorImpl(BluetoothManagerImpl bluetoothManager, URL url) {
+        this(bluetoothManager, url, MonotonicClock.SYSTEM);
+    }
+
+    CombinedCharacteristicGovernorImpl(BluetoothManagerImpl bluetoothManager, URL url, MonotonicClock clock) {
         this.bluetoothManager = bluetoothManager;
         this.url = url;
+        this.clock = clock;
     }
 
     @Override
@@ -89,12 +124,79 @@ class CombinedCharacteristicGovernorImpl
 
     @Override
     public byte[] read() throws NotReadyException {
-        return getDelegate().read();
+        return execute(true, CharacteristicGovernor::read);
+    }
+
+    @Override
+    public byte[] read(long maxAge) throws NotReadyException {
+        return execute(true, delegate -> delegate.read(maxAge));
+    }
+
+    @Override
+    public void setMaxValueAge(long maxAge) {
+        maxValueAge = maxAge;
+        readyDelegates.values().forEach(handle -> handle.governor.setMaxValueAge(maxAge));
+    }
+
+    @Override
+    public long getMaxValueAge() {
+        return maxValueAge;
+    }
+
+    @Override
+    public long getValueCacheHits() {
+        return readyDelegates.values().stream().mapToLong(handle -> handle.governor.getValueCacheHits()).sum();
+    }
+
+    @Override
+    public long getValueCacheMisses() {
+        return readyDelegates.values().stream().mapToLong(handle -> handle.governor.getValueCacheMisses()).sum();
+    }
+
+    @Override
+    public long getJoinedReads() {
+        return readyDelegates.values().stream().mapToLong(handle -> handle.governor.getJoinedReads()).sum();
     }
 
     @Override
     public boolean write(byte[] data) throws NotReadyException {
-        return getDelegate().write(data);
+        return write(data, GattOperationPriority.NORMAL);
+    }
+
+    @Override
+    public boolean write(byte[] data, GattOperationPriority priority) throws NotReadyException {
+        return execute(false, delegate -> delegate.write(data, priority));
+    }
+
+    @Override
+    public WriteStreamResult writeStream(InputStream source) throws NotReadyException, IOException {
+        // streams are not retried through another delegate as they cannot be rewound
+        return getDelegate().writeStream(source);
+    }
+
+    @Override
+    public WriteStreamResult writeStream(ByteBuffer source) throws NotReadyException {
+        return getDelegate().writeStream(source);
+    }
+
+    @Override
+    public void setFailoverTimeout(long timeout) {
+        failoverTimeout = timeout;
+    }
+
+    @Override
+    public long getFailoverTimeout() {
+        return failoverTimeout;
+    }
+
+    @Override
+    public void setLatencyRouting(boolean latencyRouting) {
+        this.latencyRouting = latencyRouting;
+    }
+
+    @Override
+    public boolean isLatencyRouting() {
+        return latencyRouting;
     }
 
     @Override
@@ -115,6 +217,42 @@ class CombinedCharacteristicGovernorImpl
         }
     }
 
+    @Override
+    public void addIntValueListener(IntValueListener valueListener) {
+        intValueListeners.add(valueListener);
+        CharacteristicGovernor delegate = this.delegate;
+        if (delegate != null) {
+            delegate.addIntValueListener(valueListener);
+        }
+    }
+
+    @Override
+    public void removeIntValueListener(IntValueListener valueListener) {
+        intValueListeners.remove(valueListener);
+        CharacteristicGovernor delegate = this.delegate;
+        if (delegate != null) {
+            delegate.removeIntValueListener(valueListener);
+        }
+    }
+
+    @Override
+    public void addFloatValueListener(FloatValueListener valueListener) {
+        floatValueListeners.add(valueListener);
+        CharacteristicGovernor delegate = this.delegate;
+        if (delegate != null) {
+            delegate.addFloatValueListener(valueListener);
+        }
+    }
+
+    @Override
+    public void removeFloatValueListener(FloatValueListener valueListener) {
+        floatValueListeners.remove(valueListener);
+        CharacteristicGovernor delegate = this.delegate;
+        if (delegate != null) {
+            delegate.removeFloatValueListener(valueListener);
+        }
+    }
+
     @Override
     public URL getURL() {
         return url;
@@ -132,7 +270,12 @@ class CombinedCharacteristicGovernorImpl
 
     @Override
     public Date getLastActivity() {
-        return delegate != null ? delegate.getLastActivity() : lastActivity;
+        CharacteristicGovernor delegate = this.delegate;
+        if (delegate != null) {
+            return delegate.getLastActivity();
+        }
+        long lastActivity = this.lastActivity;
+        return lastActivity != 0 ? new Date(lastActivity) : null;
     }
 
     @Override
@@ -162,15 +305,14 @@ class CombinedCharacteristicGovernorImpl
 
     @Override
     public void init() {
-        bluetoothManager.addManagerListener(delegateListener);
+        bluetoothManager.addManagerListener(delegateListener, url);
 
         bluetoothManager.getRegisteredGovernors().stream()
                 .filter(registeredURL -> !COMBINED_ADDRESS.equals(registeredURL.getAdapterAddress())
                         && registeredURL.copyWithProtocol(null).copyWithAdapter(COMBINED_ADDRESS).equals(url))
                 .map(registeredURL -> bluetoothManager.getGovernor(registeredURL))
                 .filter(BluetoothGovernor::isReady)
-                .reduce((a, b) -> { throw new IllegalStateException("multiple 'ready' characteristics found"); })
-                .ifPresent(governor -> installDelegate((CharacteristicGovernor) governor));
+                .forEach(governor -> delegateReady((CharacteristicGovernor) governor));
     }
 
     @Override
@@ -191,25 +333,73 @@ class CombinedCharacteristicGovernorImpl
 
     @Override
     public void dispose() {
-        bluetoothManager.removeManagerListener(delegateListener);
+        bluetoothManager.removeManagerListener(delegateListener, url);
         reset();
+        readyDelegates.clear();
         governorListeners.clear();
         valueListeners.clear();
+        intValueListeners.clear();
+        floatValueListeners.clear();
+    }
+
+    private void delegateReady(CharacteristicGovernor governor) {
+        readyDelegates.putIfAbsent(governor.getURL(), new DelegateHandle(governor));
+        governor.setMaxValueAge(maxValueAge);
+        boolean install;
+        synchronized (delegateListener) {
+            install = delegate == null;
+            if (install) {
+                installDelegate(governor);
+            }
+        }
+        if (install) {
+            notifyInstalled(governor);
+        }
+    }
+
+    private void delegateLost(CharacteristicGovernor governor) {
+        readyDelegates.remove(governor.getURL());
+        CharacteristicGovernor failover = null;
+        synchronized (delegateListener) {
+            if (delegate != governor) {
+                return;
+            }
+            uninstallDelegate();
+            // failing over to another ready delegate straight away (if any)
+            DelegateHandle handle = readyDelegates.values().stream()
+                    .filter(candidate -> candidate.governor.isReady()).findFirst().orElse(null);
+            if (handle != null) {
+                failover = handle.governor;
+                installDelegate(failover);
+            }
+        }
+        if (failover != null) {
+            logger.debug("Failing over combined characteristic {} to {}", url, failover.getURL());
+            notifyInstalled(failover);
+        }
     }
 
     private void installDelegate(CharacteristicGovernor delegate) {
         synchronized (delegateListener) {
             this.delegate = delegate;
+            generation++;
             governorListeners.forEach(delegate::addGovernorListener);
             valueListeners.forEach(delegate::addValueListener);
-            lastActivity = delegate.getLastActivity();
+            intValueListeners.forEach(delegate::addIntValueListener);
+            floatValueListeners.forEach(delegate::addFloatValueListener);
+            updateLastActivity(delegate);
+            // waking up operations waiting for a delegate
+            delegateListener.notifyAll();
         }
+    }
+
+    private void notifyInstalled(CharacteristicGovernor delegate) {
         if (delegate.isReady()) {
             BluetoothManagerUtils.safeForEachError(governorListeners, listener -> listener.ready(true), logger,
                     "Execution error of a governor listener: ready");
         }
         BluetoothManagerUtils.safeForEachError(governorListeners,
-                listener -> listener.lastUpdatedChanged(lastActivity),
+                listener -> listener.lastUpdatedChanged(getLastActivity()),
                 logger,"Execution error of a governor listener: lastUpdatedChanged");
     }
 
@@ -219,10 +409,17 @@ class CombinedCharacteristicGovernorImpl
             synchronized (delegateListener) {
                 governorListeners.forEach(delegate::removeGovernorListener);
                 valueListeners.forEach(delegate::removeValueListener);
-                lastActivity = delegate.getLastActivity();
+                intValueListeners.forEach(delegate::removeIntValueListener);
+                floatValueListeners.forEach(delegate::removeFloatValueListener);
+                updateLastActivity(delegate);
+                this.delegate = null;
             }
         }
-        this.delegate = null;
+    }
+
+    private void updateLastActivity(CharacteristicGovernor delegate) {
+        Date delegateActivity = delegate.getLastActivity();
+        lastActivity = delegateActivity != null ? delegateActivity.getTime() : 0;
     }
 
     private CharacteristicGovernor getDelegate() {
@@ -233,6 +430,83 @@ class CombinedCharacteristicGovernorImpl
         throw new NotReadyException("Combined characteristic governor is not ready yet");
     }
 
+    /**
+     * Executes an I/O operation on a delegate. If there is no delegate or the delegate is lost in the middle of
+     * the operation, then the operation waits for a new delegate and gets retried within the failover timeout.
+     * Writes that have timed out are never retried, as they might have already reached the device.
+     */
+    private <V> V execute(boolean read, Function<CharacteristicGovernor, V> operation) {
+        long deadline = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(failoverTimeout);
+        boolean route = read && latencyRouting;
+        long minGeneration = 0;
+        while (true) {
+            DelegateHandle routed = route ? getFastestDelegate() : null;
+            long generation;
+            CharacteristicGovernor delegate;
+            if (routed != null) {
+                generation = minGeneration;
+                delegate = routed.governor;
+            } else {
+                synchronized (delegateListener) {
+                    delegate = awaitDelegate(minGeneration, deadline);
+                    generation = this.generation;
+                }
+            }
+            long started = clock.nanoTime();
+            try {
+                V result = operation.apply(delegate);
+                if (read) {
+                    DelegateHandle handle = routed != null ? routed : readyDelegates.get(delegate.getURL());
+                    if (handle != null) {
+                        handle.updateLatency(clock.nanoTime() - started);
+                    }
+                }
+                return result;
+            } catch (NotReadyException ex) {
+                if (!read && ex instanceof TransportTimeoutException || clock.nanoTime() - deadline >= 0) {
+                    throw ex;
+                }
+                logger.debug("Delegate {} is lost, retrying operation through a new delegate: {}",
+                        delegate.getURL(), url);
+                if (routed != null) {
+                    // retrying through the active delegate
+                    route = false;
+                } else {
+                    minGeneration = generation + 1;
+                }
+            }
+        }
+    }
+
+    private CharacteristicGovernor awaitDelegate(long minGeneration, long deadline) {
+        while (true) {
+            CharacteristicGovernor delegate = this.delegate;
+            if (delegate != null && generation >= minGeneration) {
+                return delegate;
+            }
+            long remaining = deadline - clock.nanoTime();
+            if (remaining <= 0) {
+                throw new NotReadyException("Combined characteristic governor is not ready yet");
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(delegateListener, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NotReadyException("Interrupted while waiting for a delegate: " + url);
+            }
+        }
+    }
+
+    private DelegateHandle getFastestDelegate() {
+        DelegateHandle fastest = null;
+        for (DelegateHandle handle : readyDelegates.values()) {
+            if (handle.governor.isReady() && (fastest == null || handle.latency < fastest.latency)) {
+                fastest = handle;
+            }
+        }
+        return fastest;
+    }
+
     private void registerTargetCharacteristic(URL deviceURL) {
         bluetoothManager.getCharacteristicGovernor(url.copyWithAdapter(deviceURL.getAdapterAddress()));
     }
@@ -247,14 +521,29 @@ class CombinedCharacteristicGovernorImpl
     private class DelegatesListener implements ManagerListener {
         @Override
         public void ready(BluetoothGovernor governor, boolean isReady) {
-            if (governor instanceof CharacteristicGovernorImpl
-                    && governor.getURL().copyWithProtocol(null).copyWithAdapter(COMBINED_ADDRESS).equals(url)) {
+            // events are routed by the bluetooth manager only for the characteristics matching the combined URL
+            if (governor instanceof CharacteristicGovernorImpl) {
                 if (isReady) {
-                    installDelegate((CharacteristicGovernor) governor);
+                    delegateReady((CharacteristicGovernor) governor);
                 } else {
-                    uninstallDelegate();
+                    delegateLost((CharacteristicGovernor) governor);
                 }
             }
         }
     }
+
+    private static final class DelegateHandle {
+
+        private final CharacteristicGovernor governor;
+        // nanoseconds, delegates that have not been measured yet go first so that they get probed
+        private volatile double latency;
+
+        private DelegateHandle(CharacteristicGovernor governor) {
+            this.governor = governor;
+        }
+
+        private synchronized void updateLatency(long latency) {
+            this.latency = this.latency == 0 ? latency : this.latency + LATENCY_ALPHA * (latency - this.latency);
+        }
+    }
 }
@@ -26,6 +26,7 @@ import org.sputnikdev.bluetooth.Filter;
 import org.sputnikdev.bluetooth.RssiKalmanFilter;
 import org.sputnikdev.bluetooth.URL;
 import org.sputnikdev.bluetooth.manager.AdapterDiscoveryListener;
+import org.sputnikdev.bluetooth.manager.BatchReadResult;
 import org.sputnikdev.bluetooth.manager.BluetoothObjectType;
 import org.sputnikdev.bluetooth.manager.BluetoothObjectVisitor;
 import org.sputnikdev.bluetooth.manager.BluetoothSmartDeviceListener;
@@ -34,25 +35,30 @@ import org.sputnikdev.bluetooth.manager.CombinedDeviceGovernor;
 import org.sputnikdev.bluetooth.manager.ConnectionStrategy;
 import org.sputnikdev.bluetooth.manager.DeviceGovernor;
 import org.sputnikdev.bluetooth.manager.DiscoveredAdapter;
+import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
 import org.sputnikdev.bluetooth.manager.GattCharacteristic;
+import org.sputnikdev.bluetooth.manager.GattOperationStatistics;
 import org.sputnikdev.bluetooth.manager.GattService;
 import org.sputnikdev.bluetooth.manager.GenericBluetoothDeviceListener;
 import org.sputnikdev.bluetooth.manager.GovernorListener;
 import org.sputnikdev.bluetooth.manager.NotReadyException;
+import org.sputnikdev.bluetooth.manager.RssiHistory;
+import org.sputnikdev.bluetooth.manager.RssiReportingPolicy;
+import org.sputnikdev.bluetooth.manager.filter.ShortFilter;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  *
@@ -61,14 +67,19 @@ import java.util.function.Consumer;
 class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovernor, BluetoothObjectGovernor {
 
     // when RSSI reading is deemed to be stale for the nearest adapter calculation
-    private static final int STALE_TIMEOUT = 10000;
+    private static final long STALE_TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+    // RSSI margin (in dBm) of the nearest adapter within which adapters are load balanced
+    static final int DEFAULT_LOAD_BALANCING_MARGIN = 10;
+    // how much better (in terms of load score) an adapter must be to replace the current connection target
+    private static final double LOAD_SCORE_HYSTERESIS = 0.5;
 
     private Logger logger = LoggerFactory.getLogger(DeviceGovernorImpl.class);
 
     private final BluetoothManagerImpl bluetoothManager;
     private final URL url;
+    private final MonotonicClock clock;
 
-    private final AtomicInteger governorsCount = new AtomicInteger();
+    private final IndexPool indexes = new IndexPool(ConcurrentBitMap.MAX_INDEX);
     private final Map<URL, DeviceGovernorHandler> governors = new ConcurrentHashMap<>();
     private final DelegateRegistrar delegateRegistrar = new DelegateRegistrar();
 
@@ -90,18 +101,25 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
     private String name;
     private String alias;
     private int onlineTimeout = DeviceGovernorImpl.DEFAULT_ONLINE_TIMEOUT;
+    private int offlineHysteresis;
     private short rssi;
     private KalmanFilterProxy rssiFilter = new KalmanFilterProxy();
     private boolean rssiFilteringEnabled = true;
     private long rssiReportingRate = DeviceGovernorImpl.DEFAULT_RSSI_REPORTING_RATE;
+    private int rssiHistorySize;
+    private volatile RssiReportingPolicy rssiReportingPolicy;
+    // the most recent RSSI waiting to be reported and the "work in progress" counter that serializes reporting
+    private final AtomicInteger pendingRssi = new AtomicInteger(DeviceGovernorImpl.NO_RSSI);
+    private final AtomicInteger rssiReporting = new AtomicInteger();
     private short measuredTxPower;
     private double signalPropagationExponent = DeviceGovernorImpl.DEFAULT_SIGNAL_PROPAGATION_EXPONENT;
-    private Date lastChanged;
+    // wall clock time of the last activity (for reporting only), 0 if there has not been any activity yet
+    private volatile long lastChanged;
 
     // some specifics for the nearest adapter detection
-    private final SortedSet<DeviceGovernorHandler> sortedByDistanceGovernors = new TreeSet<>(new DistanceComparator());
-    private DeviceGovernor nearest;
-    private final ReentrantLock rssiLock = new ReentrantLock();
+    // an append-only snapshot of all handlers, each of them holds its own distance and last advertised slots
+    private volatile DeviceGovernorHandler[] handlers = new DeviceGovernorHandler[0];
+    private volatile DeviceGovernor nearest;
 
     // controlling fields
     private boolean connectionControl;
@@ -110,11 +128,17 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
     // combined governor specific fields
     private ConnectionStrategy connectionStrategy = ConnectionStrategy.NEAREST_ADAPTER;
     private URL preferredAdapter;
+    private int loadBalancingMargin = DEFAULT_LOAD_BALANCING_MARGIN;
     private DeviceGovernor connectionTarget;
 
     CombinedDeviceGovernorImpl(BluetoothManagerImpl bluetoothManager, URL url) {
+        this(bluetoothManager, url, MonotonicClock.SYSTEM);
+    }
+
+    CombinedDeviceGovernorImpl(BluetoothManagerImpl bluetoothManager, URL url, MonotonicClock clock) {
         this.bluetoothManager = bluetoothManager;
         this.url = url;
+        this.clock = clock;
     }
 
     @Override
@@ -221,10 +245,58 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
                     }
                 }
                 return null;
+            case LOAD_BALANCED:
+                return findLeastLoaded();
             default: throw new IllegalStateException("Unknown connection strategy: " + connectionStrategy);
         }
     }
 
+    /**
+     * Finds the least loaded adapter among the adapters that see the device with RSSI within the load balancing
+     * margin of the nearest adapter. Adapters that have not reached the maximum number of connections are preferred,
+     * then the lowest load score wins. The current connection target is kept unless another adapter is
+     * significantly less loaded.
+     * @return the least loaded delegate or the nearest delegate if load information is not available
+     */
+    private DeviceGovernor findLeastLoaded() {
+        AdapterLoadTracker tracker = bluetoothManager.getAdapterLoadTracker();
+        DeviceGovernor nearest = this.nearest;
+        if (tracker == null || nearest == null) {
+            return nearest;
+        }
+        DeviceGovernorHandler[] handlers = this.handlers;
+        short nearestRssi = 0;
+        for (DeviceGovernorHandler handler : handlers) {
+            if (handler.delegate == nearest) {
+                nearestRssi = handler.rssi;
+                break;
+            }
+        }
+        long now = clock.nanoTime();
+        DeviceGovernor currentTarget = connectionTarget;
+        DeviceGovernor result = null;
+        boolean resultCapacity = false;
+        double resultScore = Double.MAX_VALUE;
+        for (DeviceGovernorHandler handler : handlers) {
+            if (handler.distance == Double.MAX_VALUE || now - handler.lastAdvertised > STALE_TIMEOUT
+                    || nearestRssi - handler.rssi > loadBalancingMargin) {
+                continue;
+            }
+            URL adapter = handler.delegate.getURL().getAdapterURL();
+            boolean capacity = tracker.hasCapacity(adapter);
+            double score = tracker.getScore(adapter, now);
+            if (handler.delegate == currentTarget) {
+                score -= LOAD_SCORE_HYSTERESIS;
+            }
+            if (result == null || capacity && !resultCapacity || capacity == resultCapacity && score < resultScore) {
+                result = handler.delegate;
+                resultCapacity = capacity;
+                resultScore = score;
+            }
+        }
+        return result != null ? result : nearest;
+    }
+
     @Override
     public boolean isBlocked() throws NotReadyException {
         return blocked.get();
@@ -259,15 +331,80 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
             deviceGovernorHandler -> deviceGovernorHandler.delegate.setOnlineTimeout(timeout));
     }
 
+    @Override
+    public int getOfflineHysteresis() {
+        return offlineHysteresis;
+    }
+
+    @Override
+    public void setOfflineHysteresis(int hysteresis) {
+        offlineHysteresis = hysteresis;
+        governors.values().forEach(
+            deviceGovernorHandler -> deviceGovernorHandler.delegate.setOfflineHysteresis(hysteresis));
+    }
+
     @Override
     public short getRSSI() throws NotReadyException {
         return rssi;
     }
 
+    @Override
+    public long getRssiSamplesReceived() {
+        long total = 0;
+        for (DeviceGovernorHandler handler : governors.values()) {
+            total += handler.delegate.getRssiSamplesReceived();
+        }
+        return total;
+    }
+
+    @Override
+    public long getRssiSamplesFiltered() {
+        long total = 0;
+        for (DeviceGovernorHandler handler : governors.values()) {
+            total += handler.delegate.getRssiSamplesFiltered();
+        }
+        return total;
+    }
+
+    @Override
+    public void setRssiReportingPolicyFactory(Supplier<? extends RssiReportingPolicy> factory) {
+        rssiReportingPolicy = factory != null ? factory.get() : null;
+    }
+
+    @Override
+    public void setRssiHistorySize(int size) {
+        rssiHistorySize = size;
+        governors.values().forEach(handler -> handler.delegate.setRssiHistorySize(size));
+    }
+
+    @Override
+    public int getRssiHistorySize() {
+        return rssiHistorySize;
+    }
+
+    @Override
+    public RssiHistory getRssiHistory() {
+        DeviceGovernor governor = nearest;
+        return governor != null ? governor.getRssiHistory() : null;
+    }
+
+    @Override
+    public RssiHistory getRssiHistory(URL adapter) {
+        DeviceGovernorHandler handler = governors.get(
+                adapter.copyWithProtocol(null).copyWithDevice(url.getDeviceAddress()));
+        return handler != null ? handler.delegate.getRssiHistory() : null;
+    }
+
+    @Override
+    public GattOperationStatistics getGattOperationStatistics() {
+        DeviceGovernor governor = isConnected() ? getGovernor(connected.getUniqueIndex()) : null;
+        return governor != null ? governor.getGattOperationStatistics() : null;
+    }
+
     @Override
     public long getLastAdvertised() {
         DeviceGovernor nearest = this.nearest;
-        return nearest.getLastAdvertised();
+        return nearest != null ? nearest.getLastAdvertised() : 0;
     }
 
     @Override
@@ -356,6 +493,26 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
         return null;
     }
 
+    @Override
+    public BatchReadResult readAll(Collection<URL> characteristics) throws NotReadyException {
+        DeviceGovernor governor = isConnected() ? getGovernor(connected.getUniqueIndex()) : null;
+        if (governor == null) {
+            throw new NotReadyException("Combined device is not connected: " + url);
+        }
+        // translating combined URLs into the URLs of the connected adapter and back
+        String adapterAddress = governor.getURL().getAdapterAddress();
+        Map<URL, URL> delegateURLs = new LinkedHashMap<>();
+        characteristics.forEach(characteristic -> delegateURLs.put(
+                characteristic.copyWithProtocol(null).copyWithAdapter(adapterAddress),
+                characteristic.copyWithProtocol(null)));
+        BatchReadResult result = governor.readAll(delegateURLs.keySet());
+        Map<URL, byte[]> values = new LinkedHashMap<>();
+        Map<URL, Exception> errors = new LinkedHashMap<>();
+        result.getValues().forEach((characteristic, value) -> values.put(delegateURLs.get(characteristic), value));
+        result.getErrors().forEach((characteristic, error) -> errors.put(delegateURLs.get(characteristic), error));
+        return new BatchReadResult(values, errors);
+    }
+
     @Override
     public URL getURL() {
         return url;
@@ -373,7 +530,8 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
 
     @Override
     public Date getLastActivity() {
-        return lastChanged;
+        long lastChanged = this.lastChanged;
+        return lastChanged != 0 ? new Date(lastChanged) : null;
     }
 
     @Override
@@ -384,14 +542,25 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
     @Override
     public void init() {
         bluetoothManager.addAdapterDiscoveryListener(delegateRegistrar);
-        bluetoothManager.getDiscoveredAdapters().forEach(this::registerDelegate);
+        // delegates are created lazily, only for adapters that have seen the device (see discovered())
+        bluetoothManager.getDiscoveredDeviceURLs(url.getDeviceAddress()).forEach(this::registerDelegate);
     }
 
     @Override
     public void update() {
+        retireIdleDelegates();
         updateConnectionTarget();
     }
 
+    /**
+     * Registers a delegate for the adapter that has discovered the device. Discovered devices are routed here
+     * by the bluetooth manager (by the device address).
+     * @param discoveredDevice discovered device
+     */
+    void discovered(DiscoveredDevice discoveredDevice) {
+        registerDelegate(discoveredDevice.getURL());
+    }
+
     @Override
     public void reset() { /* do nothing */ }
 
@@ -404,7 +573,8 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
         governorListeners.clear();
         genericBluetoothDeviceListeners.clear();
         bluetoothSmartDeviceListeners.clear();
-        sortedByDistanceGovernors.clear();
+        handlers = new DeviceGovernorHandler[0];
+        nearest = null;
     }
 
     @Override
@@ -412,6 +582,11 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
         throw new IllegalStateException("Not supported by combined governor. ");
     }
 
+    @Override
+    public void setRssiFilterFactory(Supplier<? extends ShortFilter> factory) {
+        throw new IllegalStateException("Not supported by combined governor. ");
+    }
+
     @Override
     public Filter<Short> getRssiFilter() {
         return rssiFilter;
@@ -464,6 +639,16 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
         this.preferredAdapter = preferredAdapter;
     }
 
+    @Override
+    public int getLoadBalancingMargin() {
+        return loadBalancingMargin;
+    }
+
+    @Override
+    public void setLoadBalancingMargin(int margin) {
+        loadBalancingMargin = margin;
+    }
+
     @Override
     public URL getConnectedAdapter() {
         DeviceGovernor deviceGovernor = getGovernor(connected.getUniqueIndex());
@@ -475,29 +660,111 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
                 .map(handler ->handler.delegate).findFirst().orElse(null);
     }
 
-    private void registerDelegate(DiscoveredAdapter adapter) {
-        registerDelegate(url.copyWithAdapter(adapter.getURL().getAdapterAddress()));
-    }
-
     private void registerDelegate(URL url) {
-        if (governorsCount.get() > 63) {
-            throw new IllegalStateException("Combined Device Governor can only span up to 63 device governors.");
-        }
         if (url.isDevice() && this.url.getDeviceAddress().equals(url.getDeviceAddress())
                 && !COMBINED_ADDRESS.equals(url.getAdapterAddress())) {
-            governors.computeIfAbsent(url.copyWithProtocol(null), newUrl -> {
-                DeviceGovernor deviceGovernor = bluetoothManager.getDeviceGovernor(url);
-                int index = governorsCount.getAndIncrement();
-                DeviceGovernorHandler handler = new DeviceGovernorHandler(deviceGovernor, index);
-                handler.init();
-                return handler;
-            });
+            URL delegateURL = url.copyWithProtocol(null);
+            if (governors.containsKey(delegateURL)) {
+                return;
+            }
+            // the manager lock and listeners must not be called while holding a lock of the map
+            DeviceGovernor deviceGovernor = bluetoothManager.getDeviceGovernor(url);
+            int index = indexes.acquire();
+            DeviceGovernorHandler handler = new DeviceGovernorHandler(deviceGovernor, index);
+            if (governors.putIfAbsent(delegateURL, handler) != null) {
+                // registered concurrently, the handler has not been initialised yet, so only its slot is taken
+                indexes.release(index);
+                return;
+            }
+            addHandler(handler);
+            handler.init();
+        }
+    }
+
+    private void retireIdleDelegates() {
+        int ttl = bluetoothManager.getDelegateTtl();
+        if (ttl <= 0) {
+            return;
+        }
+        long now = clock.nanoTime();
+        int connectedIndex = connected.getUniqueIndex();
+        for (DeviceGovernorHandler handler : handlers) {
+            DeviceGovernor delegate = handler.delegate;
+            if (handler.index == connectedIndex || delegate == connectionTarget) {
+                continue;
+            }
+            long idle = now - handler.registered;
+            if (delegate instanceof AbstractBluetoothObjectGovernor) {
+                idle = Math.min(idle, ((AbstractBluetoothObjectGovernor) delegate).getIdleNanos());
+            }
+            if (idle > TimeUnit.SECONDS.toNanos(ttl)
+                    && governors.remove(delegate.getURL().copyWithProtocol(null), handler)) {
+                logger.info("Retiring idle delegate of combined device governor: {}", delegate.getURL());
+                handler.unregister();
+                // the delegate might still be used directly, so that it is not disposed, just not refreshed
+                bluetoothManager.suspendGovernor(delegate.getURL());
+            }
+        }
+    }
+
+    private void unregisterDelegate(URL adapter) {
+        DeviceGovernorHandler handler = governors.remove(
+                url.copyWithAdapter(adapter.getAdapterAddress()).copyWithProtocol(null));
+        if (handler != null) {
+            handler.unregister();
+        }
+    }
+
+    private synchronized void removeHandler(DeviceGovernorHandler handler) {
+        DeviceGovernorHandler[] current = handlers;
+        DeviceGovernorHandler[] updated = new DeviceGovernorHandler[current.length];
+        int size = 0;
+        for (DeviceGovernorHandler existing : current) {
+            if (existing != handler) {
+                updated[size++] = existing;
+            }
         }
+        handlers = Arrays.copyOf(updated, size);
+    }
+
+    private synchronized void addHandler(DeviceGovernorHandler handler) {
+        // registration is rare, so copying the array is fine here, whereas readers never block
+        DeviceGovernorHandler[] current = handlers;
+        DeviceGovernorHandler[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = handler;
+        handlers = updated;
+    }
+
+    /**
+     * Finds the nearest delegate in O(adapters) without any locking. Staleness of all the slots is evaluated
+     * against a single timestamp so that the result is consistent within one pass. Fresh readings always win
+     * over stale ones, then the smallest distance wins.
+     * @return the nearest delegate or null if none of the delegates has reported its distance
+     */
+    private DeviceGovernor findNearest() {
+        long now = clock.nanoTime();
+        DeviceGovernorHandler result = null;
+        boolean resultStale = true;
+        double resultDistance = Double.MAX_VALUE;
+        for (DeviceGovernorHandler handler : handlers) {
+            // reading distance first (volatile) guarantees visibility of the last advertised value
+            double distance = handler.distance;
+            if (distance == Double.MAX_VALUE) {
+                continue;
+            }
+            boolean stale = now - handler.lastAdvertised > STALE_TIMEOUT;
+            if (result == null || resultStale && !stale || resultStale == stale && distance < resultDistance) {
+                result = handler;
+                resultStale = stale;
+                resultDistance = distance;
+            }
+        }
+        return result != null ? result.delegate : null;
     }
 
     private void updateLastUpdated(Date lastActivity) {
-        if (lastChanged == null || lastChanged.before(lastActivity)) {
-            lastChanged = lastActivity;
+        if (lastChanged < lastActivity.getTime()) {
+            lastChanged = lastActivity.getTime();
             BluetoothManagerUtils.safeForEachError(governorListeners, listener -> {
                 listener.lastUpdatedChanged(lastActivity);
             }, logger, "Execution error of a governor listener: last changed");
@@ -506,6 +773,26 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
 
     private void updateRssi(short newRssi) {
         rssi = newRssi;
+        pendingRssi.set(newRssi);
+        if (rssiReporting.getAndIncrement() != 0) {
+            // another delegate is reporting, it will pick up the most recent value
+            return;
+        }
+        int missed = 1;
+        do {
+            int pending = pendingRssi.getAndSet(DeviceGovernorImpl.NO_RSSI);
+            if (pending != DeviceGovernorImpl.NO_RSSI) {
+                reportRssi((short) pending);
+            }
+            missed = rssiReporting.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void reportRssi(short newRssi) {
+        RssiReportingPolicy policy = rssiReportingPolicy;
+        if (policy != null && !policy.report(newRssi, clock.nanoTime())) {
+            return;
+        }
         BluetoothManagerUtils.safeForEachError(genericBluetoothDeviceListeners, listener -> {
             listener.rssiChanged(newRssi);
         }, logger, "Execution error of a RSSI listener");
@@ -516,8 +803,12 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
 
         private final DeviceGovernor delegate;
         private final int index;
-        private double distance = Double.MAX_VALUE;
-        private long lastAdvertised;
+        private final long registered = clock.nanoTime();
+        // Double.MAX_VALUE means that the delegate does not participate in the nearest adapter detection
+        private volatile double distance = Double.MAX_VALUE;
+        // monotonic time (see MonotonicClock#nanoTime()) of the last RSSI reading
+        private volatile long lastAdvertised;
+        private volatile short rssi;
         private boolean inited;
 
         private DeviceGovernorHandler(DeviceGovernor delegate, int index) {
@@ -542,9 +833,11 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
                 delegate.setRssiFilter(RssiKalmanFilter.class);
             }
             delegate.setOnlineTimeout(onlineTimeout);
+            delegate.setOfflineHysteresis(offlineHysteresis);
             delegate.setBlockedControl(blockedControl);
             delegate.setRssiFilteringEnabled(rssiFilteringEnabled);
             delegate.setRssiReportingRate(rssiReportingRate);
+            delegate.setRssiHistorySize(rssiHistorySize);
             delegate.setSignalPropagationExponent(signalPropagationExponent);
             delegate.setMeasuredTxPower(measuredTxPower);
 
@@ -630,7 +923,7 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
 
         @Override
         public void offline() {
-            sortedByDistanceGovernors.remove(this);
+            resetDistance();
             notifyIfChangedOnline(false);
         }
 
@@ -641,23 +934,13 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
 
         @Override
         public void rssiChanged(short newRssi) {
-            try {
-                if (rssiLock.tryLock(50, TimeUnit.MILLISECONDS)) {
-                    try {
-                        sortedByDistanceGovernors.remove(this);
-                        lastAdvertised = delegate.getLastAdvertised();
-                        distance = delegate.getEstimatedDistance();
-                        sortedByDistanceGovernors.add(this);
-                        nearest = sortedByDistanceGovernors.first().delegate;
-                        if (delegate == nearest) {
-                            updateRssi(newRssi);
-                        }
-                    } finally {
-                        rssiLock.unlock();
-                    }
-                }
-            } catch (InterruptedException ignore) {
-                logger.warn("Could not acquire a lock to update RSSI");
+            rssi = newRssi;
+            lastAdvertised = clock.nanoTime();
+            distance = estimateDistance(newRssi);
+            DeviceGovernor newNearest = findNearest();
+            nearest = newNearest;
+            if (delegate == newNearest) {
+                updateRssi(newRssi);
             }
         }
 
@@ -666,7 +949,7 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
             if (isReady) {
                 initUnsafe();
             } else {
-                sortedByDistanceGovernors.remove(this);
+                resetDistance();
             }
             notifyIfChangedReady(isReady);
         }
@@ -676,12 +959,38 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
             updateLastUpdated(lastActivity);
         }
 
+        private double estimateDistance(short rssi) {
+            // cached parameters only, so that RSSI notifications never call the transport or lock the manager
+            if (delegate instanceof DeviceGovernorImpl) {
+                return ((DeviceGovernorImpl) delegate).getCachedEstimatedDistance(rssi);
+            }
+            return delegate.getEstimatedDistance();
+        }
+
+        private void resetDistance() {
+            distance = Double.MAX_VALUE;
+            nearest = findNearest();
+        }
+
         private void dispose() {
             delegate.removeBluetoothSmartDeviceListener(this);
             delegate.removeGenericBluetoothDeviceListener(this);
             delegate.removeGovernorListener(this);
         }
 
+        private void unregister() {
+            dispose();
+            removeHandler(this);
+            resetDistance();
+            // clearing the delegate state so that its slot can be safely reused
+            notifyIfChangedOnline(false);
+            notifyIfChangedBlocked(false);
+            notifyIfChangedConnected(false);
+            servicesUnresolved();
+            notifyIfChangedReady(false);
+            indexes.release(index);
+        }
+
         private void notifyIfChangedOnline(boolean newState) {
             online.cumulativeSet(index, newState, () -> {
                 BluetoothManagerUtils.safeForEachError(genericBluetoothDeviceListeners, listener -> {
@@ -755,12 +1064,12 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
     private class DelegateRegistrar implements AdapterDiscoveryListener {
 
         @Override
-        public void discovered(DiscoveredAdapter adapter) {
-            registerDelegate(adapter);
-        }
+        public void discovered(DiscoveredAdapter adapter) { /* do nothing, delegates are created lazily */ }
 
         @Override
-        public void adapterLost(URL address) { /* do nothing */}
+        public void adapterLost(URL address) {
+            unregisterDelegate(address);
+        }
     }
 
     private class KalmanFilterProxy extends RssiKalmanFilter {
@@ -785,18 +1094,4 @@ class CombinedDeviceGovernorImpl implements DeviceGovernor, CombinedDeviceGovern
                     .forEach(consumer);
         }
     }
-
-    private class DistanceComparator implements Comparator<DeviceGovernorHandler> {
-
-        @Override
-        public int compare(DeviceGovernorHandler first, DeviceGovernorHandler second) {
-            long current = System.currentTimeMillis();
-            boolean firstStale = current - first.lastAdvertised > STALE_TIMEOUT;
-            boolean secondStale = current - second.lastAdvertised > STALE_TIMEOUT;
-            double firstWeighedValue = first.distance * (firstStale ? 1 : 1000);
-            double secondWeighedValue = second.distance * (secondStale ? 1 : 1000);
-
-            return Double.compare(firstWeighedValue, secondWeighedValue);
-        }
-    }
 }
@@ -20,17 +20,76 @@
 
 package org.sputnikdev.bluetooth.manager.impl;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.LongUnaryOperator;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * A utility class that can accommodate 63 boolean flags. It is similar to {@link java.util.BitSet}
- * but synchronized and provides some "atomic" utility methods for tracking changes.
+ * A lock-free utility class that accommodates a large number of boolean flags (up to {@link #MAX_INDEX} + 1)
+ * and tracks changes of the overall state, i.e. whether any of the flags is set.
+ * It is similar to {@link java.util.BitSet} but thread safe.
+ *
+ * <p>A bitmap is used either in "cumulative" mode ({@link #cumulativeSet(int, boolean)}), where the overall state
+ * is set if any of the flags is set, or in "exclusive" mode ({@link #exclusiveSet(int, boolean)}), where only one
+ * flag can be set at a time. Mixing both modes on the same bitmap is not allowed.
+ *
+ * <p>Flags are stored in lazily allocated segments of words and updated with CAS operations. The overall state
+ * is tracked by a single atomic field that packs the number of set flags (or the exclusive flag) together with
+ * a transition sequence number. Each update claims a sequence number with the same CAS that changes the overall
+ * state, so that "empty to non-empty" and "non-empty to empty" edges are detected exactly once.
+ *
+ * <p>Callbacks ("changed" / "not changed") are never invoked while holding a lock. They are executed one at a time
+ * and strictly in the order of the transitions (sequence numbers) they belong to. A callback can be executed
+ * by a thread that concurrently updates the same bitmap, therefore callbacks must not rely on the calling thread.
+ *
  * @author Vlad Kolotov
  */
 class ConcurrentBitMap {
 
-    private final AtomicLong bits = new AtomicLong();
+    static final int MAX_INDEX = (1 << 24) - 2;
+
+    // one bit more than needed for MAX_INDEX, as the number of set flags is signed
+    private static final int STATE_BITS = 25;
+    private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << (64 - STATE_BITS)) - 1;
+    private static final long SEQUENCE_INCREMENT = 1L << STATE_BITS;
+
+    private static final int SEGMENT_WORDS = 64;
+    private static final int SEGMENT_BITS = SEGMENT_WORDS * Long.SIZE;
+    private static final int MAX_SEGMENTS = (MAX_INDEX + SEGMENT_BITS) / SEGMENT_BITS;
+
+    private static final int EVENTS_CAPACITY = 1024;
+    private static final Runnable NO_OP = () -> { };
+
+    private static final int MODE_NONE = 0;
+    private static final int MODE_CUMULATIVE = 1;
+    private static final int MODE_EXCLUSIVE = 2;
+
+    private Logger logger = LoggerFactory.getLogger(ConcurrentBitMap.class);
+
+    private final AtomicReferenceArray<AtomicLongArray> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+    // number of segments that might have been allocated, used to limit scans
+    private final AtomicInteger segmentsUsed = new AtomicInteger();
+    // transition sequence (high bits) and either number of set flags or the exclusive flag index + 1 (low bits)
+    private final AtomicLong state = new AtomicLong();
+    private final AtomicInteger mode = new AtomicInteger(MODE_NONE);
+
+    // ordered callbacks ring, based on the Dmitry Vyukov's bounded queue
+    private final Runnable[] events = new Runnable[EVENTS_CAPACITY];
+    private final AtomicLongArray eventSequences = new AtomicLongArray(EVENTS_CAPACITY);
+    private final AtomicInteger wip = new AtomicInteger();
+    // only accessed by the thread that executes callbacks, visibility is guaranteed by the "wip" counter
+    private long nextEvent;
+
+    ConcurrentBitMap() {
+        for (int i = 0; i < EVENTS_CAPACITY; i++) {
+            eventSequences.set(i, i);
+        }
+    }
 
     /**
      * Sets a new cumulative state for the bitmap field.
@@ -52,38 +111,54 @@ class ConcurrentBitMap {
     }
 
     /**
-     * Sets a new exclusive state for the bitmap field.
+     * Sets a new cumulative state for the bitmap field.
      * @param index index of the new state
      * @param newState value of the new state
+     * @param changed triggered if the overall state changes
+     * @param notChanged triggered if the overall state does not change
      */
-    void exclusiveSet(int index, boolean newState) {
-        exclusiveSet(index, newState, null, null);
+    void cumulativeSet(int index, boolean newState, Runnable changed, Runnable notChanged) {
+        checkIndex(index);
+        checkMode(MODE_CUMULATIVE);
+        AtomicLongArray segment = getSegment(index / SEGMENT_BITS);
+        int word = (index % SEGMENT_BITS) / Long.SIZE;
+        long mask = 1L << (index % Long.SIZE);
+        long claimed;
+        boolean edge;
+        // the counter is changed only by the thread that has actually flipped the flag, hence it never needs
+        // to be reverted; it can get transiently negative if a flag is cleared before the thread that has set it
+        // increments the counter, edges are still detected on the counter crossing zero, so they always alternate
+        if (newState && (segment.getAndAccumulate(word, mask, (current, bit) -> current | bit) & mask) == 0) {
+            claimed = transition(1);
+            edge = population(claimed) == 0;
+        } else if (!newState
+                && (segment.getAndAccumulate(word, mask, (current, bit) -> current & ~bit) & mask) != 0) {
+            claimed = transition(-1);
+            edge = population(claimed) == 1;
+        } else {
+            claimed = transition(0);
+            edge = false;
+        }
+        publish(claimed, edge ? changed : notChanged);
     }
 
     /**
      * Sets a new exclusive state for the bitmap field.
      * @param index index of the new state
      * @param newState value of the new state
-     * @param changed triggered if the overall state changes
      */
-    void exclusiveSet(int index, boolean newState, Runnable changed) {
-        exclusiveSet(index, newState, changed, null);
+    void exclusiveSet(int index, boolean newState) {
+        exclusiveSet(index, newState, null, null);
     }
 
     /**
-     * Sets a new cumulative state for the bitmap field.
+     * Sets a new exclusive state for the bitmap field.
      * @param index index of the new state
      * @param newState value of the new state
      * @param changed triggered if the overall state changes
-     * @param notChanged triggered if the overall state does not change
      */
-    void cumulativeSet(int index, boolean newState, Runnable changed, Runnable notChanged) {
-        if (index < 0 || index > 63) {
-            throw new IllegalStateException("Invalid index, must be between 0 and 63: " + index);
-        }
-        set(current -> {
-            return newState ? current | (1 << index) : current & ~(1 << index);
-        }, changed, notChanged);
+    void exclusiveSet(int index, boolean newState, Runnable changed) {
+        exclusiveSet(index, newState, changed, null);
     }
 
     /**
@@ -94,12 +169,27 @@ class ConcurrentBitMap {
      * @param notChanged triggered if the overall state does not change
      */
     void exclusiveSet(int index, boolean newState, Runnable changed, Runnable notChanged) {
-        if (index < 0 || index > 63) {
-            throw new IllegalStateException("Invalid index, must be between 0 and 63: " + index);
-        }
-        set(current -> {
-            return newState ? (1 << index) : current & ~(1 << index);
-        }, changed, notChanged);
+        checkIndex(index);
+        checkMode(MODE_EXCLUSIVE);
+        long holder = index + 1;
+        long current;
+        long next;
+        boolean edge;
+        do {
+            current = state.get();
+            long currentHolder = current & STATE_MASK;
+            if (newState) {
+                next = advance(current) | holder;
+                edge = currentHolder == 0;
+            } else if (currentHolder == holder) {
+                next = advance(current);
+                edge = true;
+            } else {
+                next = advance(current) | currentHolder;
+                edge = false;
+            }
+        } while (!state.compareAndSet(current, next));
+        publish(current, edge ? changed : notChanged);
     }
 
     /**
@@ -107,7 +197,7 @@ class ConcurrentBitMap {
      * @return true if any of bits is set to 1, false otherwise
      */
     boolean get() {
-        return bits.get() > 0;
+        return population(state.get()) > 0;
     }
 
     /**
@@ -116,23 +206,108 @@ class ConcurrentBitMap {
      * @return one bit index
      */
     int getUniqueIndex() {
-        long state = bits.get();
-        if (Long.bitCount(state) > 1) {
-            throw new IllegalStateException("Multiple one bits found");
+        if (mode.get() == MODE_EXCLUSIVE) {
+            return (int) (state.get() & STATE_MASK) - 1;
+        }
+        int result = -1;
+        int used = segmentsUsed.get();
+        for (int i = 0; i < used; i++) {
+            AtomicLongArray segment = segments.get(i);
+            if (segment == null) {
+                continue;
+            }
+            for (int word = 0; word < SEGMENT_WORDS; word++) {
+                long bits = segment.get(word);
+                if (bits == 0) {
+                    continue;
+                }
+                if (result >= 0 || Long.bitCount(bits) > 1) {
+                    throw new IllegalStateException("Multiple one bits found");
+                }
+                result = i * SEGMENT_BITS + word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return result;
+    }
+
+    private long transition(long delta) {
+        long current;
+        long next;
+        do {
+            current = state.get();
+            next = advance(current) | (current + delta) & STATE_MASK;
+        } while (!state.compareAndSet(current, next));
+        return current;
+    }
+
+    private AtomicLongArray getSegment(int index) {
+        AtomicLongArray segment = segments.get(index);
+        if (segment == null) {
+            segments.compareAndSet(index, null, new AtomicLongArray(SEGMENT_WORDS));
+            segment = segments.get(index);
+            segmentsUsed.accumulateAndGet(index + 1, Math::max);
+        }
+        return segment;
+    }
+
+    private void publish(long claimed, Runnable callback) {
+        long sequence = claimed >>> STATE_BITS;
+        int slot = (int) (sequence & (EVENTS_CAPACITY - 1));
+        // waiting until the callback of the previous round gets executed
+        while (eventSequences.get(slot) != sequence) {
+            Thread.yield();
         }
-        return Long.numberOfTrailingZeros(state);
+        events[slot] = callback != null ? callback : NO_OP;
+        eventSequences.set(slot, (sequence + 1) & SEQUENCE_MASK);
+        drain();
     }
 
-    private void set(LongUnaryOperator operator, Runnable changed, Runnable notChanged) {
-        synchronized (bits) {
-            long oldState = bits.getAndUpdate(operator);
-            if (bits.get() > 0 && oldState == 0 || bits.get() == 0 && oldState > 0) {
-                if (changed != null) {
-                    changed.run();
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            // another thread is executing callbacks, it will pick up the published one
+            return;
+        }
+        int missed = 1;
+        do {
+            while (true) {
+                int slot = (int) (nextEvent & (EVENTS_CAPACITY - 1));
+                if (eventSequences.get(slot) != ((nextEvent + 1) & SEQUENCE_MASK)) {
+                    break;
+                }
+                Runnable callback = events[slot];
+                events[slot] = null;
+                eventSequences.set(slot, (nextEvent + EVENTS_CAPACITY) & SEQUENCE_MASK);
+                nextEvent = (nextEvent + 1) & SEQUENCE_MASK;
+                try {
+                    callback.run();
+                } catch (Exception ex) {
+                    logger.error("Execution error of a bitmap callback", ex);
                 }
-            } else if (notChanged != null) {
-                notChanged.run();
             }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void checkMode(int expected) {
+        int current = mode.get();
+        if (current != expected && !(current == MODE_NONE && mode.compareAndSet(MODE_NONE, expected))
+                && mode.get() != expected) {
+            throw new IllegalStateException("Cumulative and exclusive modes cannot be mixed");
+        }
+    }
+
+    private static long advance(long current) {
+        return ((current >>> STATE_BITS) + 1 & SEQUENCE_MASK) << STATE_BITS;
+    }
+
+    private static long population(long state) {
+        // the number of set flags is a signed value
+        return state << (64 - STATE_BITS) >> (64 - STATE_BITS);
+    }
+
+    private static void checkIndex(int index) {
+        if (index < 0 || index > MAX_INDEX) {
+            throw new IllegalStateException("Invalid index, must be between 0 and " + MAX_INDEX + ": " + index);
         }
     }
 
@@ -23,32 +23,44 @@ package org.sputnikdev.bluetooth.manager.impl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sputnikdev.bluetooth.Filter;
-import org.sputnikdev.bluetooth.RssiKalmanFilter;
 import org.sputnikdev.bluetooth.URL;
 import org.sputnikdev.bluetooth.manager.AdapterGovernor;
+import org.sputnikdev.bluetooth.manager.BatchReadResult;
 import org.sputnikdev.bluetooth.manager.BluetoothObjectType;
 import org.sputnikdev.bluetooth.manager.BluetoothObjectVisitor;
 import org.sputnikdev.bluetooth.manager.BluetoothSmartDeviceListener;
 import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
 import org.sputnikdev.bluetooth.manager.DeviceGovernor;
 import org.sputnikdev.bluetooth.manager.GattCharacteristic;
+import org.sputnikdev.bluetooth.manager.GattOperationPriority;
+import org.sputnikdev.bluetooth.manager.GattOperationStatistics;
 import org.sputnikdev.bluetooth.manager.GattService;
 import org.sputnikdev.bluetooth.manager.GenericBluetoothDeviceListener;
 import org.sputnikdev.bluetooth.manager.NotReadyException;
+import org.sputnikdev.bluetooth.manager.RssiHistory;
+import org.sputnikdev.bluetooth.manager.RssiReportingPolicy;
+import org.sputnikdev.bluetooth.manager.filter.KalmanFilter;
+import org.sputnikdev.bluetooth.manager.filter.ShortFilter;
+import org.sputnikdev.bluetooth.manager.transport.BooleanNotification;
 import org.sputnikdev.bluetooth.manager.transport.Characteristic;
 import org.sputnikdev.bluetooth.manager.transport.Device;
-import org.sputnikdev.bluetooth.manager.transport.Notification;
 import org.sputnikdev.bluetooth.manager.transport.Service;
+import org.sputnikdev.bluetooth.manager.transport.ShortNotification;
 
-import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  *
@@ -62,6 +74,9 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
     static final int DEFAULT_ONLINE_TIMEOUT = 20;
     static final short DEFAULT_TX_POWER = -55;
     static final double DEFAULT_SIGNAL_PROPAGATION_EXPONENT = 4.0; // indoors
+    static final int RSSI_BUFFER_CAPACITY = 256;
+    // a sentinel for the "no RSSI" slots, real RSSI values always fit into a short
+    static final int NO_RSSI = Integer.MIN_VALUE;
 
     private final List<GenericBluetoothDeviceListener> genericBluetoothDeviceListeners = new CopyOnWriteArrayList<>();
     private final List<BluetoothSmartDeviceListener> bluetoothSmartDeviceListeners = new CopyOnWriteArrayList<>();
@@ -70,21 +85,53 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
     private ServicesResolvedNotification servicesResolvedNotification;
     private RSSINotification rssiNotification;
     private boolean connectionControl;
+    private final GattOperationQueue gattOperationQueue;
+    // whether the connection is accounted by the adapter load tracker
+    private final AtomicBoolean connectionCounted = new AtomicBoolean();
     private boolean blockedControl;
-    private boolean online;
-    private int onlineTimeout = DEFAULT_ONLINE_TIMEOUT;
-
-    private final Lock rssiUpdateLock = new ReentrantLock();
-    private Filter<Short> rssiFilter = new RssiKalmanFilter();
+    private volatile boolean online;
+    private final Object onlineLock = new Object();
+    private volatile int onlineTimeout = DEFAULT_ONLINE_TIMEOUT;
+    private volatile int offlineHysteresis;
+    // fires "offline" event as soon as the device has been inactive for longer than the offline timeout
+    private final OnlineExpiry onlineExpiry = new OnlineExpiry();
+
+    // RSSI samples are never dropped, they are buffered and then filtered in batches by a single thread at a time
+    private final ShortMpscRingBuffer rssiSamples = new ShortMpscRingBuffer(RSSI_BUFFER_CAPACITY);
+    private final short[] rssiBatch = new short[RSSI_BUFFER_CAPACITY];
+    private final LongAdder rssiReceived = new LongAdder();
+    private final LongAdder rssiFiltered = new LongAdder();
+    // the RSSI of a connected device that is polled by the update job, NO_RSSI if it has been reported
+    private final AtomicInteger polledRssi = new AtomicInteger(NO_RSSI);
+    // the generic and primitive views of the RSSI filter are published together, the primitive one is used
+    // on the filtering path; by default it is a primitive Kalman filter, so that samples are never boxed
+    private volatile RssiFilterHolder rssiFilter = new RssiFilterHolder(new KalmanFilter());
     private boolean rssiFilteringEnabled = true;
     private long rssiReportingRate = DEFAULT_RSSI_REPORTING_RATE;
-    private Date rssiLastNotified = new Date();
-    private short measuredTxPower;
-    private double signalPropagationExponent;
-    private long lastAdvertised;
+    private long rssiLastNotified;
+    private volatile RssiReportingPolicy rssiReportingPolicy;
+    private volatile short measuredTxPower;
+    private volatile double signalPropagationExponent;
+    // TX power reported by the transport and propagation exponent of the adapter, both refreshed by the update
+    // routine so that distance can be estimated by other threads without native calls or governor lookups
+    private volatile short reportedTxPower;
+    private volatile double adapterPropagationExponent;
+    private volatile long lastAdvertised;
+    private volatile short lastRssi;
+    private volatile RssiHistoryImpl rssiHistory;
+
+    private final URL adapterURL;
+    private int snapshotId = -1;
 
     DeviceGovernorImpl(BluetoothManagerImpl bluetoothManager, URL url) {
-        super(bluetoothManager, url);
+        this(bluetoothManager, url, MonotonicClock.SYSTEM);
+    }
+
+    DeviceGovernorImpl(BluetoothManagerImpl bluetoothManager, URL url, MonotonicClock clock) {
+        super(bluetoothManager, url, clock);
+        adapterURL = url.getAdapterURL();
+        rssiLastNotified = clock.nanoTime();
+        gattOperationQueue = new GattOperationQueue(url, clock);
     }
 
     @Override
@@ -99,6 +146,7 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
     void update(Device device) {
         AdapterGovernor adapterGovernor = bluetoothManager.getAdapterGovernor(getURL());
         if (adapterGovernor != null && adapterGovernor.isReady() && adapterGovernor.isPowered()) {
+            updateDistanceParameters(device, adapterGovernor);
             updateBlocked(device);
             if (!blockedControl) {
                 // Note: BlueGiga and TinyB devices work in different way:
@@ -108,12 +156,14 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
                 // Further note: TinyB device when connected constantly returns the very last known RSSI
                 boolean connected = updateConnected(device);
                 if (connected) {
-                    notifyRSSIChanged(getRSSI());
+                    // reported by the draining thread, so that the reporting policy is never called concurrently
+                    polledRssi.set(getRSSI());
+                    drainRSSI();
                     updateLastChanged();
                 }
             }
         }
-        updateOnline(isOnline());
+        updateOnline(online ? !isOfflineTimedOut() : isRecentlyActive());
     }
 
     @Override
@@ -135,14 +185,30 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
         servicesResolvedNotification = null;
         rssiNotification = null;
         blockedNotification = null;
+        reportedTxPower = 0;
         logger.info("Resetting device governor completed: " + getURL());
     }
 
     @Override
     public void dispose() {
         super.dispose();
+        updateConnectionLoad(false);
+        ExpiryWheel expiryWheel = bluetoothManager.getExpiryWheel();
+        if (expiryWheel != null) {
+            expiryWheel.cancel(onlineExpiry);
+        }
         genericBluetoothDeviceListeners.clear();
         bluetoothSmartDeviceListeners.clear();
+        releaseRssiFilter(rssiFilter.shortFilter);
+    }
+
+    @Override
+    public GattOperationStatistics getGattOperationStatistics() {
+        return gattOperationQueue;
+    }
+
+    GattOperationQueue getGattOperationQueue() {
+        return gattOperationQueue;
     }
 
     @Override
@@ -208,9 +274,8 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
 
     @Override
     public boolean isOnline() {
-        Date lastActivity = getLastActivity();
-        return lastActivity != null && Instant.now().minusSeconds(onlineTimeout)
-            .isBefore(getLastActivity().toInstant());
+        // the state online/offline events have been fired for, i.e. including the offline hysteresis
+        return online;
     }
 
     @Override
@@ -221,6 +286,24 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
     @Override
     public void setOnlineTimeout(int onlineTimeout) {
         this.onlineTimeout = onlineTimeout;
+        scheduleOnlineExpiry();
+    }
+
+    @Override
+    public int getOfflineHysteresis() {
+        return offlineHysteresis;
+    }
+
+    @Override
+    public void setOfflineHysteresis(int offlineHysteresis) {
+        this.offlineHysteresis = offlineHysteresis;
+        scheduleOnlineExpiry();
+    }
+
+    @Override
+    void updateLastChanged() {
+        super.updateLastChanged();
+        scheduleOnlineExpiry();
     }
 
     @Override
@@ -230,12 +313,17 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
 
     @Override
     public void setRssiFilter(Class<? extends Filter<Short>> filter) {
-        rssiFilter = createFilter(filter);
+        installRssiFilter(createFilter(filter));
+    }
+
+    @Override
+    public void setRssiFilterFactory(Supplier<? extends ShortFilter> factory) {
+        installRssiFilter(factory != null ? factory.get() : null);
     }
 
     @Override
     public Filter<Short> getRssiFilter() {
-        return rssiFilter;
+        return rssiFilter.getFilter();
     }
 
     @Override
@@ -253,6 +341,42 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
         return rssiReportingRate;
     }
 
+    @Override
+    public long getRssiSamplesReceived() {
+        return rssiReceived.sum();
+    }
+
+    @Override
+    public long getRssiSamplesFiltered() {
+        return rssiFiltered.sum();
+    }
+
+    @Override
+    public void setRssiReportingPolicyFactory(Supplier<? extends RssiReportingPolicy> factory) {
+        rssiReportingPolicy = factory != null ? factory.get() : null;
+    }
+
+    @Override
+    public void setRssiHistorySize(int size) {
+        RssiHistoryImpl history = rssiHistory;
+        if (size <= 0) {
+            rssiHistory = null;
+        } else if (history == null || history.capacity() != size) {
+            rssiHistory = new RssiHistoryImpl(size, clock);
+        }
+    }
+
+    @Override
+    public int getRssiHistorySize() {
+        RssiHistoryImpl history = rssiHistory;
+        return history != null ? history.capacity() : 0;
+    }
+
+    @Override
+    public RssiHistory getRssiHistory() {
+        return rssiHistory;
+    }
+
     @Override
     public long getLastAdvertised() {
         return lastAdvertised;
@@ -286,16 +410,18 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
     @Override
     public double getEstimatedDistance() {
         short rssi = 0;
-        if (rssiFilteringEnabled && rssiFilter != null) {
-            rssi = rssiFilter.current();
+        ShortFilter filter = rssiFilter.shortFilter;
+        if (rssiFilteringEnabled && filter != null) {
+            rssi = filter.current();
         }
         if (rssi == 0 && isReady()) {
             rssi = getRSSI();
         }
-        if (rssi == 0) {
-            return 0;
-        }
-        return Math.pow(10d, ((double) getTxPowerInternal() - rssi) / (10 * getPropagationExponentInternal()));
+        return getEstimatedDistance(rssi);
+    }
+
+    double getEstimatedDistance(short rssi) {
+        return estimateDistance(rssi, getTxPowerInternal(), getPropagationExponentInternal());
     }
 
     @Override
@@ -341,9 +467,9 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
     public List<GattService> getResolvedServices() throws NotReadyException {
         List<GattService> services = new ArrayList<>();
         Device device = getBluetoothObject();
-        for (Service service : device.getServices()) {
+        for (Service service : callTransport(device::getServices)) {
             List<GattCharacteristic> characteristics = new ArrayList<>();
-            for (Characteristic characteristic : service.getCharacteristics()) {
+            for (Characteristic characteristic : callTransport(service::getCharacteristics)) {
                 characteristics.add(convert(characteristic));
             }
             services.add(new GattService(service.getURL(), characteristics));
@@ -354,9 +480,10 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
     @Override
     public Map<URL, List<CharacteristicGovernor>> getServicesToCharacteristicsMap() throws NotReadyException {
         Map<URL, List<CharacteristicGovernor>> services = new HashMap<>();
-        for (Service service : getBluetoothObject().getServices()) {
+        Device device = getBluetoothObject();
+        for (Service service : callTransport(device::getServices)) {
             URL serviceURL = service.getURL();
-            services.put(serviceURL, (List) bluetoothManager.getGovernors(service.getCharacteristics()));
+            services.put(serviceURL, (List) bluetoothManager.getGovernors(callTransport(service::getCharacteristics)));
         }
         return services;
     }
@@ -371,6 +498,35 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
         return (List) bluetoothManager.getGovernors(getAllCharacteristics());
     }
 
+    @Override
+    public BatchReadResult readAll(Collection<URL> characteristics) throws NotReadyException {
+        Device device = getBluetoothObject();
+        Set<URL> requested = new LinkedHashSet<>();
+        characteristics.forEach(characteristic -> requested.add(characteristic.copyWithProtocol(null)));
+        // resolving all requested characteristics in one pass
+        Map<URL, Characteristic> resolved = new LinkedHashMap<>();
+        for (Characteristic characteristic : getAllCharacteristics()) {
+            URL characteristicURL = characteristic.getURL().copyWithProtocol(null);
+            if (requested.contains(characteristicURL)) {
+                resolved.put(characteristicURL, characteristic);
+            }
+        }
+        Map<URL, byte[]> values = new LinkedHashMap<>();
+        Map<URL, Exception> errors = new LinkedHashMap<>();
+        requested.stream().filter(characteristic -> !resolved.containsKey(characteristic)).forEach(
+            characteristic -> errors.put(characteristic,
+                    new NotReadyException("Characteristic is not resolved: " + characteristic)));
+        if (!resolved.isEmpty()) {
+            gattOperationQueue.execute(GattOperationPriority.NORMAL, bluetoothManager.getGattOperationTimeout(),
+                () -> {
+                    readValues(device, resolved, values, errors);
+                    return null;
+                });
+            updateLastChanged();
+        }
+        return new BatchReadResult(values, errors);
+    }
+
     @Override
     public String toString() {
         String result = "[Device] " + getURL();
@@ -397,6 +553,7 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
     }
 
     void notifyConnected(boolean connected) {
+        updateConnectionLoad(connected);
         bluetoothSmartDeviceListeners.forEach(listener -> {
             try {
                 if (connected) {
@@ -436,25 +593,95 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
     }
 
     void updateRSSI(short next) {
-        lastAdvertised = System.currentTimeMillis();
-        Filter<Short> filter = rssiFilter;
-        if (rssiUpdateLock.tryLock()) {
-            try {
-                if (filter != null && rssiFilteringEnabled) {
-                    // devices can report RSSI too fast that we can't handle it, so we skip some readings
-                    notifyRSSIChanged(filter.next(next));
-                } else {
-                    notifyRSSIChanged(next);
+        lastAdvertised = clock.currentTimeMillis();
+        rssiReceived.increment();
+        while (!rssiSamples.offer(next)) {
+            // the buffer is full, help to drain it (or let the draining thread to free up some space)
+            drainRSSI();
+            Thread.yield();
+        }
+        drainRSSI();
+    }
+
+    private void drainRSSI() {
+        if (!rssiSamples.enterDrain()) {
+            // another thread is draining, it will pick up the sample
+            return;
+        }
+        int missed = 1;
+        do {
+            int count;
+            while ((count = rssiSamples.drainTo(rssiBatch)) > 0) {
+                try {
+                    filterRSSI(count);
+                } catch (Exception ex) {
+                    logger.error("Could not filter RSSI samples: {}", getURL(), ex);
                 }
-            } finally {
-                rssiUpdateLock.unlock();
             }
+            int polled = polledRssi.getAndSet(NO_RSSI);
+            if (polled != NO_RSSI) {
+                notifyRSSIChanged((short) polled);
+            }
+            missed = rssiSamples.exitDrain(missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Switches RSSI filtering to a manager level filtering engine, the current filter gets replaced with
+     * a view onto the engine.
+     * @param engine RSSI filtering engine
+     */
+    void useRssiFilteringEngine(RssiFilteringEngine engine) {
+        installRssiFilter(engine.createFilter());
+    }
+
+    private void installRssiFilter(Filter<Short> filter) {
+        ShortFilter previous = rssiFilter.shortFilter;
+        rssiFilter = new RssiFilterHolder(filter);
+        releaseRssiFilter(previous);
+    }
+
+    private void installRssiFilter(ShortFilter filter) {
+        ShortFilter previous = rssiFilter.shortFilter;
+        rssiFilter = new RssiFilterHolder(filter);
+        releaseRssiFilter(previous);
+    }
+
+    private void filterRSSI(int count) {
+        RssiFilterHolder holder = rssiFilter;
+        short rssi = rssiBatch[count - 1];
+        ShortFilter shortFilter = holder.shortFilter;
+        if (shortFilter != null && rssiFilteringEnabled) {
+            if (shortFilter instanceof RssiFilteringEngine.EngineFilter) {
+                rssi = ((RssiFilteringEngine.EngineFilter) shortFilter).next(rssiBatch, count);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    rssi = shortFilter.next(rssiBatch[i]);
+                }
+            }
+        }
+        rssiFiltered.add(count);
+        RssiHistoryImpl history = rssiHistory;
+        if (history != null) {
+            history.add(rssiBatch, count, clock.nanoTime());
         }
+        lastRssi = rssi;
+        // a single notification per batch, listeners are interested in the most recent value only
+        notifyRSSIChanged(rssi);
     }
 
     void notifyRSSIChanged(short next) {
-        if (rssiReportingRate == 0
-            || System.currentTimeMillis() - rssiLastNotified.getTime() > rssiReportingRate) {
+        long now = clock.nanoTime();
+        RssiReportingPolicy policy = rssiReportingPolicy;
+        boolean report;
+        if (policy != null) {
+            // only the draining thread gets here, no need to synchronize the policy
+            report = policy.report(next, now);
+        } else {
+            report = rssiReportingRate == 0
+                    || now - rssiLastNotified > TimeUnit.MILLISECONDS.toNanos(rssiReportingRate);
+        }
+        if (report) {
             genericBluetoothDeviceListeners.forEach(listener -> {
                 try {
                     listener.rssiChanged(next);
@@ -462,7 +689,70 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
                     logger.error("Execution error of a RSSI listener", ex);
                 }
             });
-            rssiLastNotified = new Date();
+            rssiLastNotified = now;
+        }
+    }
+
+    /**
+     * Returns the last known (filtered if filtering is enabled) RSSI without querying the device.
+     * @return the last known RSSI or 0 if the device has never advertised
+     */
+    short getLastRssi() {
+        return lastRssi;
+    }
+
+    URL getAdapterURL() {
+        return adapterURL;
+    }
+
+    int getSnapshotId() {
+        return snapshotId;
+    }
+
+    void setSnapshotId(int snapshotId) {
+        this.snapshotId = snapshotId;
+    }
+
+    /**
+     * Estimates distance for a given RSSI from the cached distance parameters, i.e. without querying
+     * the transport or the adapter governor. This is used by bulk consumers, e.g. RSSI snapshots.
+     * @param rssi RSSI
+     * @return estimated distance
+     */
+    double getCachedEstimatedDistance(short rssi) {
+        short txPower = measuredTxPower;
+        if (txPower == 0) {
+            txPower = reportedTxPower;
+        }
+        if (txPower == 0) {
+            txPower = DEFAULT_TX_POWER;
+        }
+        double propagationExponent = signalPropagationExponent;
+        if (propagationExponent == 0) {
+            propagationExponent = adapterPropagationExponent;
+        }
+        if (propagationExponent == 0) {
+            propagationExponent = DEFAULT_SIGNAL_PROPAGATION_EXPONENT;
+        }
+        return estimateDistance(rssi, txPower, propagationExponent);
+    }
+
+    private static double estimateDistance(short rssi, short txPower, double propagationExponent) {
+        if (rssi == 0) {
+            return 0;
+        }
+        return Math.pow(10d, ((double) txPower - rssi) / (10 * propagationExponent));
+    }
+
+    private void updateDistanceParameters(Device device, AdapterGovernor adapterGovernor) {
+        adapterPropagationExponent = adapterGovernor.getSignalPropagationExponent();
+        if (measuredTxPower == 0 && reportedTxPower == 0) {
+            // TX power does not change, it is queried until the transport reports it
+            try {
+                reportedTxPower = device.getTxPower();
+            } catch (RuntimeException ex) {
+                logger.debug("Could not get TX power: {}", getURL(), ex);
+            }
         }
     }
 
@@ -480,12 +770,37 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
         });
     }
 
+    private void readValues(Device device, Map<URL, Characteristic> characteristics,
+                            Map<URL, byte[]> values, Map<URL, Exception> errors) {
+        Map<URL, byte[]> batch = null;
+        try {
+            batch = callTransport(() -> device.readValues(new ArrayList<>(characteristics.values())));
+        } catch (Exception ex) {
+            logger.debug("Could not read characteristics in batch, reading them one by one: {} : {}",
+                    url, ex.getMessage());
+        }
+        for (Map.Entry<URL, Characteristic> entry : characteristics.entrySet()) {
+            byte[] value = batch != null ? batch.get(entry.getKey()) : null;
+            if (value == null) {
+                // either the transport does not support batch reads or the characteristic could not be read in batch
+                try {
+                    value = callTransport(entry.getValue()::readValue);
+                } catch (Exception ex) {
+                    errors.put(entry.getKey(), ex);
+                    continue;
+                }
+            }
+            values.put(entry.getKey(), value);
+        }
+    }
+
     private List<Characteristic> getAllCharacteristics() throws NotReadyException {
         List<Characteristic> characteristics = new ArrayList<>();
-        List<Service> services = getBluetoothObject().getServices();
+        Device device = getBluetoothObject();
+        List<Service> services = callTransport(device::getServices);
         if (services != null) {
             for (Service service : services) {
-                List<Characteristic> chars = service.getCharacteristics();
+                List<Characteristic> chars = callTransport(service::getCharacteristics);
                 if (chars != null) {
                     characteristics.addAll(chars);
                 }
@@ -498,7 +813,7 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
         if (connectionNotification == null) {
             logger.info("Enabling connection notification: {} ", getURL());
             connectionNotification = new ConnectionNotification();
-            bluetoothDevice.enableConnectedNotifications(connectionNotification);
+            bluetoothDevice.enablePrimitiveConnectedNotifications(connectionNotification);
         }
     }
 
@@ -506,7 +821,7 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
         if (blockedNotification == null) {
             logger.info("Enabling blocked notification: {} ", getURL());
             blockedNotification = new BlockedNotification();
-            bluetoothDevice.enableBlockedNotifications(blockedNotification);
+            bluetoothDevice.enablePrimitiveBlockedNotifications(blockedNotification);
         }
     }
 
@@ -514,7 +829,7 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
         if (servicesResolvedNotification == null) {
             logger.info("Enabling services resolved notification: {} ", getURL());
             servicesResolvedNotification = new ServicesResolvedNotification();
-            bluetoothDevice.enableServicesResolvedNotifications(servicesResolvedNotification);
+            bluetoothDevice.enablePrimitiveServicesResolvedNotifications(servicesResolvedNotification);
         }
     }
 
@@ -522,11 +837,12 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
         if (rssiNotification == null) {
             logger.info("Enabling RSSI notification: {} ", getURL());
             rssiNotification = new RSSINotification();
-            bluetoothDevice.enableRSSINotifications(rssiNotification);
+            bluetoothDevice.enablePrimitiveRSSINotifications(rssiNotification);
         }
     }
 
     private void updateCharacteristics() {
+        bluetoothManager.invalidateSubscriptions(url);
         bluetoothManager.updateDescendants(url);
     }
 
@@ -534,15 +850,39 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
         bluetoothManager.resetDescendants(url);
     }
 
-    private static GattCharacteristic convert(Characteristic characteristic) {
-        return new GattCharacteristic(characteristic.getURL(), characteristic.getFlags());
+    private GattCharacteristic convert(Characteristic characteristic) {
+        return new GattCharacteristic(characteristic.getURL(), callTransport(characteristic::getFlags));
     }
 
     private void updateOnline(boolean online) {
-        if (online != this.online) {
-            notifyOnline(online);
+        // this method is called by both the update job and the expiry wheel
+        synchronized (onlineLock) {
+            if (online == this.online) {
+                return;
+            }
+            this.online = online;
+        }
+        notifyOnline(online);
+    }
+
+    private boolean isRecentlyActive() {
+        return getIdleNanos() < TimeUnit.SECONDS.toNanos(onlineTimeout);
+    }
+
+    private boolean isOfflineTimedOut() {
+        return getIdleNanos() >= getOfflineTimeoutNanos();
+    }
+
+    private long getOfflineTimeoutNanos() {
+        return TimeUnit.SECONDS.toNanos(onlineTimeout + offlineHysteresis);
+    }
+
+    private void scheduleOnlineExpiry() {
+        ExpiryWheel expiryWheel = bluetoothManager.getExpiryWheel();
+        long lastActivityNanos = getLastActivityNanos();
+        if (expiryWheel != null && lastActivityNanos != Long.MIN_VALUE) {
+            expiryWheel.schedule(onlineExpiry, lastActivityNanos + getOfflineTimeoutNanos());
         }
-        this.online = online;
     }
 
 
@@ -555,7 +895,18 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
     private boolean updateConnected(Device device) {
         boolean connected = device.isConnected();
         if (connectionControl && !connected) {
-            connected = device.connect();
+            AdapterLoadTracker tracker = bluetoothManager.getAdapterLoadTracker();
+            long started = clock.nanoTime();
+            boolean success = false;
+            try {
+                connected = connectTransport(device::connect);
+                success = connected;
+            } finally {
+                if (tracker != null) {
+                    long finished = clock.nanoTime();
+                    tracker.connectionAttempted(adapterURL, finished - started, success, finished);
+                }
+            }
         } else if (!connectionControl && connected) {
             device.disconnect();
             resetCharacteristics();
@@ -564,6 +915,17 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
         return connected;
     }
 
+    private void updateConnectionLoad(boolean connected) {
+        AdapterLoadTracker tracker = bluetoothManager.getAdapterLoadTracker();
+        if (tracker != null && connectionCounted.compareAndSet(!connected, connected)) {
+            if (connected) {
+                tracker.connected(adapterURL);
+            } else {
+                tracker.disconnected(adapterURL);
+            }
+        }
+    }
+
     private short getTxPowerInternal() {
         short txPower = measuredTxPower;
         if (txPower == 0 && isReady()) {
@@ -589,27 +951,27 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
         return propagationExponent;
     }
 
-    private class ConnectionNotification implements Notification<Boolean> {
+    private class ConnectionNotification implements BooleanNotification {
         @Override
-        public void notify(Boolean connected) {
+        public void notify(boolean connected) {
             logger.info("Connected (notification): " + getURL() + " " + connected);
             notifyConnected(connected);
             updateLastChanged();
         }
     }
 
-    private class BlockedNotification implements Notification<Boolean> {
+    private class BlockedNotification implements BooleanNotification {
         @Override
-        public void notify(Boolean blocked) {
+        public void notify(boolean blocked) {
             logger.info("Blocked (notification): " + getURL() + " " + blocked);
             notifyBlocked(blocked);
             updateLastChanged();
         }
     }
 
-    private class ServicesResolvedNotification implements Notification<Boolean> {
+    private class ServicesResolvedNotification implements BooleanNotification {
         @Override
-        public void notify(Boolean serviceResolved) {
+        public void notify(boolean serviceResolved) {
             logger.info("Services resolved (notification): " + serviceResolved);
 
             if (serviceResolved) {
@@ -624,14 +986,32 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
         }
     }
 
-    private class RSSINotification implements Notification<Short> {
+    private final class OnlineExpiry extends ExpiryWheel.Entry {
+        @Override
+        void expired() {
+            if (isOfflineTimedOut()) {
+                updateOnline(false);
+            } else {
+                // the device has shown some activity in the meantime
+                scheduleOnlineExpiry();
+            }
+        }
+    }
+
+    private class RSSINotification implements ShortNotification {
         @Override
-        public void notify(Short rssi) {
+        public void notify(short rssi) {
             updateRSSI(rssi);
             updateLastChanged();
         }
     }
 
+    private static void releaseRssiFilter(ShortFilter filter) {
+        if (filter instanceof RssiFilteringEngine.EngineFilter) {
+            ((RssiFilteringEngine.EngineFilter) filter).release();
+        }
+    }
+
     protected Filter<Short> createFilter(Class<? extends Filter<Short>> filter) {
         try {
             return filter != null ? filter.newInstance() : null;
@@ -640,4 +1020,29 @@ class DeviceGovernorImpl extends AbstractBluetoothObjectGovernor<Device> impleme
         }
     }
 
+    private static final class RssiFilterHolder {
+        private final ShortFilter shortFilter;
+        // the generic view is created on demand, filtering only uses the primitive filter
+        private volatile Filter<Short> filter;
+
+        private RssiFilterHolder(Filter<Short> filter) {
+            this.filter = filter;
+            shortFilter = ShortFilterAdapters.toShortFilter(filter);
+        }
+
+        private RssiFilterHolder(ShortFilter shortFilter) {
+            this.shortFilter = shortFilter;
+        }
+
+        private Filter<Short> getFilter() {
+            Filter<Short> view = filter;
+            if (view == null && shortFilter != null) {
+                // racing threads may create separate views, they are stateless so it does not matter
+                view = ShortFilterAdapters.toFilter(shortFilter);
+                filter = view;
+            }
+            return view;
+        }
+    }
+
 }
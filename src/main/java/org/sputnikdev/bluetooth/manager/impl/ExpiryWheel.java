@@ -0,0 +1,177 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A hashed timing wheel that fires expiry callbacks of a large number of entries (e.g. device online timeouts)
+ * without polling each of them.
+ *
+ * <p>Entries are re-armed lazily: re-scheduling an entry that is already in the wheel only updates its deadline
+ * (a single volatile write), the entry stays in its old bucket. When the bucket is processed, the entry is either
+ * moved to the bucket of its new deadline or expired. Therefore re-arming costs O(1) and never blocks, which
+ * makes it cheap enough to be called on every activity update. A consequence of this is that moving a deadline
+ * to an earlier time does not take effect until the previously scheduled deadline is reached.
+ *
+ * <p>Buckets are lock-free stacks, the wheel is advanced by a single thread ({@link #advance(long)}).
+ * All times are in nanoseconds of a monotonic clock.
+ *
+ * @author Vlad Kolotov
+ */
+class ExpiryWheel {
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private Logger logger = LoggerFactory.getLogger(ExpiryWheel.class);
+
+    private final long tickNanos;
+    private final int mask;
+    private final AtomicReferenceArray<Entry> buckets;
+    // the last processed tick, written only by the advancing thread
+    private volatile long lastTick = NONE;
+
+    /**
+     * Creates a new wheel.
+     * @param tick wheel resolution in milliseconds
+     * @param size number of buckets, gets rounded up to the nearest power of two
+     */
+    ExpiryWheel(long tick, int size) {
+        if (tick <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tick);
+        }
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(tick);
+        int wheelSize = Integer.highestOneBit(Math.max(2, size) - 1) << 1;
+        mask = wheelSize - 1;
+        buckets = new AtomicReferenceArray<>(wheelSize);
+    }
+
+    /**
+     * Returns the wheel resolution in milliseconds.
+     * @return the wheel resolution
+     */
+    long getTick() {
+        return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+    }
+
+    /**
+     * Schedules (or re-arms) an entry to expire at the given deadline.
+     * @param entry an entry
+     * @param deadline deadline in nanoseconds
+     */
+    void schedule(Entry entry, long deadline) {
+        if (entry.cancelled) {
+            return;
+        }
+        entry.deadline = deadline;
+        if (!entry.scheduled.get() && entry.scheduled.compareAndSet(false, true)) {
+            push(entry, deadline);
+        }
+    }
+
+    /**
+     * Cancels an entry. The entry is removed from the wheel when its bucket is processed. Cancellation is final,
+     * a cancelled entry is never scheduled again.
+     * @param entry an entry
+     */
+    void cancel(Entry entry) {
+        entry.cancelled = true;
+    }
+
+    /**
+     * Processes all buckets up to the given time and fires expiry callbacks of expired entries.
+     * Must not be called concurrently.
+     * @param now current time in nanoseconds
+     */
+    void advance(long now) {
+        long tick = Math.floorDiv(now, tickNanos);
+        long last = lastTick;
+        // a full revolution at most, the very first pass picks up entries scheduled before the wheel was started
+        long from = last == NONE ? tick - mask : Math.max(last + 1, tick - mask);
+        for (long current = from; current <= tick; current++) {
+            // entries that are re-armed while processing must go to the next bucket at least
+            lastTick = current;
+            process(current, now);
+        }
+    }
+
+    private void process(long tick, long now) {
+        Entry entry = buckets.getAndSet((int) (tick & mask), null);
+        while (entry != null) {
+            Entry next = entry.next;
+            entry.next = null;
+            long deadline = entry.deadline;
+            if (entry.cancelled) {
+                entry.scheduled.set(false);
+            } else if (deadline - now > 0) {
+                push(entry, deadline);
+            } else {
+                // an entry can be re-armed concurrently, the callback is expected to check that
+                entry.scheduled.set(false);
+                try {
+                    entry.expired();
+                } catch (Exception ex) {
+                    logger.error("Execution error of an expiry callback", ex);
+                }
+            }
+            entry = next;
+        }
+    }
+
+    private void push(Entry entry, long deadline) {
+        long last = lastTick;
+        long tick = Math.floorDiv(deadline, tickNanos);
+        if (last != NONE && tick <= last) {
+            tick = last + 1;
+        }
+        int index = (int) (tick & mask);
+        Entry head;
+        do {
+            head = buckets.get(index);
+            entry.next = head;
+        } while (!buckets.compareAndSet(index, head, entry));
+    }
+
+    /**
+     * An entry of the wheel.
+     */
+    abstract static class Entry {
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long deadline;
+        // terminal state, a cancelled entry is dropped by the wheel and ignored by further scheduling
+        private volatile boolean cancelled;
+        // published by the bucket CAS
+        private Entry next;
+
+        /**
+         * Invoked by the advancing thread when the entry has expired.
+         */
+        abstract void expired();
+
+    }
+
+}
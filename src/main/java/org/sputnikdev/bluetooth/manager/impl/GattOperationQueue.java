@@ -0,0 +1,247 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.GattOperationPriority;
+import org.sputnikdev.bluetooth.manager.GattOperationStatistics;
+import org.sputnikdev.bluetooth.manager.NotReadyException;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A per device queue of GATT operations. Most of the bluetooth stacks allow only one outstanding ATT request
+ * per connection, therefore operations of a device (reads, writes, notification subscriptions) are executed
+ * one by one. Operations with higher priority go first, operations of the same priority are executed in order
+ * they were submitted. Operations are executed by the calling threads, a thread waits for its turn for no longer
+ * than the operation timeout. An operation holds the queue for no longer than the operation timeout either:
+ * if it hangs (e.g. in a native call that never returns), then the next operation is let through, although
+ * the hung one cannot be cancelled and completes whenever the call returns.
+ *
+ * @author Vlad Kolotov
+ */
+class GattOperationQueue implements GattOperationStatistics {
+
+    private Logger logger = LoggerFactory.getLogger(GattOperationQueue.class);
+
+    private final URL url;
+    private final MonotonicClock clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition turn = lock.newCondition();
+    private final PriorityQueue<Operation> queue = new PriorityQueue<>();
+    private long sequence;
+    // the operation that holds the queue, null if none
+    private Operation current;
+    // the thread executing an operation, nested operations (e.g. from notification listeners) are executed directly
+    private volatile Thread executor;
+
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder overruns = new LongAdder();
+    private final LongAdder waitTime = new LongAdder();
+    private final LongAdder executionTime = new LongAdder();
+    private volatile long maxWaitTime;
+    private volatile long maxExecutionTime;
+
+    GattOperationQueue(URL url, MonotonicClock clock) {
+        this.url = url;
+        this.clock = clock;
+    }
+
+    /**
+     * Executes an operation once all previously submitted operations of the same or higher priority
+     * are executed (or have overrun the timeout).
+     * @param priority operation priority
+     * @param timeout how long (in milliseconds) to wait for the turn and how long the operation can hold the queue,
+     *                0 to wait indefinitely
+     * @param operation operation
+     * @param <V> type of the operation result
+     * @return operation result
+     * @throws NotReadyException if the operation has not started within the timeout
+     */
+    <V> V execute(GattOperationPriority priority, long timeout, Supplier<V> operation) {
+        if (executor == Thread.currentThread()) {
+            return operation.get();
+        }
+        long submitted = clock.nanoTime();
+        Operation turn = awaitTurn(priority, timeout, submitted);
+        long started = clock.nanoTime();
+        executor = Thread.currentThread();
+        try {
+            return operation.get();
+        } finally {
+            release(turn);
+            record(started - submitted, clock.nanoTime() - started);
+        }
+    }
+
+    @Override
+    public long getOperations() {
+        return operations.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getOverruns() {
+        return overruns.sum();
+    }
+
+    @Override
+    public int getQueueLength() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getAverageWaitTime() {
+        long count = operations.sum();
+        return count > 0 ? waitTime.sum() / count : 0;
+    }
+
+    @Override
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    @Override
+    public long getAverageExecutionTime() {
+        long count = operations.sum();
+        return count > 0 ? executionTime.sum() / count : 0;
+    }
+
+    @Override
+    public long getMaxExecutionTime() {
+        return maxExecutionTime;
+    }
+
+    private Operation awaitTurn(GattOperationPriority priority, long timeout, long submitted) {
+        long deadline = submitted + TimeUnit.MILLISECONDS.toNanos(timeout);
+        lock.lock();
+        try {
+            Operation operation = new Operation(priority, sequence++);
+            queue.add(operation);
+            while (current != null || queue.peek() != operation) {
+                long now = clock.nanoTime();
+                if (current != null && current.bounded && now - current.deadline >= 0) {
+                    // the executing operation has hung, moving on without waiting for it
+                    overruns.increment();
+                    logger.warn("GATT operation has not completed in time, releasing the queue: {}", url);
+                    current = null;
+                    executor = null;
+                    turn.signalAll();
+                    continue;
+                }
+                if (timeout > 0 && deadline - now <= 0) {
+                    queue.remove(operation);
+                    // the head might have changed
+                    turn.signalAll();
+                    timeouts.increment();
+                    throw new NotReadyException("GATT operation timed out in queue: " + url);
+                }
+                try {
+                    long wait = timeout > 0 ? deadline - now : Long.MAX_VALUE;
+                    if (current != null && current.bounded) {
+                        wait = Math.min(wait, current.deadline - now);
+                    }
+                    if (wait == Long.MAX_VALUE) {
+                        turn.await();
+                    } else {
+                        turn.awaitNanos(wait);
+                    }
+                } catch (InterruptedException ex) {
+                    queue.remove(operation);
+                    turn.signalAll();
+                    Thread.currentThread().interrupt();
+                    throw new NotReadyException("Interrupted while waiting for GATT operation: " + url);
+                }
+            }
+            queue.poll();
+            operation.bounded = timeout > 0;
+            operation.deadline = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            current = operation;
+            return operation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Operation operation) {
+        lock.lock();
+        try {
+            // the queue might have moved on if the operation has overrun the timeout
+            if (current == operation) {
+                current = null;
+                executor = null;
+                turn.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(long waited, long executed) {
+        operations.increment();
+        waitTime.add(waited);
+        executionTime.add(executed);
+        if (waited > maxWaitTime || executed > maxExecutionTime) {
+            synchronized (this) {
+                maxWaitTime = Math.max(maxWaitTime, waited);
+                maxExecutionTime = Math.max(maxExecutionTime, executed);
+            }
+        }
+    }
+
+    private static final class Operation implements Comparable<Operation> {
+
+        private final GattOperationPriority priority;
+        private final long sequence;
+        // when the operation stops holding the queue, guarded by the queue lock
+        private boolean bounded;
+        private long deadline;
+
+        private Operation(GattOperationPriority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Operation other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread safe pool of dense integer indexes (e.g. {@link ConcurrentBitMap} slots of delegate governors).
+ * Released indexes are recycled, so that the highest index stays bounded by the maximum number of indexes
+ * acquired at the same time.
+ *
+ * @author Vlad Kolotov
+ */
+class IndexPool {
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final Queue<Integer> released = new ConcurrentLinkedQueue<>();
+    private final int maxIndex;
+
+    IndexPool(int maxIndex) {
+        this.maxIndex = maxIndex;
+    }
+
+    /**
+     * Acquires an index, a previously released index is reused if there is any.
+     * @return an index
+     */
+    int acquire() {
+        Integer index = released.poll();
+        if (index != null) {
+            return index;
+        }
+        int newIndex = next.getAndIncrement();
+        if (newIndex > maxIndex) {
+            next.decrementAndGet();
+            throw new IllegalStateException("No more indexes available, maximum index: " + maxIndex);
+        }
+        return newIndex;
+    }
+
+    /**
+     * Releases an index so that it can be acquired again.
+     * @param index an index
+     */
+    void release(int index) {
+        released.offer(index);
+    }
+
+}
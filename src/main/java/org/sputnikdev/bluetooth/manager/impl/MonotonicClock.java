@@ -0,0 +1,63 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A source of time used by the bluetooth manager and its governors. Wall clock time
+ * ({@link #currentTimeMillis()}) is used only for reporting (e.g. last activity), whereas all intervals
+ * (timeouts, reporting rates) are measured with the monotonic time source ({@link #nanoTime()}).
+ *
+ * <p>A custom clock can be supplied via {@link BluetoothManagerBuilder#withClock(MonotonicClock)}, e.g. to run
+ * deterministic virtual time tests.
+ *
+ * @author Vlad Kolotov
+ */
+public interface MonotonicClock {
+
+    /**
+     * The default clock backed by {@link System#currentTimeMillis()} and {@link System#nanoTime()}.
+     */
+    MonotonicClock SYSTEM = new MonotonicClock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * Returns the current wall clock time in milliseconds.
+     * @return current time in milliseconds
+     */
+    long currentTimeMillis();
+
+    /**
+     * Returns the current value of the monotonic time source in nanoseconds. The value is meaningful only
+     * for measuring intervals.
+     * @return current monotonic time in nanoseconds
+     */
+    long nanoTime();
+
+}
@@ -0,0 +1,326 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.manager.filter.KalmanFilter;
+import org.sputnikdev.bluetooth.manager.filter.ShortFilter;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A manager level RSSI filtering engine. Instead of keeping a separate filter object per device, the engine keeps
+ * Kalman filter state (estimate, error covariance, process and measurement noise) of all devices in primitive
+ * arrays indexed by a dense filter id. Arrays are split into fixed size chunks which are never moved,
+ * so that growing the engine does not require any locking on the filtering path. Devices only hold a thin handle
+ * ({@link EngineFilter}) onto their slot.
+ *
+ * <p>Filtering is done in batches: all pending samples of a device are processed in a single tight loop with
+ * the filter state held in local variables.
+ *
+ * <p>A filter state must only be updated by one thread at a time, this is guaranteed by the device governors
+ * (see {@link DeviceGovernorImpl}) that filter RSSI samples sequentially. Noise parameters can be changed and
+ * the current value can be read by any thread, slot values are therefore stored as raw bits with ordered stores,
+ * so that they are published safely and never torn. A released filter id is not reused until all operations that
+ * were in progress on the filter at the time of release have completed.
+ *
+ * @author Vlad Kolotov
+ */
+class RssiFilteringEngine {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MAX_CHUNKS = 4096;
+
+    private static final double DEFAULT_PROCESS_NOISE = new KalmanFilter().getProcessNoise();
+    private static final double DEFAULT_MEASUREMENT_NOISE = new KalmanFilter().getMeasurementNoise();
+    // a field updater instead of an atomic per handle, so that a handle is a single small object
+    private static final AtomicIntegerFieldUpdater<EngineFilter> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(EngineFilter.class, "state");
+
+    private final AtomicReferenceArray<Chunk> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    // allocation fields, guarded by "this"
+    private int nextId;
+    private int[] freeIds = new int[16];
+    private int freeCount;
+
+    /**
+     * Creates a new filter backed by the engine.
+     * @return a new filter
+     */
+    EngineFilter createFilter() {
+        return new EngineFilter(allocate());
+    }
+
+    /**
+     * Returns number of filters backed by the engine.
+     * @return number of filters
+     */
+    synchronized int size() {
+        return nextId - freeCount;
+    }
+
+    /**
+     * Filters a batch of samples.
+     * @param id filter id
+     * @param samples samples
+     * @param count number of samples in the batch
+     * @return filtered value after the last sample
+     */
+    short filter(int id, short[] samples, int count) {
+        Chunk chunk = chunks.get(id >>> CHUNK_BITS);
+        int index = id & CHUNK_MASK;
+        double estimate = get(chunk.estimate, index);
+        double covariance = get(chunk.covariance, index);
+        double processNoise = get(chunk.processNoise, index);
+        double measurementNoise = get(chunk.measurementNoise, index);
+        for (int i = 0; i < count; i++) {
+            double measurement = samples[i];
+            double prior;
+            double priorCovariance;
+            if (estimate == 0) {
+                prior = measurement;
+                priorCovariance = 1;
+            } else {
+                prior = estimate;
+                priorCovariance = covariance + processNoise;
+            }
+            double gain = priorCovariance / (priorCovariance + measurementNoise);
+            estimate = prior + gain * (measurement - prior);
+            covariance = (1 - gain) * priorCovariance;
+        }
+        set(chunk.covariance, index, covariance);
+        set(chunk.estimate, index, estimate);
+        return (short) estimate;
+    }
+
+    short current(int id) {
+        return (short) get(chunks.get(id >>> CHUNK_BITS).estimate, id & CHUNK_MASK);
+    }
+
+    double getProcessNoise(int id) {
+        return get(chunks.get(id >>> CHUNK_BITS).processNoise, id & CHUNK_MASK);
+    }
+
+    void setProcessNoise(int id, double processNoise) {
+        set(chunks.get(id >>> CHUNK_BITS).processNoise, id & CHUNK_MASK, processNoise);
+    }
+
+    double getMeasurementNoise(int id) {
+        return get(chunks.get(id >>> CHUNK_BITS).measurementNoise, id & CHUNK_MASK);
+    }
+
+    void setMeasurementNoise(int id, double measurementNoise) {
+        set(chunks.get(id >>> CHUNK_BITS).measurementNoise, id & CHUNK_MASK, measurementNoise);
+    }
+
+    /**
+     * Releases a filter id so that it can be reused by a new filter.
+     * @param id filter id
+     */
+    synchronized void release(int id) {
+        if (freeCount == freeIds.length) {
+            int[] newFreeIds = new int[freeIds.length * 2];
+            System.arraycopy(freeIds, 0, newFreeIds, 0, freeCount);
+            freeIds = newFreeIds;
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    private synchronized int allocate() {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = nextId;
+            int chunkIndex = id >>> CHUNK_BITS;
+            if (chunkIndex >= MAX_CHUNKS) {
+                throw new IllegalStateException("RSSI filtering engine capacity exceeded: " + id);
+            }
+            if (chunks.get(chunkIndex) == null) {
+                chunks.set(chunkIndex, new Chunk());
+            }
+            nextId++;
+        }
+        Chunk chunk = chunks.get(id >>> CHUNK_BITS);
+        int index = id & CHUNK_MASK;
+        set(chunk.estimate, index, 0);
+        set(chunk.covariance, index, 0);
+        set(chunk.processNoise, index, DEFAULT_PROCESS_NOISE);
+        set(chunk.measurementNoise, index, DEFAULT_MEASUREMENT_NOISE);
+        return id;
+    }
+
+    private static double get(AtomicLongArray array, int index) {
+        return Double.longBitsToDouble(array.get(index));
+    }
+
+    private static void set(AtomicLongArray array, int index, double value) {
+        // an ordered store is enough, the slot has a single writer at a time
+        array.lazySet(index, Double.doubleToRawLongBits(value));
+    }
+
+    private static final class Chunk {
+        private final AtomicLongArray estimate = new AtomicLongArray(CHUNK_SIZE);
+        private final AtomicLongArray covariance = new AtomicLongArray(CHUNK_SIZE);
+        private final AtomicLongArray processNoise = new AtomicLongArray(CHUNK_SIZE);
+        private final AtomicLongArray measurementNoise = new AtomicLongArray(CHUNK_SIZE);
+    }
+
+    /**
+     * A thin handle onto the engine slot of a single device. It can be configured (process and measurement noise)
+     * in the same way as a standalone {@link KalmanFilter}.
+     */
+    final class EngineFilter implements ShortFilter {
+
+        private static final int RELEASED = 1 << 30;
+        private static final int FREED = 1 << 29;
+
+        private final int id;
+        // released and freed flags plus the number of operations in progress,
+        // not private as it is updated by a field updater of the enclosing class
+        volatile int state;
+
+        private EngineFilter(int id) {
+            this.id = id;
+        }
+
+        int getId() {
+            return id;
+        }
+
+        short next(short[] samples, int count) {
+            enter();
+            try {
+                return filter(id, samples, count);
+            } finally {
+                exit();
+            }
+        }
+
+        @Override
+        public short next(short value) {
+            short[] sample = {value};
+            return next(sample, 1);
+        }
+
+        @Override
+        public short current() {
+            if (!tryEnter()) {
+                return 0;
+            }
+            try {
+                return RssiFilteringEngine.this.current(id);
+            } finally {
+                exit();
+            }
+        }
+
+        public double getProcessNoise() {
+            enter();
+            try {
+                return RssiFilteringEngine.this.getProcessNoise(id);
+            } finally {
+                exit();
+            }
+        }
+
+        public void setProcessNoise(double processNoise) {
+            enter();
+            try {
+                RssiFilteringEngine.this.setProcessNoise(id, processNoise);
+            } finally {
+                exit();
+            }
+        }
+
+        public double getMeasurementNoise() {
+            enter();
+            try {
+                return RssiFilteringEngine.this.getMeasurementNoise(id);
+            } finally {
+                exit();
+            }
+        }
+
+        public void setMeasurementNoise(double measurementNoise) {
+            enter();
+            try {
+                RssiFilteringEngine.this.setMeasurementNoise(id, measurementNoise);
+            } finally {
+                exit();
+            }
+        }
+
+        /**
+         * Releases the filter. The filter id is returned to the engine straight away if the filter is not in use,
+         * otherwise when the last operation in progress completes.
+         */
+        void release() {
+            int current;
+            do {
+                current = state;
+                if ((current & RELEASED) != 0) {
+                    return;
+                }
+            } while (!STATE.compareAndSet(this, current, current | RELEASED));
+            freeIfIdle();
+        }
+
+        /**
+         * Marks beginning of an operation on the filter state.
+         * @throws IllegalStateException if the filter has been released
+         */
+        void enter() {
+            if (!tryEnter()) {
+                throw new IllegalStateException("RSSI filter has been released: " + id);
+            }
+        }
+
+        /**
+         * Marks end of an operation on the filter state.
+         */
+        void exit() {
+            if (STATE.decrementAndGet(this) == RELEASED) {
+                freeIfIdle();
+            }
+        }
+
+        private boolean tryEnter() {
+            if ((STATE.incrementAndGet(this) & RELEASED) != 0) {
+                exit();
+                return false;
+            }
+            return true;
+        }
+
+        private void freeIfIdle() {
+            // only one thread wins the transition, so that the id is never freed twice
+            if (STATE.compareAndSet(this, RELEASED, RELEASED | FREED)) {
+                RssiFilteringEngine.this.release(id);
+            }
+        }
+    }
+
+}
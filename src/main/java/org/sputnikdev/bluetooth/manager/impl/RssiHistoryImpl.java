@@ -0,0 +1,239 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.manager.RssiHistory;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * A primitive ring buffer based implementation of the {@link RssiHistory}. Samples are added in batches
+ * by the RSSI draining thread, statistics can be queried by any thread.
+ *
+ * <p>Readers take an optimistic snapshot first. If a batch was added while they were reading, they fall back
+ * to the read lock, so that a constantly writing RSSI stream cannot make them spin. Samples are timestamped
+ * with the monotonic clock.
+ *
+ * @author Vlad Kolotov
+ */
+class RssiHistoryImpl implements RssiHistory {
+
+    // RSSI values are clamped to this range when percentiles are calculated
+    private static final int MIN_RSSI = Byte.MIN_VALUE;
+    private static final int MAX_RSSI = Byte.MAX_VALUE;
+
+    private final MonotonicClock clock;
+    // the (single) writer takes the write lock, readers lock only if an optimistic read fails
+    private final StampedLock lock = new StampedLock();
+    private final short[] values;
+    private final long[] timestamps;
+    // used by the percentile calculation, guarded by "this"
+    private final int[] histogram = new int[MAX_RSSI - MIN_RSSI + 1];
+    // index of the next sample to be written
+    private int head;
+    private int size;
+
+    RssiHistoryImpl(int capacity, MonotonicClock clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.clock = clock;
+        values = new short[capacity];
+        timestamps = new long[capacity];
+    }
+
+    /**
+     * Adds a batch of samples that were received at the given time. Must be called by a single thread at a time.
+     * @param rssi samples
+     * @param count number of samples in the batch
+     * @param timestamp monotonic time in nanoseconds, see {@link MonotonicClock#nanoTime()}
+     */
+    void add(short[] rssi, int count, long timestamp) {
+        long stamp = lock.writeLock();
+        try {
+            int capacity = values.length;
+            int index = head;
+            for (int i = Math.max(0, count - capacity); i < count; i++) {
+                values[index] = rssi[i];
+                timestamps[index] = timestamp;
+                index = index + 1 == capacity ? 0 : index + 1;
+            }
+            head = index;
+            size = Math.min(capacity, size + count);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return values.length;
+    }
+
+    @Override
+    public int size() {
+        return readInt(() -> size);
+    }
+
+    @Override
+    public int count(long window) {
+        long now = clock.nanoTime();
+        return readInt(() -> countSince(now, window, head, size));
+    }
+
+    @Override
+    public double getMean(long window) {
+        long now = clock.nanoTime();
+        return readDouble(() -> {
+            int count = countSince(now, window, head, size);
+            return count != 0 ? (double) sum(previous(head), count) / count : 0;
+        });
+    }
+
+    @Override
+    public double getVariance(long window) {
+        long now = clock.nanoTime();
+        return readDouble(() -> {
+            int count = countSince(now, window, head, size);
+            return count != 0 ? variance(previous(head), count) : 0;
+        });
+    }
+
+    @Override
+    public synchronized short getPercentile(double percentile, long window) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        long now = clock.nanoTime();
+        return (short) readInt(() -> {
+            int count = countSince(now, window, head, size);
+            return count != 0 ? percentile(percentile, previous(head), count) : 0;
+        });
+    }
+
+    @Override
+    public double getSampleRate(long window) {
+        if (window <= 0) {
+            return 0;
+        }
+        return count(window) * 1000d / window;
+    }
+
+    @Override
+    public int copy(short[] rssi, long[] timestamps, long window) {
+        long now = clock.nanoTime();
+        return readInt(() -> {
+            int index = previous(head);
+            int count = Math.min(countSince(now, window, head, size), Math.min(rssi.length, timestamps.length));
+            for (int i = count - 1; i >= 0; i--, index = previous(index)) {
+                rssi[i] = values[index];
+                timestamps[i] = this.timestamps[index];
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Reads the history state optimistically, falls back to the read lock if a batch was added in the meantime.
+     */
+    private int readInt(IntSupplier reader) {
+        long stamp = lock.tryOptimisticRead();
+        int result = reader.getAsInt();
+        if (lock.validate(stamp)) {
+            return result;
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.getAsInt();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private double readDouble(DoubleSupplier reader) {
+        long stamp = lock.tryOptimisticRead();
+        double result = reader.getAsDouble();
+        if (lock.validate(stamp)) {
+            return result;
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.getAsDouble();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int countSince(long now, long window, int head, int size) {
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(window);
+        int count = 0;
+        for (int i = 0, index = previous(head); i < size && now - timestamps[index] <= windowNanos;
+                i++, index = previous(index)) {
+            count++;
+        }
+        return count;
+    }
+
+    private long sum(int last, int count) {
+        long sum = 0;
+        for (int i = 0, index = last; i < count; i++, index = previous(index)) {
+            sum += values[index];
+        }
+        return sum;
+    }
+
+    private double variance(int last, int count) {
+        double mean = (double) sum(last, count) / count;
+        double sum = 0;
+        for (int i = 0, index = last; i < count; i++, index = previous(index)) {
+            double deviation = values[index] - mean;
+            sum += deviation * deviation;
+        }
+        return sum / count;
+    }
+
+    private int percentile(double percentile, int last, int count) {
+        for (int i = 0, index = last; i < count; i++, index = previous(index)) {
+            histogram[Math.min(MAX_RSSI, Math.max(MIN_RSSI, values[index])) - MIN_RSSI]++;
+        }
+        int rank = Math.max(1, (int) Math.ceil(percentile / 100 * count));
+        int result = MAX_RSSI;
+        int seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                result = i + MIN_RSSI;
+                break;
+            }
+        }
+        Arrays.fill(histogram, 0);
+        return result;
+    }
+
+    private int previous(int index) {
+        return index == 0 ? values.length - 1 : index - 1;
+    }
+
+}
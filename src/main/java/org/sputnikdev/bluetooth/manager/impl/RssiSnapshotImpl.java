@@ -0,0 +1,131 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.RssiSnapshot;
+
+import java.util.Arrays;
+
+/**
+ * A reusable RSSI snapshot backed by primitive arrays. Arrays grow when needed and are never shrunk,
+ * so that no allocations happen on steady state. The object is not thread safe and is meant to be populated
+ * and published by a single (snapshot) thread.
+ *
+ * @author Vlad Kolotov
+ */
+class RssiSnapshotImpl implements RssiSnapshot {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long timestamp;
+    private int size;
+    private int[] deviceIds = new int[INITIAL_CAPACITY];
+    private URL[] urls = new URL[INITIAL_CAPACITY];
+    private URL[] adapterURLs = new URL[INITIAL_CAPACITY];
+    private short[] rssi = new short[INITIAL_CAPACITY];
+    private double[] distances = new double[INITIAL_CAPACITY];
+    private long[] lastAdvertised = new long[INITIAL_CAPACITY];
+
+    @Override
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getDeviceId(int index) {
+        checkIndex(index);
+        return deviceIds[index];
+    }
+
+    @Override
+    public URL getURL(int index) {
+        checkIndex(index);
+        return urls[index];
+    }
+
+    @Override
+    public URL getAdapterURL(int index) {
+        checkIndex(index);
+        return adapterURLs[index];
+    }
+
+    @Override
+    public short getRSSI(int index) {
+        checkIndex(index);
+        return rssi[index];
+    }
+
+    @Override
+    public double getEstimatedDistance(int index) {
+        checkIndex(index);
+        return distances[index];
+    }
+
+    @Override
+    public long getLastAdvertised(int index) {
+        checkIndex(index);
+        return lastAdvertised[index];
+    }
+
+    void reset(long timestamp) {
+        this.timestamp = timestamp;
+        // release references to the previous URLs so that disposed governors can be garbage collected
+        Arrays.fill(urls, 0, size, null);
+        Arrays.fill(adapterURLs, 0, size, null);
+        size = 0;
+    }
+
+    void add(int deviceId, URL url, URL adapterURL, short rssi, double distance, long lastAdvertised) {
+        if (size == deviceIds.length) {
+            grow();
+        }
+        deviceIds[size] = deviceId;
+        urls[size] = url;
+        adapterURLs[size] = adapterURL;
+        this.rssi[size] = rssi;
+        distances[size] = distance;
+        this.lastAdvertised[size] = lastAdvertised;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = deviceIds.length * 2;
+        deviceIds = Arrays.copyOf(deviceIds, capacity);
+        urls = Arrays.copyOf(urls, capacity);
+        adapterURLs = Arrays.copyOf(adapterURLs, capacity);
+        rssi = Arrays.copyOf(rssi, capacity);
+        distances = Arrays.copyOf(distances, capacity);
+        lastAdvertised = Arrays.copyOf(lastAdvertised, capacity);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.URL;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates scanning (discovery) of co-located adapters so that their radios do not scan at the same time.
+ * Time is split into periods, each adapter scans only within its window of the period. The window length is
+ * defined by the adapter duty cycle (see {@link AdapterGovernorImpl#getScanDutyCycle()}), windows of different
+ * adapters are staggered evenly over the period. Adapters that carry a number of active connections
+ * (see {@link AdapterLoadTracker}) pause scanning, unless there is no other adapter to scan in their window,
+ * so that the discovery coverage is not lost. For the same reason, if the windows do not cover the whole period
+ * (e.g. duty cycles add up to less than 1), then the gaps are covered by the adapter whose window has started last.
+ *
+ * <p>The coordinator is driven by the bluetooth manager through the {@link #tick(long)} method, adapter governors
+ * are requested to update whenever they need to start or stop scanning.
+ *
+ * @author Vlad Kolotov
+ */
+class ScanCoordinator {
+
+    private final BluetoothManagerImpl bluetoothManager;
+    private final long period;
+    private final double dutyCycle;
+    private final int pauseConnections;
+
+    private final Map<URL, Slot> slots = new ConcurrentHashMap<>();
+    private volatile Slot[] order = new Slot[0];
+
+    /**
+     * Creates a new scan coordinator.
+     * @param bluetoothManager bluetooth manager
+     * @param period scan period in milliseconds
+     * @param dutyCycle default fraction of the period adapters scan for, from 0 to 1
+     * @param pauseConnections number of active connections that pauses scanning, 0 to never pause
+     */
+    ScanCoordinator(BluetoothManagerImpl bluetoothManager, long period, double dutyCycle, int pauseConnections) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Scan period must be positive: " + period);
+        }
+        if (dutyCycle <= 0 || dutyCycle > 1) {
+            throw new IllegalArgumentException("Duty cycle must be in (0, 1]: " + dutyCycle);
+        }
+        this.bluetoothManager = bluetoothManager;
+        this.period = period;
+        this.dutyCycle = dutyCycle;
+        this.pauseConnections = pauseConnections;
+    }
+
+    void register(AdapterGovernorImpl governor) {
+        synchronized (slots) {
+            slots.putIfAbsent(governor.getURL().copyWithProtocol(null), new Slot(governor));
+            reorder();
+        }
+    }
+
+    void unregister(AdapterGovernorImpl governor) {
+        synchronized (slots) {
+            if (slots.remove(governor.getURL().copyWithProtocol(null)) != null) {
+                reorder();
+            }
+        }
+    }
+
+    /**
+     * Checks whether the adapter is allowed to scan at the moment. Adapters that are not registered
+     * are always allowed to scan.
+     * @param adapter adapter URL
+     * @return true if the adapter can scan
+     */
+    boolean isScanAllowed(URL adapter) {
+        Slot slot = slots.get(adapter.copyWithProtocol(null));
+        return slot == null || slot.allowed;
+    }
+
+    long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Re-evaluates which adapters are allowed to scan and schedules updates of those adapters which need to start or
+     * stop scanning.
+     * @param now current time in nanoseconds
+     */
+    void tick(long now) {
+        Slot[] order = this.order;
+        int count = order.length;
+        if (count == 0) {
+            return;
+        }
+        AdapterLoadTracker tracker = bluetoothManager.getAdapterLoadTracker();
+        long phase = TimeUnit.NANOSECONDS.toMillis(now) % period;
+        // the adapter whose window has started last
+        int owner = (int) (phase * count / period);
+        boolean[] allowed = new boolean[count];
+        boolean covered = false;
+        int fallback = -1;
+        int fallbackConnections = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            Slot slot = order[i];
+            long offset = period * i / count;
+            double slotDutyCycle = slot.governor.getScanDutyCycle();
+            long window = (long) (period * (slotDutyCycle > 0 ? Math.min(slotDutyCycle, 1) : dutyCycle));
+            boolean inWindow = window >= period || (phase - offset + period) % period < window;
+            if (!inWindow) {
+                continue;
+            }
+            int connections = tracker != null ? tracker.getConnections(slot.governor.getURL()) : 0;
+            if (pauseConnections > 0 && connections >= pauseConnections) {
+                // busy adapter, remembering the least loaded one in case no other adapter can scan
+                if (connections < fallbackConnections) {
+                    fallback = i;
+                    fallbackConnections = connections;
+                }
+                continue;
+            }
+            allowed[i] = true;
+            covered = true;
+        }
+        if (!covered) {
+            // either all adapters in their windows are busy or there is a gap between windows
+            allowed[fallback >= 0 ? fallback : owner] = true;
+        }
+        for (int i = 0; i < count; i++) {
+            Slot slot = order[i];
+            if (slot.allowed != allowed[i]) {
+                slot.allowed = allowed[i];
+                bluetoothManager.scheduleUpdate(slot.governor);
+            }
+        }
+    }
+
+    private void reorder() {
+        // stable order of adapters so that their windows do not move around between ticks
+        Slot[] slots = this.slots.values().toArray(new Slot[0]);
+        Arrays.sort(slots, Comparator.comparing(slot -> slot.governor.getURL().getAdapterAddress()));
+        order = slots;
+    }
+
+    private static final class Slot {
+        private final AdapterGovernorImpl governor;
+        private volatile boolean allowed = true;
+
+        private Slot(AdapterGovernorImpl governor) {
+            this.governor = governor;
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.Filter;
+import org.sputnikdev.bluetooth.RssiKalmanFilter;
+import org.sputnikdev.bluetooth.manager.filter.KalmanFilter;
+import org.sputnikdev.bluetooth.manager.filter.ShortFilter;
+
+/**
+ * Adapters between generic ({@link Filter}) and primitive ({@link ShortFilter}) filters.
+ *
+ * @author Vlad Kolotov
+ */
+final class ShortFilterAdapters {
+
+    private ShortFilterAdapters() { }
+
+    /**
+     * Adapts a generic filter to the primitive filter contract.
+     * @param filter a generic filter
+     * @return a primitive filter or null if the provided filter is null
+     */
+    static ShortFilter toShortFilter(Filter<Short> filter) {
+        if (filter == null) {
+            return null;
+        } else if (filter instanceof GenericFilter) {
+            return ((GenericFilter) filter).filter;
+        } else if (filter instanceof KalmanFilterView) {
+            return ((KalmanFilterView) filter).filter;
+        } else if (filter instanceof EngineFilterView) {
+            return ((EngineFilterView) filter).filter;
+        }
+        return new PrimitiveFilter(filter);
+    }
+
+    /**
+     * Adapts a primitive filter to the generic filter contract.
+     * @param filter a primitive filter
+     * @return a generic filter or null if the provided filter is null
+     */
+    static Filter<Short> toFilter(ShortFilter filter) {
+        if (filter == null) {
+            return null;
+        } else if (filter instanceof PrimitiveFilter) {
+            return ((PrimitiveFilter) filter).filter;
+        } else if (filter instanceof KalmanFilter) {
+            return new KalmanFilterView((KalmanFilter) filter);
+        } else if (filter instanceof RssiFilteringEngine.EngineFilter) {
+            return new EngineFilterView((RssiFilteringEngine.EngineFilter) filter);
+        }
+        return new GenericFilter(filter);
+    }
+
+    private static final class PrimitiveFilter implements ShortFilter {
+
+        private final Filter<Short> filter;
+
+        private PrimitiveFilter(Filter<Short> filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public short next(short value) {
+            return filter.next(value);
+        }
+
+        @Override
+        public short current() {
+            Short current = filter.current();
+            return current != null ? current : 0;
+        }
+    }
+
+    private static final class GenericFilter implements Filter<Short> {
+
+        private final ShortFilter filter;
+
+        private GenericFilter(ShortFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public Short current() {
+            return filter.current();
+        }
+
+        @Override
+        public Short next(Short value) {
+            return filter.next(value);
+        }
+    }
+
+    /**
+     * A generic view onto a primitive Kalman filter. It extends {@link RssiKalmanFilter} so that the filter
+     * can be configured (process and measurement noise) in the same way as a standalone generic Kalman filter.
+     */
+    private static final class KalmanFilterView extends RssiKalmanFilter {
+
+        private final KalmanFilter filter;
+
+        private KalmanFilterView(KalmanFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public Short next(Short value) {
+            return filter.next(value);
+        }
+
+        @Override
+        public Short current() {
+            return filter.current();
+        }
+
+        @Override
+        public double getProcessNoise() {
+            return filter.getProcessNoise();
+        }
+
+        @Override
+        public void setProcessNoise(double processNoise) {
+            filter.setProcessNoise(processNoise);
+        }
+
+        @Override
+        public double getMeasurementNoise() {
+            return filter.getMeasurementNoise();
+        }
+
+        @Override
+        public void setMeasurementNoise(double measurementNoise) {
+            filter.setMeasurementNoise(measurementNoise);
+        }
+    }
+
+    /**
+     * A generic view onto an RSSI filtering engine filter, configurable in the same way as {@link KalmanFilterView}.
+     */
+    private static final class EngineFilterView extends RssiKalmanFilter {
+
+        private final RssiFilteringEngine.EngineFilter filter;
+
+        private EngineFilterView(RssiFilteringEngine.EngineFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public Short next(Short value) {
+            return filter.next(value);
+        }
+
+        @Override
+        public Short current() {
+            return filter.current();
+        }
+
+        @Override
+        public double getProcessNoise() {
+            return filter.getProcessNoise();
+        }
+
+        @Override
+        public void setProcessNoise(double processNoise) {
+            filter.setProcessNoise(processNoise);
+        }
+
+        @Override
+        public double getMeasurementNoise() {
+            return filter.getMeasurementNoise();
+        }
+
+        @Override
+        public void setMeasurementNoise(double measurementNoise) {
+            filter.setMeasurementNoise(measurementNoise);
+        }
+    }
+
+}
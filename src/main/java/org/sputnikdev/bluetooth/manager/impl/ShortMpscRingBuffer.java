@@ -0,0 +1,135 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded lock-free multi-producer single-consumer ring buffer of primitive short values
+ * (based on the Dmitry Vyukov's bounded queue). Any thread can offer values, while only the thread that has
+ * acquired the drain permit ({@link #enterDrain()}) can poll them.
+ *
+ * <p>Draining is coordinated with the "work in progress" counter: a producer offers a value and then tries to
+ * enter the drain loop, if another thread is already draining, then the value is picked up by that thread
+ * (which is forced to make another pass by {@link #exitDrain(int)}). This guarantees that no value is left
+ * in the buffer unprocessed and that values are processed sequentially in the order they were offered.
+ *
+ * @author Vlad Kolotov
+ */
+class ShortMpscRingBuffer {
+
+    private final int mask;
+    private final short[] values;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    // only accessed by the draining thread, visibility is guaranteed by the "wip" counter
+    private long head;
+
+    /**
+     * Creates a new buffer.
+     * @param capacity buffer capacity, gets rounded up to the nearest power of two
+     */
+    ShortMpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        values = new short[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Offers a new value.
+     * @param value a new value
+     * @return true if the value is added, false if the buffer is full
+     */
+    boolean offer(short value) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    values[index] = value;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+            position = tail.get();
+        }
+    }
+
+    /**
+     * Drains available values into the provided array. Must be called only by the thread holding
+     * the drain permit.
+     * @param batch an array to copy values to
+     * @return number of values copied
+     */
+    int drainTo(short[] batch) {
+        int count = 0;
+        while (count < batch.length) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                // the buffer is empty or the next value is not published yet
+                break;
+            }
+            batch[count++] = values[index];
+            sequences.lazySet(index, head + mask + 1);
+            head++;
+        }
+        return count;
+    }
+
+    /**
+     * Tries to acquire the drain permit.
+     * @return true if the permit is acquired and the caller must run the drain loop,
+     *     false if another thread is draining the buffer
+     */
+    boolean enterDrain() {
+        return wip.getAndIncrement() == 0;
+    }
+
+    /**
+     * Releases (or keeps) the drain permit at the end of a drain pass.
+     * @param missed number of drain requests processed by the pass (1 for the first pass,
+     *     then the value returned by this method)
+     * @return 0 if the permit is released, otherwise the number of drain requests made by other threads
+     *     during the pass, in which case the caller must make another pass
+     */
+    int exitDrain(int missed) {
+        return wip.addAndGet(-missed);
+    }
+
+    /**
+     * Returns buffer capacity.
+     * @return buffer capacity
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+}
@@ -0,0 +1,187 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.GattOperationPriority;
+import org.sputnikdev.bluetooth.manager.NotReadyException;
+import org.sputnikdev.bluetooth.manager.WriteStreamResult;
+import org.sputnikdev.bluetooth.manager.transport.Characteristic;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.Supplier;
+
+/**
+ * Streams data to a characteristic that supports write without response. Data is split into chunks of the maximum
+ * payload size of the characteristic (see {@link Characteristic#getMaxPayloadSize()}). Chunks are written
+ * back-to-back in bursts, each burst takes a single slot in the GATT operation queue of the device. The burst size
+ * (credit window) is managed with AIMD: it grows by one chunk after each successful burst and halves when a write
+ * fails, failed chunks are retransmitted.
+ *
+ * @author Vlad Kolotov
+ */
+class StreamWriter {
+
+    static final int INITIAL_WINDOW = 4;
+    static final int MAX_WINDOW = 64;
+    // number of consecutive failed bursts after which streaming is aborted
+    static final int MAX_RETRIES = 5;
+
+    private final URL url;
+    private final Characteristic characteristic;
+    private final GattOperationQueue queue;
+    private final TransportBulkhead bulkhead;
+    private final long timeout;
+    private final MonotonicClock clock;
+
+    StreamWriter(URL url, Characteristic characteristic, GattOperationQueue queue, TransportBulkhead bulkhead,
+                 long timeout, MonotonicClock clock) {
+        this.url = url;
+        this.characteristic = characteristic;
+        this.queue = queue;
+        this.bulkhead = bulkhead;
+        this.timeout = timeout;
+        this.clock = clock;
+    }
+
+    WriteStreamResult write(InputStream source) throws IOException {
+        return write(buffer -> {
+            int read = 0;
+            while (read < buffer.length) {
+                int count = source.read(buffer, read, buffer.length - read);
+                if (count < 0) {
+                    break;
+                }
+                read += count;
+            }
+            return read;
+        });
+    }
+
+    WriteStreamResult write(ByteBuffer source) {
+        try {
+            return write(buffer -> {
+                int read = Math.min(buffer.length, source.remaining());
+                source.get(buffer, 0, read);
+                return read;
+            });
+        } catch (IOException ex) {
+            // never happens
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private WriteStreamResult write(ChunkReader reader) throws IOException {
+        int payload = Math.max(1, callTransport(characteristic::getMaxPayloadSize));
+        long started = clock.nanoTime();
+        Deque<byte[]> pending = new ArrayDeque<>();
+        int window = INITIAL_WINDOW;
+        int retries = 0;
+        boolean eof = false;
+        long bytes = 0;
+        long packets = 0;
+        long retransmits = 0;
+        while (true) {
+            while (!eof && pending.size() < window) {
+                byte[] chunk = new byte[payload];
+                int read = reader.read(chunk);
+                if (read > 0) {
+                    pending.add(read < payload ? Arrays.copyOf(chunk, read) : chunk);
+                }
+                eof = read < payload;
+            }
+            if (pending.isEmpty()) {
+                break;
+            }
+            int burst = Math.min(window, pending.size());
+            int written = writeBurst(pending, burst);
+            packets += written;
+            for (int i = 0; i < written; i++) {
+                bytes += pending.poll().length;
+            }
+            if (written == burst) {
+                window = Math.min(MAX_WINDOW, window + 1);
+                retries = 0;
+            } else {
+                // the failed chunk and the rest of the burst are written again
+                retransmits += burst - written;
+                window = Math.max(1, window / 2);
+                if (++retries > MAX_RETRIES) {
+                    throw new IllegalStateException("Could not write data to characteristic: " + url);
+                }
+            }
+        }
+        return new WriteStreamResult(bytes, packets, retransmits, clock.nanoTime() - started);
+    }
+
+    /**
+     * Writes a number of chunks back-to-back.
+     * @return number of successfully written chunks, the rest needs to be retransmitted
+     */
+    private int writeBurst(Deque<byte[]> pending, int burst) {
+        if (queue == null) {
+            return doWriteBurst(pending, burst);
+        }
+        return queue.execute(GattOperationPriority.NORMAL, timeout, () -> doWriteBurst(pending, burst));
+    }
+
+    private int doWriteBurst(Deque<byte[]> pending, int burst) {
+        int written = 0;
+        for (byte[] chunk : pending) {
+            if (written == burst) {
+                break;
+            }
+            boolean success;
+            try {
+                success = callTransport(() -> characteristic.writeValue(chunk));
+            } catch (NotReadyException ex) {
+                // the transport is unavailable or the chunk might have been written, retransmitting is not safe
+                throw ex;
+            } catch (RuntimeException ex) {
+                success = false;
+            }
+            if (!success) {
+                break;
+            }
+            written++;
+        }
+        return written;
+    }
+
+    private <V> V callTransport(Supplier<V> call) {
+        return bulkhead != null ? bulkhead.call(call) : call.get();
+    }
+
+    @FunctionalInterface
+    private interface ChunkReader {
+        /**
+         * Reads data into the buffer, the buffer is filled in full unless the end of the source is reached.
+         * @return number of bytes read
+         */
+        int read(byte[] buffer) throws IOException;
+    }
+
+}
@@ -0,0 +1,247 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.manager.NotReadyException;
+import org.sputnikdev.bluetooth.manager.TransportStatistics;
+import org.sputnikdev.bluetooth.manager.TransportTimeoutException;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A bulkhead for calls into a transport. Native calls (e.g. connect, read value, get services) may hang, calls are
+ * therefore executed on a separate thread and the calling thread waits for them no longer than the call timeout.
+ * Connecting normally takes much longer than GATT I/O (read, write, notification subscription), connect calls
+ * have therefore their own timeout.
+ * The number of concurrent calls (including the ones that have timed out but have not returned yet) is bounded,
+ * so that hung calls cannot exhaust threads of the bluetooth manager. A circuit breaker opens after a number
+ * of consecutive timeouts and rejects all calls for a while, then a single probe call is let through (half-open)
+ * to check whether the transport has recovered.
+ *
+ * <p>Calls that cannot be made fail fast with {@link NotReadyException}, calls that have been made but have not
+ * returned in time fail with {@link TransportTimeoutException}.
+ *
+ * @author Vlad Kolotov
+ */
+class TransportBulkhead implements TransportStatistics {
+
+    // number of consecutive timeouts that opens the circuit breaker
+    static final int FAILURE_THRESHOLD = 3;
+    // how long the circuit breaker stays open before letting a probe call through
+    static final long OPEN_TIME_MS = 10000;
+
+    private final String transport;
+    private final int maxCalls;
+    private final long connectTimeout;
+    private final long timeout;
+    private final ExecutorService executor;
+    private final MonotonicClock clock;
+    private final Semaphore budget;
+
+    private State state = State.CLOSED;
+    private int consecutiveTimeouts;
+    private long openedAt;
+    private boolean probing;
+
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    TransportBulkhead(String transport, int maxCalls, long connectTimeout, long timeout, ExecutorService executor,
+                      MonotonicClock clock) {
+        this.transport = transport;
+        this.maxCalls = maxCalls;
+        this.connectTimeout = connectTimeout;
+        this.timeout = timeout;
+        this.executor = executor;
+        this.clock = clock;
+        budget = new Semaphore(maxCalls);
+    }
+
+    /**
+     * Calls the transport to connect a device, the call is made with the connect timeout.
+     * @param call transport call
+     * @param <V> type of the result
+     * @return call result
+     * @throws NotReadyException if the call has been rejected
+     * @throws TransportTimeoutException if the call has timed out
+     */
+    <V> V connect(Supplier<V> call) throws NotReadyException {
+        return call(call, connectTimeout);
+    }
+
+    /**
+     * Calls the transport with the GATT I/O timeout.
+     * @param call transport call
+     * @param <V> type of the result
+     * @return call result
+     * @throws NotReadyException if the call has been rejected
+     * @throws TransportTimeoutException if the call has timed out
+     */
+    <V> V call(Supplier<V> call) throws NotReadyException {
+        return call(call, timeout);
+    }
+
+    private <V> V call(Supplier<V> call, long timeout) throws NotReadyException {
+        boolean probe = acquireCall();
+        if (!budget.tryAcquire()) {
+            release(probe);
+            rejected.increment();
+            throw new NotReadyException("Transport call budget is exhausted: " + transport);
+        }
+        Future<V> future;
+        try {
+            future = executor.submit(() -> {
+                try {
+                    return call.get();
+                } finally {
+                    // the budget is released only when the call returns, even if the caller has given up waiting
+                    budget.release();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            budget.release();
+            release(probe);
+            throw new NotReadyException("Transport call rejected: " + transport);
+        }
+        try {
+            V result = future.get(timeout, TimeUnit.MILLISECONDS);
+            succeeded(probe);
+            return result;
+        } catch (TimeoutException ex) {
+            // the call is not cancelled, native calls do not react on interruption anyway,
+            // the budget is released once the call returns
+            timedOut(probe);
+            throw new TransportTimeoutException("Transport call timed out: " + transport);
+        } catch (ExecutionException ex) {
+            // the transport has responded, it is alive
+            succeeded(probe);
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (InterruptedException ex) {
+            release(probe);
+            Thread.currentThread().interrupt();
+            throw new NotReadyException("Interrupted while calling transport: " + transport);
+        }
+    }
+
+    @Override
+    public String getTransport() {
+        return transport;
+    }
+
+    @Override
+    public int getMaxCalls() {
+        return maxCalls;
+    }
+
+    @Override
+    public int getActiveCalls() {
+        return maxCalls - budget.availablePermits();
+    }
+
+    @Override
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    @Override
+    public long getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public synchronized State getState() {
+        if (state == State.OPEN && clock.nanoTime() - openedAt >= TimeUnit.MILLISECONDS.toNanos(OPEN_TIME_MS)) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getRejectedCalls() {
+        return rejected.sum();
+    }
+
+    /**
+     * Checks whether the circuit breaker lets a call through.
+     * @return true if the call is a probe call
+     */
+    private synchronized boolean acquireCall() {
+        if (state == State.OPEN) {
+            if (clock.nanoTime() - openedAt < TimeUnit.MILLISECONDS.toNanos(OPEN_TIME_MS)) {
+                rejected.increment();
+                throw new NotReadyException("Transport circuit breaker is open: " + transport);
+            }
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probing) {
+                rejected.increment();
+                throw new NotReadyException("Transport is being probed: " + transport);
+            }
+            probing = true;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void release(boolean probe) {
+        if (probe) {
+            probing = false;
+        }
+    }
+
+    private synchronized void succeeded(boolean probe) {
+        consecutiveTimeouts = 0;
+        if (probe) {
+            probing = false;
+            state = State.CLOSED;
+        }
+    }
+
+    private synchronized void timedOut(boolean probe) {
+        timeouts.increment();
+        if (probe) {
+            probing = false;
+        }
+        if (probe || ++consecutiveTimeouts >= FAILURE_THRESHOLD) {
+            state = State.OPEN;
+            openedAt = clock.nanoTime();
+            consecutiveTimeouts = 0;
+        }
+    }
+
+}
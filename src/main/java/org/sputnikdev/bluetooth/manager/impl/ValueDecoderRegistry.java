@@ -0,0 +1,161 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.ValueDecoder;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A registry of characteristic value decoders keyed by characteristic UUID. Decoders for some standard
+ * (Bluetooth SIG) characteristics are registered by default.
+ *
+ * @author Vlad Kolotov
+ */
+class ValueDecoderRegistry {
+
+    private static final String BASE_UUID_SUFFIX = "-0000-1000-8000-00805f9b34fb";
+
+    private final Map<String, ValueDecoder> decoders = new ConcurrentHashMap<>();
+    // incremented on each registration, so that resolved decoders can be re-resolved when the registry changes
+    private final AtomicInteger version = new AtomicInteger();
+
+    ValueDecoderRegistry() {
+        // Tx Power Level, dBm
+        register("2a07", new FormatValueDecoder(ValueFormat.SINT8, 0, 0));
+        // Battery Level, percentage
+        register("2a19", new FormatValueDecoder(ValueFormat.UINT8, 0, 0));
+        // Temperature Measurement and Intermediate Temperature (flags + FLOAT), Celsius or Fahrenheit
+        register("2a1c", new FormatValueDecoder(ValueFormat.FLOAT, 1, 0));
+        register("2a1e", new FormatValueDecoder(ValueFormat.FLOAT, 1, 0));
+        // Temperature Celsius and Temperature Fahrenheit, 0.1 degree
+        register("2a1f", new FormatValueDecoder(ValueFormat.SINT16, 0, -1));
+        register("2a20", new FormatValueDecoder(ValueFormat.SINT16, 0, -1));
+        // Magnetic Declination, 0.01 degree
+        register("2a2c", new FormatValueDecoder(ValueFormat.UINT16, 0, -2));
+        // Heart Rate Measurement, beats per minute
+        register("2a37", new HeartRateValueDecoder());
+        // Elevation, 0.01 meter
+        register("2a6c", new FormatValueDecoder(ValueFormat.SINT24, 0, -2));
+        // Pressure, 0.1 Pa
+        register("2a6d", new FormatValueDecoder(ValueFormat.UINT32, 0, -1));
+        // Temperature, 0.01 degree Celsius
+        register("2a6e", new FormatValueDecoder(ValueFormat.SINT16, 0, -2));
+        // Humidity, 0.01 percent
+        register("2a6f", new FormatValueDecoder(ValueFormat.UINT16, 0, -2));
+        // UV Index
+        register("2a76", new FormatValueDecoder(ValueFormat.UINT8, 0, 0));
+        // Irradiance, 0.1 W/m2
+        register("2a77", new FormatValueDecoder(ValueFormat.UINT16, 0, -1));
+    }
+
+    /**
+     * Registers a decoder for a given characteristic UUID. Both short (16 or 32 bit) and full 128 bit UUIDs
+     * are accepted.
+     * @param characteristicUUID characteristic UUID
+     * @param decoder a new decoder
+     */
+    void register(String characteristicUUID, ValueDecoder decoder) {
+        if (decoder == null) {
+            throw new IllegalArgumentException("Decoder cannot be null");
+        }
+        decoders.put(normalize(characteristicUUID), decoder);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Returns version of the registry which changes each time a decoder is registered.
+     * @return registry version
+     */
+    int getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Resolves a decoder for a given characteristic URL.
+     * @param url characteristic URL
+     * @return a decoder or null if no decoder is registered for the characteristic
+     */
+    ValueDecoder resolve(URL url) {
+        String uuid = url.getCharacteristicUUID();
+        return uuid != null ? decoders.get(normalize(uuid)) : null;
+    }
+
+    private static String normalize(String uuid) {
+        if (uuid == null) {
+            throw new IllegalArgumentException("Characteristic UUID cannot be null");
+        }
+        String normalized = uuid.toLowerCase(Locale.ENGLISH);
+        if (normalized.length() == 4) {
+            return "0000" + normalized + BASE_UUID_SUFFIX;
+        } else if (normalized.length() == 8) {
+            return normalized + BASE_UUID_SUFFIX;
+        }
+        return normalized;
+    }
+
+    /**
+     * A decoder for fixed format values with optional decimal scaling.
+     */
+    static final class FormatValueDecoder implements ValueDecoder {
+
+        private final ValueFormat format;
+        private final int offset;
+        private final float multiplier;
+
+        FormatValueDecoder(ValueFormat format, int offset, int decimalExponent) {
+            this.format = format;
+            this.offset = offset;
+            this.multiplier = (float) Math.pow(10, decimalExponent);
+        }
+
+        @Override
+        public int decodeInt(byte[] value) {
+            return format.toInt(value, offset);
+        }
+
+        @Override
+        public float decodeFloat(byte[] value) {
+            return format.toFloat(value, offset) * multiplier;
+        }
+    }
+
+    /**
+     * Heart Rate Measurement: the first bit of the flags field defines whether the value is UINT8 or UINT16.
+     */
+    static final class HeartRateValueDecoder implements ValueDecoder {
+
+        @Override
+        public int decodeInt(byte[] value) {
+            return (value[0] & 0x01) == 0 ? ValueFormat.UINT8.toInt(value, 1) : ValueFormat.UINT16.toInt(value, 1);
+        }
+
+        @Override
+        public float decodeFloat(byte[] value) {
+            return decodeInt(value);
+        }
+    }
+
+}
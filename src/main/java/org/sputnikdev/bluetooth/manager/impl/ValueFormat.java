@@ -0,0 +1,168 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * GATT value formats (little endian) as defined in the Bluetooth Core specification, Vol 3, Part G, 3.3.3.5.
+ * Each format knows how to read itself from a byte array without any intermediate allocations.
+ *
+ * @author Vlad Kolotov
+ */
+enum ValueFormat {
+
+    UINT8 {
+        @Override
+        int toInt(byte[] data, int offset) {
+            return data[offset] & 0xFF;
+        }
+    },
+    SINT8 {
+        @Override
+        int toInt(byte[] data, int offset) {
+            return data[offset];
+        }
+    },
+    UINT16 {
+        @Override
+        int toInt(byte[] data, int offset) {
+            return data[offset] & 0xFF | (data[offset + 1] & 0xFF) << 8;
+        }
+    },
+    SINT16 {
+        @Override
+        int toInt(byte[] data, int offset) {
+            return data[offset] & 0xFF | data[offset + 1] << 8;
+        }
+    },
+    UINT24 {
+        @Override
+        int toInt(byte[] data, int offset) {
+            return data[offset] & 0xFF | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16;
+        }
+    },
+    SINT24 {
+        @Override
+        int toInt(byte[] data, int offset) {
+            return data[offset] & 0xFF | (data[offset + 1] & 0xFF) << 8 | data[offset + 2] << 16;
+        }
+    },
+    UINT32 {
+        @Override
+        int toInt(byte[] data, int offset) {
+            // values above Integer.MAX_VALUE overflow, this is a limitation of the int based API
+            return SINT32.toInt(data, offset);
+        }
+
+        @Override
+        float toFloat(byte[] data, int offset) {
+            return SINT32.toInt(data, offset) & 0xFFFFFFFFL;
+        }
+    },
+    SINT32 {
+        @Override
+        int toInt(byte[] data, int offset) {
+            return data[offset] & 0xFF | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16
+                    | data[offset + 3] << 24;
+        }
+    },
+    /**
+     * IEEE-11073 16-bit SFLOAT: 4 bit exponent and 12 bit mantissa.
+     */
+    SFLOAT {
+        @Override
+        int toInt(byte[] data, int offset) {
+            return (int) toFloat(data, offset);
+        }
+
+        @Override
+        float toFloat(byte[] data, int offset) {
+            int raw = UINT16.toInt(data, offset);
+            int mantissa = raw & 0x0FFF;
+            switch (mantissa) {
+                case 0x07FF:
+                case 0x0800:
+                case 0x0801:
+                    return Float.NaN;
+                case 0x07FE:
+                    return Float.POSITIVE_INFINITY;
+                case 0x0802:
+                    return Float.NEGATIVE_INFINITY;
+                default:
+                    break;
+            }
+            if (mantissa >= 0x0800) {
+                mantissa -= 0x1000;
+            }
+            int exponent = raw >> 12;
+            if (exponent >= 0x08) {
+                exponent -= 0x10;
+            }
+            return (float) (mantissa * POWERS_OF_TEN[exponent + POWERS_OF_TEN_OFFSET]);
+        }
+    },
+    /**
+     * IEEE-11073 32-bit FLOAT: 8 bit exponent and 24 bit mantissa.
+     */
+    FLOAT {
+        @Override
+        int toInt(byte[] data, int offset) {
+            return (int) toFloat(data, offset);
+        }
+
+        @Override
+        float toFloat(byte[] data, int offset) {
+            int mantissa = UINT24.toInt(data, offset);
+            switch (mantissa) {
+                case 0x007FFFFF:
+                case 0x00800000:
+                case 0x00800001:
+                    return Float.NaN;
+                case 0x007FFFFE:
+                    return Float.POSITIVE_INFINITY;
+                case 0x00800002:
+                    return Float.NEGATIVE_INFINITY;
+                default:
+                    break;
+            }
+            if (mantissa >= 0x00800000) {
+                mantissa -= 0x01000000;
+            }
+            return (float) (mantissa * POWERS_OF_TEN[data[offset + 3] + POWERS_OF_TEN_OFFSET]);
+        }
+    };
+
+    // powers of ten for all possible FLOAT (and SFLOAT) exponents, from -128 to 127
+    private static final int POWERS_OF_TEN_OFFSET = 128;
+    private static final double[] POWERS_OF_TEN = new double[256];
+
+    static {
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = Double.parseDouble("1e" + (i - POWERS_OF_TEN_OFFSET));
+        }
+    }
+
+    abstract int toInt(byte[] data, int offset);
+
+    float toFloat(byte[] data, int offset) {
+        return toInt(data, offset);
+    }
+
+}
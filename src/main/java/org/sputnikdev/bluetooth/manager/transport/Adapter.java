@@ -35,6 +35,15 @@ public interface Adapter extends BluetoothObject {
 
     boolean isDiscovering();
     void enableDiscoveringNotifications(Notification<Boolean> notification);
+    /**
+     * Enables discovering status notifications that are delivered as primitive values.
+     * By default the notification is adapted to {@link #enableDiscoveringNotifications(Notification)},
+     * transports should override this method to avoid boxing.
+     * @param notification discovering status notification
+     */
+    default void enablePrimitiveDiscoveringNotifications(BooleanNotification notification) {
+        enableDiscoveringNotifications(notification::notify);
+    }
     void disableDiscoveringNotifications();
     boolean startDiscovery();
     boolean stopDiscovery();
@@ -42,6 +51,15 @@ public interface Adapter extends BluetoothObject {
     boolean isPowered();
     void setPowered(boolean b);
     void enablePoweredNotifications(Notification<Boolean> notification);
+    /**
+     * Enables powered status notifications that are delivered as primitive values.
+     * By default the notification is adapted to {@link #enablePoweredNotifications(Notification)},
+     * transports should override this method to avoid boxing.
+     * @param notification powered status notification
+     */
+    default void enablePrimitivePoweredNotifications(BooleanNotification notification) {
+        enablePoweredNotifications(notification::notify);
+    }
     void disablePoweredNotifications();
 
     List<Device> getDevices();
@@ -39,4 +39,13 @@ public interface Characteristic extends BluetoothObject {
     boolean writeValue(byte[] data);
 
     void enableValueNotifications(Notification<byte[]> notification);
+
+    /**
+     * Returns the maximum number of bytes that can be written in a single packet, i.e. the negotiated ATT MTU
+     * minus the ATT header. Transports that negotiate a larger MTU should override this method.
+     * @return maximum write payload size, 20 bytes (default ATT MTU) by default
+     */
+    default int getMaxPayloadSize() {
+        return 20;
+    }
 }
@@ -1,8 +1,9 @@
 package org.sputnikdev.bluetooth.manager.transport;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Characteristic properties (access type).
@@ -19,6 +20,25 @@ public enum CharacteristicAccessType {
     AUTHENTICATED_SIGNED_WRITES(0x40),
     EXTENDED_PROPERTIES(0x80);
 
+    // lookup tables for all possible values of the (one byte) characteristic properties field
+    private static final CharacteristicAccessType[] BY_BIT_FIELD = new CharacteristicAccessType[256];
+    private static final List<EnumSet<CharacteristicAccessType>> BY_FLAGS = new ArrayList<>(256);
+
+    static {
+        for (CharacteristicAccessType type : values()) {
+            BY_BIT_FIELD[type.bitField] = type;
+        }
+        for (int flags = 0; flags < 256; flags++) {
+            EnumSet<CharacteristicAccessType> types = EnumSet.noneOf(CharacteristicAccessType.class);
+            for (CharacteristicAccessType type : values()) {
+                if ((type.bitField & flags) != 0) {
+                    types.add(type);
+                }
+            }
+            BY_FLAGS.add(types);
+        }
+    }
+
     int bitField;
 
     CharacteristicAccessType(int bitField) {
@@ -30,15 +50,31 @@ public enum CharacteristicAccessType {
     }
 
     public static CharacteristicAccessType fromBitField(int bitField) {
-        return Stream.of(CharacteristicAccessType.values())
-                .filter(c -> c.bitField == bitField)
-                .findFirst().orElse(null);
+        return bitField >= 0 && bitField < BY_BIT_FIELD.length ? BY_BIT_FIELD[bitField] : null;
     }
 
+    /**
+     * Parses characteristic properties. The returned set belongs to the caller and can be modified
+     * (transports return it from {@link Characteristic#getFlags()}).
+     * @param flags characteristic properties bit field
+     * @return a set of access types
+     */
     public static Set<CharacteristicAccessType> parse(int flags) {
-        return Stream.of(CharacteristicAccessType.values())
-                .filter(c -> (c.bitField & flags) > 0)
-                .collect(Collectors.toSet());
+        // copying an enum set is cheap (a single bit vector)
+        return BY_FLAGS.get(flags & 0xFF).clone();
+    }
+
+    /**
+     * Converts a set of access types into characteristic properties bit field.
+     * @param types access types
+     * @return characteristic properties bit field
+     */
+    public static int toBitField(Set<CharacteristicAccessType> types) {
+        int flags = 0;
+        for (CharacteristicAccessType type : types) {
+            flags |= type.bitField;
+        }
+        return flags;
     }
 
 }
@@ -20,6 +20,7 @@ package org.sputnikdev.bluetooth.manager.transport;
  * #L%
  */
 
+import org.sputnikdev.bluetooth.URL;
 import org.sputnikdev.bluetooth.manager.BluetoothAddressType;
 
 import java.util.List;
@@ -49,6 +50,16 @@ public interface Device extends BluetoothObject {
 
     void enableBlockedNotifications(Notification<Boolean> notification);
 
+    /**
+     * Enables blocked status notifications that are delivered as primitive values.
+     * By default the notification is adapted to {@link #enableBlockedNotifications(Notification)},
+     * transports should override this method to avoid boxing.
+     * @param notification blocked status notification
+     */
+    default void enablePrimitiveBlockedNotifications(BooleanNotification notification) {
+        enableBlockedNotifications(notification::notify);
+    }
+
     void disableBlockedNotifications();
 
     void setBlocked(boolean blocked);
@@ -59,18 +70,48 @@ public interface Device extends BluetoothObject {
 
     void enableRSSINotifications(Notification<Short> notification);
 
+    /**
+     * Enables RSSI notifications that are delivered as primitive values.
+     * By default the notification is adapted to {@link #enableRSSINotifications(Notification)},
+     * transports should override this method to avoid boxing.
+     * @param notification RSSI notification
+     */
+    default void enablePrimitiveRSSINotifications(ShortNotification notification) {
+        enableRSSINotifications(notification::notify);
+    }
+
     void disableRSSINotifications();
 
     boolean isConnected();
 
     void enableConnectedNotifications(Notification<Boolean> notification);
 
+    /**
+     * Enables connection status notifications that are delivered as primitive values.
+     * By default the notification is adapted to {@link #enableConnectedNotifications(Notification)},
+     * transports should override this method to avoid boxing.
+     * @param notification connection status notification
+     */
+    default void enablePrimitiveConnectedNotifications(BooleanNotification notification) {
+        enableConnectedNotifications(notification::notify);
+    }
+
     void disableConnectedNotifications();
 
     boolean isServicesResolved();
 
     void enableServicesResolvedNotifications(Notification<Boolean> notification);
 
+    /**
+     * Enables services resolved status notifications that are delivered as primitive values.
+     * By default the notification is adapted to {@link #enableServicesResolvedNotifications(Notification)},
+     * transports should override this method to avoid boxing.
+     * @param notification services resolved status notification
+     */
+    default void enablePrimitiveServicesResolvedNotifications(BooleanNotification notification) {
+        enableServicesResolvedNotifications(notification::notify);
+    }
+
     void disableServicesResolvedNotifications();
 
     List<Service> getServices();
@@ -81,4 +122,16 @@ public interface Device extends BluetoothObject {
 
     BluetoothAddressType getAddressType();
 
+    /**
+     * Reads values of the given characteristics in one go. Transports that can batch reads natively (e.g. ATT Read
+     * Multiple request) should override this method, by default it is not supported and the bluetooth manager reads
+     * characteristics one by one.
+     * @param characteristics characteristics of the device to read
+     * @return a map of characteristic URLs (without protocol) to their values, characteristics that could not be read
+     *     are missing; or null if batch reads are not supported
+     */
+    default Map<URL, byte[]> readValues(List<Characteristic> characteristics) {
+        return null;
+    }
+
 }
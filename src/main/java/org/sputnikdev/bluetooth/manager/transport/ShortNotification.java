@@ -0,0 +1,35 @@
+package org.sputnikdev.bluetooth.manager.transport;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-manager
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A primitive specialization of {@link Notification} for short values (e.g. RSSI). Transports are encouraged
+ * to override {@link Device#enablePrimitiveRSSINotifications(ShortNotification)} so that values are delivered
+ * without boxing, by default a primitive notification is adapted to the generic one.
+ *
+ * @author Vlad Kolotov
+ */
+@FunctionalInterface
+public interface ShortNotification {
+
+    void notify(short value);
+
+}
@@ -0,0 +1,68 @@
+package org.sputnikdev.bluetooth.manager;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class DeadbandRssiReportingPolicyTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testDeadband() throws Exception {
+        DeadbandRssiReportingPolicy policy = new DeadbandRssiReportingPolicy(3, 100, 0);
+
+        assertTrue(policy.report((short) -60, 0));
+        assertFalse(policy.report((short) -62, 200 * MS));
+        assertFalse(policy.report((short) -58, 300 * MS));
+        assertTrue(policy.report((short) -63, 400 * MS));
+        // within the minimal interval
+        assertFalse(policy.report((short) -70, 450 * MS));
+        // compared to the last reported value
+        assertFalse(policy.report((short) -61, 600 * MS));
+        assertTrue(policy.report((short) -60, 700 * MS));
+        // no heartbeats
+        assertFalse(policy.report((short) -60, 100000 * MS));
+    }
+
+    @Test
+    public void testMaxInterval() throws Exception {
+        DeadbandRssiReportingPolicy policy = new DeadbandRssiReportingPolicy(3, 100, 1000);
+
+        assertTrue(policy.report((short) -60, 0));
+        assertFalse(policy.report((short) -60, 999 * MS));
+        assertTrue(policy.report((short) -60, 1000 * MS));
+        assertFalse(policy.report((short) -61, 1500 * MS));
+    }
+
+    @Test
+    public void testAdaptiveDeadband() throws Exception {
+        DeadbandRssiReportingPolicy policy = new DeadbandRssiReportingPolicy(2, 0, 0, 2);
+        assertEquals(2.0, policy.getEffectiveDeadband(), 0.0);
+
+        long now = 0;
+        assertTrue(policy.report((short) -60, now));
+        // a noisy signal widens the deadband
+        for (int i = 0; i < 100; i++) {
+            policy.report((short) (i % 2 == 0 ? -50 : -70), now += MS);
+        }
+        assertTrue(policy.getEffectiveDeadband() > 15);
+
+        // a quiet signal narrows it back
+        for (int i = 0; i < 200; i++) {
+            policy.report((short) -60, now += MS);
+        }
+        assertEquals(2.0, policy.getEffectiveDeadband(), 0.01);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidParameters() throws Exception {
+        new DeadbandRssiReportingPolicy(-1, 0, 0);
+    }
+
+}
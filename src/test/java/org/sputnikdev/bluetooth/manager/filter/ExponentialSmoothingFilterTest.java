@@ -0,0 +1,41 @@
+package org.sputnikdev.bluetooth.manager.filter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class ExponentialSmoothingFilterTest {
+
+    @Test
+    public void testNext() throws Exception {
+        ExponentialSmoothingFilter filter = new ExponentialSmoothingFilter(0.5);
+        assertEquals(0, filter.current());
+
+        // the first value initializes the filter
+        assertEquals(-60, filter.next((short) -60));
+        assertEquals(-70, filter.next((short) -80));
+        assertEquals(-75, filter.next((short) -80));
+        assertEquals(-75, filter.current());
+    }
+
+    @Test
+    public void testDefaultAlpha() throws Exception {
+        ExponentialSmoothingFilter filter = new ExponentialSmoothingFilter();
+        assertEquals(-60, filter.next((short) -60));
+        assertEquals(-65, filter.next((short) -80));
+    }
+
+    @Test
+    public void testNoSmoothing() throws Exception {
+        ExponentialSmoothingFilter filter = new ExponentialSmoothingFilter(1);
+        assertEquals(-60, filter.next((short) -60));
+        assertEquals(-80, filter.next((short) -80));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidAlpha() throws Exception {
+        new ExponentialSmoothingFilter(0);
+    }
+
+}
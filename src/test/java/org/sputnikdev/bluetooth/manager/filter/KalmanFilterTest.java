@@ -0,0 +1,23 @@
+package org.sputnikdev.bluetooth.manager.filter;
+
+import org.junit.Test;
+import org.sputnikdev.bluetooth.RssiKalmanFilter;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class KalmanFilterTest {
+
+    @Test
+    public void testEquivalentToRssiKalmanFilter() throws Exception {
+        short[] samples = {-60, -65, -58, -70, -62, -61, -80, -59, -63, -64};
+        RssiKalmanFilter expected = new RssiKalmanFilter(0.2, 20);
+        KalmanFilter filter = new KalmanFilter(0.2, 20);
+        assertEquals(0, filter.current());
+        for (short sample : samples) {
+            assertEquals((short) expected.next(sample), filter.next(sample));
+        }
+        assertEquals((short) expected.current(), filter.current());
+    }
+
+}
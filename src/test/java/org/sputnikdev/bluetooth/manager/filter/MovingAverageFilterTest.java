@@ -0,0 +1,23 @@
+package org.sputnikdev.bluetooth.manager.filter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class MovingAverageFilterTest {
+
+    @Test
+    public void testNext() throws Exception {
+        MovingAverageFilter filter = new MovingAverageFilter(3);
+        assertEquals(0, filter.current());
+
+        assertEquals(-60, filter.next((short) -60));
+        assertEquals(-65, filter.next((short) -70));
+        assertEquals(-60, filter.next((short) -50));
+        // the first value leaves the window
+        assertEquals(-60, filter.next((short) -60));
+        assertEquals(-60, filter.current());
+    }
+
+}
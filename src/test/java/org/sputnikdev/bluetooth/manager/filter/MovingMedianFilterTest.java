@@ -0,0 +1,40 @@
+package org.sputnikdev.bluetooth.manager.filter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class MovingMedianFilterTest {
+
+    @Test
+    public void testNext() throws Exception {
+        MovingMedianFilter filter = new MovingMedianFilter(3);
+        assertEquals(0, filter.current());
+
+        assertEquals(-60, filter.next((short) -60));
+        assertEquals(-65, filter.next((short) -70));
+        // an outlier is ignored
+        assertEquals(-60, filter.next((short) -20));
+        assertEquals(-62, filter.next((short) -62));
+        assertEquals(-62, filter.next((short) -64));
+        assertEquals(-64, filter.next((short) -90));
+        assertEquals(-64, filter.current());
+    }
+
+    @Test
+    public void testDuplicates() throws Exception {
+        MovingMedianFilter filter = new MovingMedianFilter(4);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(-50, filter.next((short) -50));
+        }
+        assertEquals(-50, filter.next((short) -60));
+        assertEquals(-55, filter.next((short) -60));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWindow() throws Exception {
+        new MovingMedianFilter(0);
+    }
+
+}
@@ -235,7 +235,7 @@ public class AbstractBluetoothObjectGovernorTest {
     @Test
     public void testNotifyLastChanged() {
         Date date = new Date();
-        Whitebox.setInternalState(governor, "lastActivity", date);
+        Whitebox.setInternalState(governor, "lastActivity", date.getTime());
         governor.addGovernorListener(governorListener);
 
         governor.notifyLastChanged();
@@ -246,7 +246,7 @@ public class AbstractBluetoothObjectGovernorTest {
     @Test
     public void testNotifyLastChangedException() {
         Date date = new Date();
-        Whitebox.setInternalState(governor, "lastActivity", date);
+        Whitebox.setInternalState(governor, "lastActivity", date.getTime());
         governor.addGovernorListener(governorListener);
         doThrow(Exception.class).when(governorListener).lastUpdatedChanged(any());
 
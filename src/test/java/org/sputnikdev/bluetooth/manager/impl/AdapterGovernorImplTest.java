@@ -21,8 +21,8 @@ import org.sputnikdev.bluetooth.URL;
 import org.sputnikdev.bluetooth.manager.*;
 import org.sputnikdev.bluetooth.manager.transport.Adapter;
 import org.sputnikdev.bluetooth.manager.transport.BluetoothObjectFactory;
+import org.sputnikdev.bluetooth.manager.transport.BooleanNotification;
 import org.sputnikdev.bluetooth.manager.transport.Device;
-import org.sputnikdev.bluetooth.manager.transport.Notification;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -68,9 +68,9 @@ public class AdapterGovernorImplTest {
     private BluetoothObjectFactory bluetoothObjectFactory;
 
     @Captor
-    private ArgumentCaptor<Notification<Boolean>> poweredCaptor;
+    private ArgumentCaptor<BooleanNotification> poweredCaptor;
     @Captor
-    private ArgumentCaptor<Notification<Boolean>> discoveringCaptor;
+    private ArgumentCaptor<BooleanNotification> discoveringCaptor;
 
     @Spy
     @InjectMocks
@@ -85,8 +85,8 @@ public class AdapterGovernorImplTest {
         when(adapter.isDiscovering()).thenReturn(DISCOVERING);
         when(adapter.getAlias()).thenReturn(ALIAS);
         when(adapter.getName()).thenReturn(NAME);
-        doNothing().when(adapter).enablePoweredNotifications(poweredCaptor.capture());
-        doNothing().when(adapter).enableDiscoveringNotifications(discoveringCaptor.capture());
+        doNothing().when(adapter).enablePrimitivePoweredNotifications(poweredCaptor.capture());
+        doNothing().when(adapter).enablePrimitiveDiscoveringNotifications(discoveringCaptor.capture());
         governor.addAdapterListener(listener);
 
         when(adapter.getURL()).thenReturn(URL);
@@ -106,8 +106,8 @@ public class AdapterGovernorImplTest {
         //verify(adapter, times(1)).isDiscovering();
         //verify(listener, times(1)).discovering(DISCOVERING);
 
-        verify(adapter, times(1)).enablePoweredNotifications(poweredCaptor.getValue());
-        verify(adapter, times(1)).enableDiscoveringNotifications(discoveringCaptor.getValue());
+        verify(adapter, times(1)).enablePrimitivePoweredNotifications(poweredCaptor.getValue());
+        verify(adapter, times(1)).enablePrimitiveDiscoveringNotifications(discoveringCaptor.getValue());
 
         verifyNoMoreInteractions(listener, adapter);
 
@@ -431,16 +431,16 @@ public class AdapterGovernorImplTest {
     public void testAdapterPoweredNotification() {
         when(adapter.isPowered()).thenReturn(false).thenReturn(true).thenReturn(false);
 
-        ArgumentCaptor<Notification> notificationCaptor = ArgumentCaptor.forClass(Notification.class);
+        ArgumentCaptor<BooleanNotification> notificationCaptor = ArgumentCaptor.forClass(BooleanNotification.class);
 
-        doNothing().when(adapter).enablePoweredNotifications(notificationCaptor.capture());
+        doNothing().when(adapter).enablePrimitivePoweredNotifications(notificationCaptor.capture());
 
         // init method will enable notifications, if they are not enabled already
         governor.init(adapter);
 
-        verify(adapter, times(1)).enablePoweredNotifications(notificationCaptor.getValue());
+        verify(adapter, times(1)).enablePrimitivePoweredNotifications(notificationCaptor.getValue());
 
-        notificationCaptor.getValue().notify(Boolean.TRUE);
+        notificationCaptor.getValue().notify(true);
 
         verify(listener, times(1)).powered(true);
         verify(governor, times(1)).notifyPowered(true);
@@ -448,7 +448,7 @@ public class AdapterGovernorImplTest {
 
 //        when(governor.findBluetoothObject()).thenReturn(null);
 //
-//        notificationCaptor.getValue().notify(Boolean.FALSE);
+//        notificationCaptor.getValue().notify(false);
 //        // handling the case when the adapter physically disconnected
 //        verify(listener, times(1)).powered(false);
 //        verify(governor, times(1)).notifyPowered(false);
@@ -460,16 +460,16 @@ public class AdapterGovernorImplTest {
     public void testAdapterDiscoveringNotification() {
         when(adapter.isDiscovering()).thenReturn(false).thenReturn(true);
 
-        ArgumentCaptor<Notification> notificationCaptor = ArgumentCaptor.forClass(Notification.class);
+        ArgumentCaptor<BooleanNotification> notificationCaptor = ArgumentCaptor.forClass(BooleanNotification.class);
 
-        doNothing().when(adapter).enableDiscoveringNotifications(notificationCaptor.capture());
+        doNothing().when(adapter).enablePrimitiveDiscoveringNotifications(notificationCaptor.capture());
 
         // init method will enable notifications, if they are not enabled already
         governor.init(adapter);
 
-        verify(adapter, times(1)).enableDiscoveringNotifications(notificationCaptor.getValue());
+        verify(adapter, times(1)).enablePrimitiveDiscoveringNotifications(notificationCaptor.getValue());
 
-        notificationCaptor.getValue().notify(Boolean.TRUE);
+        notificationCaptor.getValue().notify(true);
 
         verify(listener, times(1)).discovering(true);
         verify(governor, times(1)).notifyDiscovering(true);
@@ -0,0 +1,65 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+import org.junit.Test;
+import org.sputnikdev.bluetooth.URL;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class AdapterLoadTrackerTest {
+
+    private static final URL ADAPTER_1 = new URL("tinyb://11:22:33:44:55:66");
+    private static final URL ADAPTER_2 = new URL("/11:22:33:44:55:77");
+
+    private AdapterLoadTracker tracker = new AdapterLoadTracker();
+
+    @Test
+    public void testConnections() throws Exception {
+        tracker.setMaxConnections(2);
+        tracker.connected(ADAPTER_1);
+        assertEquals(1, tracker.getConnections(ADAPTER_1.copyWithProtocol(null)));
+        assertTrue(tracker.hasCapacity(ADAPTER_1));
+        tracker.connected(ADAPTER_1);
+        assertFalse(tracker.hasCapacity(ADAPTER_1));
+        assertTrue(tracker.hasCapacity(ADAPTER_2));
+
+        tracker.disconnected(ADAPTER_1);
+        tracker.disconnected(ADAPTER_1);
+        tracker.disconnected(ADAPTER_1);
+        assertEquals(0, tracker.getConnections(ADAPTER_1));
+    }
+
+    @Test
+    public void testScore() throws Exception {
+        assertEquals(0, tracker.getScore(ADAPTER_1, 0), 0.0);
+        tracker.connected(ADAPTER_1);
+        assertEquals(1, tracker.getScore(ADAPTER_1, 0), 0.0);
+
+        tracker.connectionAttempted(ADAPTER_2, TimeUnit.SECONDS.toNanos(5), false, 0);
+        // failure rate 0.2 * 5 + latency 1 second
+        assertEquals(2, tracker.getScore(ADAPTER_2, 0), 0.001);
+
+        tracker.connectionAttempted(ADAPTER_2, 0, true, 0);
+        assertTrue(tracker.getScore(ADAPTER_2, 0) < 2);
+    }
+
+    @Test
+    public void testScoreDecay() throws Exception {
+        tracker.connected(ADAPTER_1);
+        tracker.connectionAttempted(ADAPTER_1, TimeUnit.SECONDS.toNanos(5), false, 0);
+        assertEquals(3, tracker.getScore(ADAPTER_1, 0), 0.001);
+
+        // latency and failure rate halve every minute, live connections do not decay
+        assertEquals(2, tracker.getScore(ADAPTER_1, TimeUnit.MINUTES.toNanos(1)), 0.001);
+        assertEquals(1, tracker.getScore(ADAPTER_1, TimeUnit.HOURS.toNanos(1)), 0.001);
+
+        // a new attempt is smoothed with the decayed values
+        tracker.connectionAttempted(ADAPTER_1, 0, true, TimeUnit.MINUTES.toNanos(1));
+        assertEquals(1 + 0.8, tracker.getScore(ADAPTER_1, TimeUnit.MINUTES.toNanos(1)), 0.001);
+    }
+
+}
@@ -3,12 +3,21 @@ package org.sputnikdev.bluetooth.manager.impl;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.Whitebox;
 import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.BluetoothGovernor;
+import org.sputnikdev.bluetooth.manager.CombinedGovernor;
+import org.sputnikdev.bluetooth.manager.ConnectionStrategy;
+import org.sputnikdev.bluetooth.manager.DeviceGovernor;
 import org.sputnikdev.bluetooth.manager.DiscoveredAdapter;
+import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
+import org.sputnikdev.bluetooth.manager.ManagerListener;
+import org.sputnikdev.bluetooth.manager.RssiSnapshot;
+import org.sputnikdev.bluetooth.manager.RssiSnapshotListener;
 import org.sputnikdev.bluetooth.manager.transport.Adapter;
 import org.sputnikdev.bluetooth.manager.transport.BluetoothObject;
 import org.sputnikdev.bluetooth.manager.transport.BluetoothObjectFactory;
@@ -19,15 +28,19 @@ import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @RunWith(PowerMockRunner.class)
@@ -232,6 +245,196 @@ public class BluetoothManagerImplTest {
                 dbusAdapterGovernor, dbusDeviceGovernor, dbusCharacteristicGovernor);
     }
 
+    @Test
+    public void testNotifyGovernorReadyRouted() throws Exception {
+        ManagerListener exactListener = mock(ManagerListener.class);
+        ManagerListener combinedListener = mock(ManagerListener.class);
+        ManagerListener otherListener = mock(ManagerListener.class);
+        bluetoothManager.addManagerListener(exactListener, TINYB_CHARACTERISTIC_URL);
+        bluetoothManager.addManagerListener(combinedListener,
+                TINYB_CHARACTERISTIC_URL.copyWithProtocol(null).copyWithAdapter(CombinedGovernor.COMBINED_ADDRESS));
+        bluetoothManager.addManagerListener(otherListener, TINYB_DEVICE_URL);
+
+        BluetoothGovernor tinybGovernor = mock(BluetoothGovernor.class);
+        when(tinybGovernor.getURL()).thenReturn(TINYB_CHARACTERISTIC_URL);
+        BluetoothGovernor dbusGovernor = mock(BluetoothGovernor.class);
+        when(dbusGovernor.getURL()).thenReturn(DBUS_CHARACTERISTIC_URL);
+
+        bluetoothManager.notifyGovernorReady(tinybGovernor, true);
+        bluetoothManager.notifyGovernorReady(dbusGovernor, true);
+
+        verify(exactListener).ready(tinybGovernor, true);
+        verify(exactListener, never()).ready(dbusGovernor, true);
+        verify(combinedListener).ready(tinybGovernor, true);
+        verify(combinedListener).ready(dbusGovernor, true);
+        verifyNoMoreInteractions(otherListener);
+
+        bluetoothManager.removeManagerListener(combinedListener,
+                TINYB_CHARACTERISTIC_URL.copyWithAdapter(CombinedGovernor.COMBINED_ADDRESS));
+        bluetoothManager.notifyGovernorReady(dbusGovernor, false);
+        verify(combinedListener, never()).ready(dbusGovernor, false);
+    }
+
+    @Test
+    public void testCombinedDeviceDelegatesCreatedLazily() throws Exception {
+        URL combinedURL = TINYB_DEVICE_URL.copyWithProtocol(null).copyWithAdapter(CombinedGovernor.COMBINED_ADDRESS);
+        CombinedDeviceGovernorImpl combined = (CombinedDeviceGovernorImpl) bluetoothManager.getGovernor(combinedURL);
+
+        // both adapters are discovered, but none of them has seen the device yet
+        assertFalse(bluetoothManager.getRegisteredGovernors().contains(TINYB_DEVICE_URL.copyWithProtocol(null)));
+        assertFalse(bluetoothManager.getRegisteredGovernors().contains(DBUS_DEVICE_URL.copyWithProtocol(null)));
+
+        combined.discovered(new DiscoveredDevice(TINYB_DEVICE_URL, "name", null, (short) -60, 0, true));
+
+        assertTrue(bluetoothManager.getRegisteredGovernors().contains(TINYB_DEVICE_URL.copyWithProtocol(null)));
+        assertFalse(bluetoothManager.getRegisteredGovernors().contains(DBUS_DEVICE_URL.copyWithProtocol(null)));
+    }
+
+    @Test
+    public void testCombinedDeviceIdleDelegatesRetired() throws Exception {
+        MonotonicClock clock = mock(MonotonicClock.class);
+        when(clock.nanoTime()).thenReturn(0L);
+        bluetoothManager.setClock(clock);
+        bluetoothManager.setDelegateTtl(10);
+        URL combinedURL = TINYB_DEVICE_URL.copyWithProtocol(null).copyWithAdapter(CombinedGovernor.COMBINED_ADDRESS);
+        CombinedDeviceGovernorImpl combined = (CombinedDeviceGovernorImpl) bluetoothManager.getGovernor(combinedURL);
+        combined.setConnectionStrategy(ConnectionStrategy.PREFERRED_ADAPTER);
+        combined.setPreferredAdapter(DBUS_ADAPTER_URL);
+
+        // discoveries are routed to the combined governor by the device address
+        Whitebox.invokeMethod(bluetoothManager, "notifyDeviceDiscovered",
+                new DiscoveredDevice(TINYB_DEVICE_URL, "name", null, (short) -60, 0, true));
+        Whitebox.invokeMethod(bluetoothManager, "notifyDeviceDiscovered",
+                new DiscoveredDevice(DBUS_DEVICE_URL, "name", null, (short) -60, 0, true));
+        BluetoothObjectGovernor tinybGovernor =
+                (BluetoothObjectGovernor) bluetoothManager.getGovernor(TINYB_DEVICE_URL);
+        BluetoothObjectGovernor dbusGovernor =
+                (BluetoothObjectGovernor) bluetoothManager.getGovernor(DBUS_DEVICE_URL);
+        // the preferred adapter becomes the connection target
+        combined.update();
+        Map<URL, ?> governorFutures = Whitebox.getInternalState(bluetoothManager, "governorFutures");
+        assertTrue(governorFutures.containsKey(tinybGovernor.getURL()));
+        assertTrue(governorFutures.containsKey(dbusGovernor.getURL()));
+
+        // the TTL has not expired yet
+        when(clock.nanoTime()).thenReturn(TimeUnit.SECONDS.toNanos(10));
+        combined.update();
+        assertTrue(governorFutures.containsKey(tinybGovernor.getURL()));
+
+        // the connection target is never retired
+        when(clock.nanoTime()).thenReturn(TimeUnit.SECONDS.toNanos(11));
+        combined.update();
+        assertFalse(governorFutures.containsKey(tinybGovernor.getURL()));
+        assertTrue(governorFutures.containsKey(dbusGovernor.getURL()));
+        // retired delegates are not disposed, they are just not refreshed
+        assertTrue(bluetoothManager.getRegisteredGovernors().contains(tinybGovernor.getURL()));
+        verify(tinybGovernor, never()).dispose();
+
+        // the device is seen again by the adapter
+        Whitebox.invokeMethod(bluetoothManager, "notifyDeviceDiscovered",
+                new DiscoveredDevice(TINYB_DEVICE_URL, "name", null, (short) -60, 0, true));
+        assertTrue(governorFutures.containsKey(tinybGovernor.getURL()));
+    }
+
+    @Test
+    public void testCombinedDeviceFindLeastLoaded() throws Exception {
+        MonotonicClock clock = mock(MonotonicClock.class);
+        when(clock.nanoTime()).thenReturn(0L);
+        bluetoothManager.setClock(clock);
+        URL combinedURL = TINYB_DEVICE_URL.copyWithProtocol(null).copyWithAdapter(CombinedGovernor.COMBINED_ADDRESS);
+        CombinedDeviceGovernorImpl combined = (CombinedDeviceGovernorImpl) bluetoothManager.getGovernor(combinedURL);
+        combined.discovered(new DiscoveredDevice(TINYB_DEVICE_URL, "name", null, (short) -60, 0, true));
+        combined.discovered(new DiscoveredDevice(DBUS_DEVICE_URL, "name", null, (short) -60, 0, true));
+        DeviceGovernor tinybGovernor = bluetoothManager.getDeviceGovernor(TINYB_DEVICE_URL);
+        DeviceGovernor dbusGovernor = bluetoothManager.getDeviceGovernor(DBUS_DEVICE_URL);
+        // both adapters see the device, the tinyb one is a bit nearer (but within the load balancing margin)
+        for (Object handler : (Object[]) Whitebox.getInternalState(combined, "handlers")) {
+            boolean tinyb = Whitebox.getInternalState(handler, "delegate") == tinybGovernor;
+            Whitebox.setInternalState(handler, "distance", tinyb ? 1.0 : 2.0);
+            Whitebox.setInternalState(handler, "rssi", (short) (tinyb ? -60 : -65));
+        }
+        Whitebox.setInternalState(combined, "nearest", tinybGovernor);
+        AdapterLoadTracker tracker = bluetoothManager.getAdapterLoadTracker();
+
+        assertEquals(tinybGovernor, Whitebox.invokeMethod(combined, "findLeastLoaded"));
+
+        // the nearest adapter is busy
+        tracker.connected(TINYB_ADAPTER_URL);
+        tracker.connected(TINYB_ADAPTER_URL);
+        assertEquals(dbusGovernor, Whitebox.invokeMethod(combined, "findLeastLoaded"));
+
+        // the other adapter keeps failing
+        for (int i = 0; i < 10; i++) {
+            tracker.connectionAttempted(DBUS_ADAPTER_URL, TimeUnit.SECONDS.toNanos(5), false, 0);
+        }
+        assertEquals(tinybGovernor, Whitebox.invokeMethod(combined, "findLeastLoaded"));
+
+        // old failures are forgotten
+        when(clock.nanoTime()).thenReturn(TimeUnit.MINUTES.toNanos(10));
+        for (Object handler : (Object[]) Whitebox.getInternalState(combined, "handlers")) {
+            Whitebox.setInternalState(handler, "lastAdvertised", TimeUnit.MINUTES.toNanos(10));
+        }
+        assertEquals(dbusGovernor, Whitebox.invokeMethod(combined, "findLeastLoaded"));
+    }
+
+    @Test
+    public void testCombinedDeviceRssiUsesCachedDistance() throws Exception {
+        URL combinedURL = TINYB_DEVICE_URL.copyWithProtocol(null).copyWithAdapter(CombinedGovernor.COMBINED_ADDRESS);
+        CombinedDeviceGovernorImpl combined = (CombinedDeviceGovernorImpl) bluetoothManager.getGovernor(combinedURL);
+        combined.discovered(new DiscoveredDevice(TINYB_DEVICE_URL, "name", null, (short) -60, 0, true));
+        DeviceGovernor tinybGovernor = bluetoothManager.getDeviceGovernor(TINYB_DEVICE_URL);
+        Object handler = ((Object[]) Whitebox.getInternalState(combined, "handlers"))[0];
+        // registration itself may query the delegate
+        reset(tinybGovernor);
+
+        Whitebox.invokeMethod(handler, "rssiChanged", (short) -60);
+        // default TX power (-55) and propagation exponent (4)
+        assertEquals(1.333, (double) Whitebox.getInternalState(handler, "distance"), 0.001);
+        // neither the transport nor the adapter governor is queried
+        verify(tinybGovernor, never()).getEstimatedDistance();
+        verify(tinybGovernor, never()).getRSSI();
+        verify(tinybGovernor, never()).getTxPower();
+    }
+
+    @Test
+    public void testRssiSnapshot() throws Exception {
+        DeviceGovernorImpl advertised = (DeviceGovernorImpl) bluetoothManager.getDeviceGovernor(TINYB_DEVICE_URL);
+        advertised.setRssiFilteringEnabled(false);
+        // never advertised, must not be included
+        bluetoothManager.getDeviceGovernor(DBUS_DEVICE_URL);
+        RssiSnapshotListener listener = mock(RssiSnapshotListener.class);
+        ArgumentCaptor<RssiSnapshot> snapshotCaptor = ArgumentCaptor.forClass(RssiSnapshot.class);
+        BluetoothManagerImpl.RssiSnapshotJob job = bluetoothManager.new RssiSnapshotJob();
+
+        // no listeners, no work
+        advertised.updateRSSI((short) -60);
+        job.run();
+
+        bluetoothManager.addRssiSnapshotListener(listener);
+        job.run();
+        verify(listener).snapshot(snapshotCaptor.capture());
+        RssiSnapshot snapshot = snapshotCaptor.getValue();
+        assertEquals(1, snapshot.size());
+        assertEquals(advertised.getURL(), snapshot.getURL(0));
+        assertEquals(-60, snapshot.getRSSI(0));
+        // default TX power (-55) and propagation exponent (4)
+        assertEquals(1.333, snapshot.getEstimatedDistance(0), 0.001);
+        assertEquals(advertised.getLastAdvertised(), snapshot.getLastAdvertised(0));
+        int deviceId = snapshot.getDeviceId(0);
+
+        // the snapshot object is reused, device ids are stable
+        advertised.updateRSSI((short) -70);
+        job.run();
+        verify(listener, times(2)).snapshot(snapshot);
+        assertEquals(1, snapshot.size());
+        assertEquals(-70, snapshot.getRSSI(0));
+        assertEquals(deviceId, snapshot.getDeviceId(0));
+
+        bluetoothManager.removeRssiSnapshotListener(listener);
+        job.run();
+        verify(listener, times(2)).snapshot(snapshot);
+    }
+
     private void assertGetBluetoothObjectUnknownAdapter(URL url) throws Exception {
         // easy case when URL specifies protocol name
         BluetoothObject bluetoothObject = bluetoothManager.getBluetoothObject(url);
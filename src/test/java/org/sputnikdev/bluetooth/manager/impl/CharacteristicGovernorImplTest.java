@@ -0,0 +1,303 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.internal.util.reflection.Whitebox;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.FloatValueListener;
+import org.sputnikdev.bluetooth.manager.IntValueListener;
+import org.sputnikdev.bluetooth.manager.ValueDecoder;
+import org.sputnikdev.bluetooth.manager.ValueListener;
+import org.sputnikdev.bluetooth.manager.transport.Characteristic;
+import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
+import org.sputnikdev.bluetooth.manager.transport.Notification;
+
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class CharacteristicGovernorImplTest {
+
+    private static final URL URL = new URL("/11:22:33:44:55:66/12:34:56:78:90:12/0000180f-0000-1000-8000-00805f9b34fb"
+            + "/00002a19-0000-1000-8000-00805f9b34fb");
+
+    private BluetoothManagerImpl bluetoothManager = mock(BluetoothManagerImpl.class);
+    private Characteristic characteristic = mock(Characteristic.class);
+    private MonotonicClock clock = mock(MonotonicClock.class);
+    private CharacteristicGovernorImpl governor;
+
+    @Before
+    public void setUp() {
+        governor = new CharacteristicGovernorImpl(bluetoothManager, URL, clock);
+        Whitebox.setInternalState(governor, "bluetoothObject", characteristic);
+        when(characteristic.getFlags()).thenReturn(EnumSet.of(CharacteristicAccessType.READ,
+                CharacteristicAccessType.NOTIFY));
+    }
+
+    @Test
+    public void testValueCache() throws Exception {
+        when(characteristic.readValue()).thenReturn(new byte[] {1}).thenReturn(new byte[] {2});
+
+        // cache is disabled by default
+        assertArrayEquals(new byte[] {1}, governor.read());
+        assertArrayEquals(new byte[] {2}, governor.read(1000));
+        assertEquals(0, governor.getValueCacheHits());
+        assertEquals(0, governor.getValueCacheMisses());
+
+        governor.setMaxValueAge(100);
+        when(characteristic.readValue()).thenReturn(new byte[] {3});
+        assertArrayEquals(new byte[] {3}, governor.read());
+        when(clock.nanoTime()).thenReturn(millis(100));
+        assertArrayEquals(new byte[] {3}, governor.read());
+        assertEquals(1, governor.getValueCacheHits());
+
+        // stale
+        when(clock.nanoTime()).thenReturn(millis(101));
+        when(characteristic.readValue()).thenReturn(new byte[] {4});
+        assertArrayEquals(new byte[] {4}, governor.read());
+        // a caller can tolerate older values
+        when(clock.nanoTime()).thenReturn(millis(500));
+        assertArrayEquals(new byte[] {4}, governor.read(1000));
+        assertEquals(2, governor.getValueCacheHits());
+        assertEquals(2, governor.getValueCacheMisses());
+        verify(characteristic, times(4)).readValue();
+    }
+
+    @Test
+    public void testValueCacheNotifications() throws Exception {
+        ArgumentCaptor<Notification> notificationCaptor = ArgumentCaptor.forClass(Notification.class);
+        doNothing().when(characteristic).enableValueNotifications(notificationCaptor.capture());
+        governor.setMaxValueAge(100);
+        governor.addValueListener(mock(ValueListener.class));
+        governor.update(characteristic);
+
+        notificationCaptor.getValue().notify(new byte[] {5});
+        assertArrayEquals(new byte[] {5}, governor.read());
+        assertEquals(1, governor.getValueCacheHits());
+
+        // writes invalidate cache
+        when(characteristic.readValue()).thenReturn(new byte[] {6});
+        governor.write(new byte[] {6});
+        assertArrayEquals(new byte[] {6}, governor.read());
+        assertEquals(1, governor.getValueCacheMisses());
+    }
+
+    @Test
+    public void testReadOverlappingWriteNotCached() throws Exception {
+        governor.setMaxValueAge(100);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(characteristic.readValue()).then(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new byte[] {1};
+        }).thenReturn(new byte[] {2});
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<byte[]> read = executor.submit(() -> governor.read());
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            governor.write(new byte[] {2});
+            release.countDown();
+            assertArrayEquals(new byte[] {1}, read.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // the value read before the write must not be served from cache
+        assertArrayEquals(new byte[] {2}, governor.read());
+        assertEquals(0, governor.getValueCacheHits());
+        verify(characteristic, times(2)).readValue();
+    }
+
+    @Test
+    public void testSingleFlightRead() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(characteristic.readValue()).then(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new byte[] {7};
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<byte[]> first = executor.submit(() -> governor.read());
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<byte[]> second = executor.submit(() -> governor.read());
+            for (int i = 0; i < 500 && governor.getJoinedReads() == 0; i++) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            assertArrayEquals(new byte[] {7}, first.get(5, TimeUnit.SECONDS));
+            assertArrayEquals(new byte[] {7}, second.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, governor.getJoinedReads());
+        verify(characteristic, times(1)).readValue();
+    }
+
+    @Test
+    public void testReadAfterWriteNotJoined() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(characteristic.readValue()).then(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new byte[] {1};
+        }).thenReturn(new byte[] {2});
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<byte[]> inFlight = executor.submit(() -> governor.read());
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            governor.write(new byte[] {2});
+
+            // a read issued after the write must observe it, it does not join the read started before the write
+            Future<byte[]> afterWrite = executor.submit(() -> governor.read());
+            assertArrayEquals(new byte[] {2}, afterWrite.get(5, TimeUnit.SECONDS));
+            release.countDown();
+            assertArrayEquals(new byte[] {1}, inFlight.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        assertEquals(0, governor.getJoinedReads());
+        verify(characteristic, times(2)).readValue();
+    }
+
+    @Test
+    public void testSingleFlightReadError() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(characteristic.readValue()).then(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            throw new LinkageError("native library failure");
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<byte[]> first = executor.submit(() -> governor.read());
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<byte[]> second = executor.submit(() -> governor.read());
+            for (int i = 0; i < 500 && governor.getJoinedReads() == 0; i++) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            assertLinkageError(first);
+            // the joined read fails too instead of hanging
+            assertLinkageError(second);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, governor.getJoinedReads());
+    }
+
+    @Test
+    public void testFlagsCached() throws Exception {
+        assertTrue(governor.isReadable());
+        assertTrue(governor.isNotifiable());
+        assertFalse(governor.isWritable());
+        assertEquals(EnumSet.of(CharacteristicAccessType.READ, CharacteristicAccessType.NOTIFY), governor.getFlags());
+        verify(characteristic, times(1)).getFlags();
+
+        // flags are read again after reset
+        governor.reset(characteristic);
+        governor.isReadable();
+        verify(characteristic, times(2)).getFlags();
+    }
+
+    @Test
+    public void testEventDrivenSubscription() throws Exception {
+        governor.update(characteristic);
+        verify(characteristic, times(1)).isNotifying();
+        // nothing has changed
+        governor.update(characteristic);
+        verify(characteristic, times(1)).isNotifying();
+
+        ValueListener listener = mock(ValueListener.class);
+        governor.addValueListener(listener);
+        governor.update(characteristic);
+        verify(characteristic, times(2)).isNotifying();
+        verify(characteristic).enableValueNotifications(any());
+
+        // periodic safety check
+        when(characteristic.isNotifying()).thenReturn(true);
+        governor.update(characteristic);
+        verify(characteristic, times(2)).isNotifying();
+        when(clock.nanoTime()).thenReturn(millis(CharacteristicGovernorImpl.SUBSCRIPTION_CHECK_INTERVAL_MS));
+        governor.update(characteristic);
+        verify(characteristic, times(3)).isNotifying();
+
+        // services resolved
+        governor.invalidateSubscription();
+        governor.update(characteristic);
+        verify(characteristic, times(4)).isNotifying();
+
+        governor.removeValueListener(listener);
+        governor.update(characteristic);
+        verify(characteristic).disableValueNotifications();
+    }
+
+    @Test
+    public void testDecodedValueDispatch() throws Exception {
+        ArgumentCaptor<Notification> notificationCaptor = ArgumentCaptor.forClass(Notification.class);
+        doNothing().when(characteristic).enableValueNotifications(notificationCaptor.capture());
+        when(bluetoothManager.getValueDecoder(URL)).thenReturn(new ValueDecoderRegistry().resolve(URL));
+        IntValueListener intListener = mock(IntValueListener.class);
+        FloatValueListener floatListener = mock(FloatValueListener.class);
+        governor.addIntValueListener(intListener);
+        governor.addFloatValueListener(floatListener);
+        governor.update(characteristic);
+
+        // battery level, UINT8
+        notificationCaptor.getValue().notify(new byte[] {(byte) 200});
+        verify(intListener).changed(200);
+        verify(floatListener).changed(200.0F);
+
+        // a decoder registered later replaces the resolved one
+        ValueDecoder decoder = mock(ValueDecoder.class);
+        when(decoder.decodeInt(any())).thenReturn(42);
+        when(decoder.decodeFloat(any())).thenReturn(4.2F);
+        when(bluetoothManager.getValueDecoder(URL)).thenReturn(decoder);
+        when(bluetoothManager.getValueDecoderVersion()).thenReturn(1);
+        notificationCaptor.getValue().notify(new byte[] {1});
+        verify(intListener).changed(42);
+        verify(floatListener).changed(4.2F);
+        verify(bluetoothManager, times(2)).getValueDecoder(URL);
+
+        // the resolved decoder is reused while the registry stays the same
+        notificationCaptor.getValue().notify(new byte[] {1});
+        verify(bluetoothManager, times(2)).getValueDecoder(URL);
+    }
+
+    private static void assertLinkageError(Future<byte[]> read) throws Exception {
+        try {
+            read.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof LinkageError);
+        }
+    }
+
+    private static long millis(long millis) {
+        return millis * 1000000;
+    }
+
+}
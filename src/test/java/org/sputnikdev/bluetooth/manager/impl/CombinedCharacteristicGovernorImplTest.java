@@ -0,0 +1,159 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.GattOperationPriority;
+import org.sputnikdev.bluetooth.manager.ManagerListener;
+import org.sputnikdev.bluetooth.manager.NotReadyException;
+import org.sputnikdev.bluetooth.manager.TransportTimeoutException;
+import org.sputnikdev.bluetooth.manager.ValueListener;
+
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class CombinedCharacteristicGovernorImplTest {
+
+    private static final URL URL = new URL("/XX:XX:XX:XX:XX:XX/12:34:56:78:90:12/0000180f-0000-1000-8000-00805f9b34fb"
+            + "/00002a19-0000-1000-8000-00805f9b34fb");
+    private static final URL DELEGATE_1_URL = URL.copyWithAdapter("11:22:33:44:55:66");
+    private static final URL DELEGATE_2_URL = URL.copyWithAdapter("11:22:33:44:55:77");
+
+    private BluetoothManagerImpl bluetoothManager = mock(BluetoothManagerImpl.class);
+    private CharacteristicGovernorImpl delegate1 = mock(CharacteristicGovernorImpl.class);
+    private CharacteristicGovernorImpl delegate2 = mock(CharacteristicGovernorImpl.class);
+    private CombinedCharacteristicGovernorImpl governor;
+    private ManagerListener managerListener;
+
+    @Before
+    public void setUp() {
+        when(bluetoothManager.getRegisteredGovernors()).thenReturn(Collections.emptySet());
+        when(delegate1.getURL()).thenReturn(DELEGATE_1_URL);
+        when(delegate2.getURL()).thenReturn(DELEGATE_2_URL);
+        governor = new CombinedCharacteristicGovernorImpl(bluetoothManager, URL);
+        governor.init();
+        ArgumentCaptor<ManagerListener> captor = ArgumentCaptor.forClass(ManagerListener.class);
+        verify(bluetoothManager).addManagerListener(captor.capture(), eq(URL));
+        managerListener = captor.getValue();
+    }
+
+    @Test(expected = NotReadyException.class)
+    public void testReadNotReady() throws Exception {
+        governor.read();
+    }
+
+    @Test
+    public void testFailover() throws Exception {
+        ValueListener valueListener = mock(ValueListener.class);
+        governor.addValueListener(valueListener);
+        when(delegate1.isReady()).thenReturn(true);
+        when(delegate2.isReady()).thenReturn(true);
+
+        managerListener.ready(delegate1, true);
+        managerListener.ready(delegate2, true);
+        verify(delegate1).addValueListener(valueListener);
+        verify(delegate2, never()).addValueListener(valueListener);
+
+        when(delegate1.isReady()).thenReturn(false);
+        managerListener.ready(delegate1, false);
+        verify(delegate1).removeValueListener(valueListener);
+        verify(delegate2).addValueListener(valueListener);
+
+        when(delegate2.read()).thenReturn(new byte[] {1});
+        assertArrayEquals(new byte[] {1}, governor.read());
+    }
+
+    @Test
+    public void testOperationWaitsForDelegate() throws Exception {
+        governor.setFailoverTimeout(5000);
+        when(delegate1.isReady()).thenReturn(true);
+        when(delegate1.read()).thenThrow(new NotReadyException("lost"));
+        when(delegate2.isReady()).thenReturn(true);
+        when(delegate2.read()).thenReturn(new byte[] {2});
+        managerListener.ready(delegate1, true);
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            executor.schedule(() -> {
+                managerListener.ready(delegate1, false);
+                managerListener.ready(delegate2, true);
+            }, 100, TimeUnit.MILLISECONDS);
+            // the first delegate gets lost in the middle of the operation, the operation is retried through a new one
+            assertArrayEquals(new byte[] {2}, governor.read());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWriteTimeoutNotRetried() throws Exception {
+        governor.setFailoverTimeout(5000);
+        byte[] data = {1};
+        when(delegate1.isReady()).thenReturn(true);
+        when(delegate1.write(data, GattOperationPriority.NORMAL))
+                .thenThrow(new TransportTimeoutException("timed out"));
+        when(delegate2.isReady()).thenReturn(true);
+        managerListener.ready(delegate1, true);
+        managerListener.ready(delegate2, true);
+
+        // the value might have been written, so that the write is not retried through another delegate
+        try {
+            governor.write(data);
+            fail();
+        } catch (TransportTimeoutException ignore) { }
+        verify(delegate1).write(data, GattOperationPriority.NORMAL);
+        verify(delegate2, never()).write(data, GattOperationPriority.NORMAL);
+    }
+
+    @Test
+    public void testWriteRetriedIfNotSent() throws Exception {
+        governor.setFailoverTimeout(5000);
+        byte[] data = {1};
+        when(delegate1.isReady()).thenReturn(true);
+        // e.g. rejected by the transport bulkhead
+        when(delegate1.write(data, GattOperationPriority.NORMAL)).thenThrow(new NotReadyException("rejected"));
+        when(delegate2.isReady()).thenReturn(true);
+        when(delegate2.write(data, GattOperationPriority.NORMAL)).thenReturn(true);
+        managerListener.ready(delegate1, true);
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            executor.schedule(() -> {
+                managerListener.ready(delegate1, false);
+                managerListener.ready(delegate2, true);
+            }, 100, TimeUnit.MILLISECONDS);
+            assertTrue(governor.write(data));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLatencyRouting() throws Exception {
+        governor.setLatencyRouting(true);
+        assertTrue(governor.isLatencyRouting());
+        when(delegate1.isReady()).thenReturn(true);
+        when(delegate2.isReady()).thenReturn(false);
+        when(delegate1.read()).thenReturn(new byte[] {1});
+        managerListener.ready(delegate1, true);
+        managerListener.ready(delegate2, true);
+
+        // the second delegate is not ready, reads are routed to the first one
+        assertArrayEquals(new byte[] {1}, governor.read());
+        verify(delegate2, never()).read();
+    }
+
+}
@@ -0,0 +1,222 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+
+public class ConcurrentBitMapTest {
+
+    @Test
+    public void testCumulativeSet() throws Exception {
+        ConcurrentBitMap bitMap = new ConcurrentBitMap();
+        Runnable changed = mock(Runnable.class);
+        Runnable notChanged = mock(Runnable.class);
+        assertFalse(bitMap.get());
+
+        bitMap.cumulativeSet(31, true, changed, notChanged);
+        verify(changed, times(1)).run();
+        assertTrue(bitMap.get());
+
+        bitMap.cumulativeSet(64, true, changed, notChanged);
+        bitMap.cumulativeSet(100000, true, changed, notChanged);
+        // already set
+        bitMap.cumulativeSet(100000, true, changed, notChanged);
+        verify(changed, times(1)).run();
+        verify(notChanged, times(3)).run();
+
+        bitMap.cumulativeSet(31, false, changed, notChanged);
+        bitMap.cumulativeSet(64, false, changed, notChanged);
+        // not set
+        bitMap.cumulativeSet(5, false, changed, notChanged);
+        verify(changed, times(1)).run();
+        verify(notChanged, times(6)).run();
+        assertTrue(bitMap.get());
+        assertEquals(100000, bitMap.getUniqueIndex());
+
+        bitMap.cumulativeSet(100000, false, changed, notChanged);
+        verify(changed, times(2)).run();
+        assertFalse(bitMap.get());
+        assertEquals(-1, bitMap.getUniqueIndex());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGetUniqueIndexMultiple() throws Exception {
+        ConcurrentBitMap bitMap = new ConcurrentBitMap();
+        bitMap.cumulativeSet(1, true);
+        bitMap.cumulativeSet(5000, true);
+        bitMap.getUniqueIndex();
+    }
+
+    @Test
+    public void testExclusiveSet() throws Exception {
+        ConcurrentBitMap bitMap = new ConcurrentBitMap();
+        Runnable changed = mock(Runnable.class);
+        Runnable notChanged = mock(Runnable.class);
+        assertEquals(-1, bitMap.getUniqueIndex());
+
+        bitMap.exclusiveSet(70, true, changed, notChanged);
+        verify(changed, times(1)).run();
+        assertEquals(70, bitMap.getUniqueIndex());
+
+        bitMap.exclusiveSet(3, true, changed, notChanged);
+        verify(notChanged, times(1)).run();
+        assertEquals(3, bitMap.getUniqueIndex());
+
+        // not the current one
+        bitMap.exclusiveSet(70, false, changed, notChanged);
+        verify(notChanged, times(2)).run();
+        assertTrue(bitMap.get());
+
+        bitMap.exclusiveSet(3, false, changed, notChanged);
+        verify(changed, times(2)).run();
+        assertFalse(bitMap.get());
+        assertEquals(-1, bitMap.getUniqueIndex());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMixedModes() throws Exception {
+        ConcurrentBitMap bitMap = new ConcurrentBitMap();
+        bitMap.cumulativeSet(1, true);
+        bitMap.exclusiveSet(1, true);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidIndex() throws Exception {
+        new ConcurrentBitMap().cumulativeSet(-1, true);
+    }
+
+    @Test
+    public void testCallbackReentrance() throws Exception {
+        ConcurrentBitMap bitMap = new ConcurrentBitMap();
+        List<String> events = new ArrayList<>();
+        bitMap.cumulativeSet(1, true, () -> {
+            events.add("first");
+            bitMap.cumulativeSet(1, false, () -> events.add("third"));
+            events.add("second");
+        });
+        assertEquals("first", events.get(0));
+        assertEquals("second", events.get(1));
+        assertEquals("third", events.get(2));
+        assertFalse(bitMap.get());
+    }
+
+    @Test
+    public void testConcurrentEdges() throws Exception {
+        ConcurrentBitMap bitMap = new ConcurrentBitMap();
+        AtomicBoolean expected = new AtomicBoolean(true);
+        AtomicBoolean running = new AtomicBoolean();
+        AtomicInteger violations = new AtomicInteger();
+        AtomicInteger edges = new AtomicInteger();
+        int threads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int index = t * 1000;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 10000; i++) {
+                        boolean state = i % 2 == 0;
+                        bitMap.cumulativeSet(index, state, () -> {
+                            if (!running.compareAndSet(false, true)) {
+                                violations.incrementAndGet();
+                            }
+                            // edges must alternate: up, down, up...
+                            if (expected.get() != state) {
+                                violations.incrementAndGet();
+                            }
+                            expected.set(!state);
+                            edges.incrementAndGet();
+                            running.set(false);
+                        });
+                    }
+                } catch (InterruptedException ignore) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finish.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        finish.await();
+        assertEquals(0, violations.get());
+        assertFalse(bitMap.get());
+        assertEquals(0, edges.get() % 2);
+        assertTrue(edges.get() > 0);
+    }
+
+    @Test
+    public void testConcurrentSameFlag() throws Exception {
+        ConcurrentBitMap bitMap = new ConcurrentBitMap();
+        AtomicBoolean notified = new AtomicBoolean();
+        AtomicInteger violations = new AtomicInteger();
+        int threads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            boolean state = t % 2 == 0;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 200000; i++) {
+                        bitMap.cumulativeSet(7, state, () -> {
+                            // edges must alternate regardless of which thread has triggered them
+                            if (notified.getAndSet(state) == state) {
+                                violations.incrementAndGet();
+                            }
+                        });
+                    }
+                } catch (InterruptedException ignore) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finish.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        finish.await();
+        assertEquals(0, violations.get());
+        // the overall state matches the flag and the last notified edge
+        assertEquals(bitMap.getUniqueIndex() == 7, bitMap.get());
+        assertEquals(bitMap.get(), notified.get());
+
+        bitMap.cumulativeSet(7, false, () -> notified.set(false));
+        assertFalse(bitMap.get());
+        assertFalse(notified.get());
+        bitMap.cumulativeSet(7, true, () -> notified.set(true));
+        assertTrue(bitMap.get());
+        assertTrue(notified.get());
+    }
+
+    @Test
+    public void testNoCallbacks() throws Exception {
+        ConcurrentBitMap bitMap = new ConcurrentBitMap();
+        Runnable changed = mock(Runnable.class);
+        for (int i = 0; i < 5000; i++) {
+            bitMap.cumulativeSet(i, true);
+        }
+        bitMap.cumulativeSet(5000, true, null, changed);
+        verify(changed, times(1)).run();
+        bitMap.cumulativeSet(5000, true, changed);
+        verify(changed, times(1)).run();
+        for (int i = 0; i <= 5000; i++) {
+            bitMap.cumulativeSet(i, false);
+        }
+        assertFalse(bitMap.get());
+        bitMap.cumulativeSet(0, true, changed);
+        verify(changed, times(2)).run();
+    }
+
+}
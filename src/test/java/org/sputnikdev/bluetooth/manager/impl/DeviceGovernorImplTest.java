@@ -17,29 +17,39 @@ import org.sputnikdev.bluetooth.Filter;
 import org.sputnikdev.bluetooth.RssiKalmanFilter;
 import org.sputnikdev.bluetooth.URL;
 import org.sputnikdev.bluetooth.manager.AdapterGovernor;
+import org.sputnikdev.bluetooth.manager.BatchReadResult;
 import org.sputnikdev.bluetooth.manager.BluetoothGovernor;
 import org.sputnikdev.bluetooth.manager.BluetoothObjectType;
 import org.sputnikdev.bluetooth.manager.BluetoothObjectVisitor;
 import org.sputnikdev.bluetooth.manager.BluetoothSmartDeviceListener;
 import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
+import org.sputnikdev.bluetooth.manager.DeadbandRssiReportingPolicy;
 import org.sputnikdev.bluetooth.manager.DeviceGovernor;
 import org.sputnikdev.bluetooth.manager.GattCharacteristic;
 import org.sputnikdev.bluetooth.manager.GattService;
 import org.sputnikdev.bluetooth.manager.GenericBluetoothDeviceListener;
+import org.sputnikdev.bluetooth.manager.NotReadyException;
+import org.sputnikdev.bluetooth.manager.filter.KalmanFilter;
+import org.sputnikdev.bluetooth.manager.filter.MovingAverageFilter;
 import org.sputnikdev.bluetooth.manager.transport.BluetoothObjectFactory;
+import org.sputnikdev.bluetooth.manager.transport.BooleanNotification;
 import org.sputnikdev.bluetooth.manager.transport.Characteristic;
 import org.sputnikdev.bluetooth.manager.transport.Device;
-import org.sputnikdev.bluetooth.manager.transport.Notification;
 import org.sputnikdev.bluetooth.manager.transport.Service;
+import org.sputnikdev.bluetooth.manager.transport.ShortNotification;
 
-import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -93,23 +103,23 @@ public class DeviceGovernorImplTest {
     private DeviceGovernorImpl governor = new DeviceGovernorImpl(bluetoothManager, URL);
 
     @Captor
-    private ArgumentCaptor<Notification<Short>> rssiCaptor;
+    private ArgumentCaptor<ShortNotification> rssiCaptor;
     @Captor
-    private ArgumentCaptor<Notification<Boolean>> blockedCaptor;
+    private ArgumentCaptor<BooleanNotification> blockedCaptor;
     @Captor
-    private ArgumentCaptor<Notification<Boolean>> connectedCaptor;
+    private ArgumentCaptor<BooleanNotification> connectedCaptor;
     @Captor
-    private ArgumentCaptor<Notification<Boolean>> servicesResolvedCaptor;
+    private ArgumentCaptor<BooleanNotification> servicesResolvedCaptor;
 
     @Before
     public void setUp() throws Exception {
         // not sure why, but adapter does not get injected properly, hence a workaround here:
         Whitebox.setInternalState(governor, "bluetoothObject", device);
 
-        doNothing().when(device).enableRSSINotifications(rssiCaptor.capture());
-        doNothing().when(device).enableBlockedNotifications(blockedCaptor.capture());
-        doNothing().when(device).enableConnectedNotifications(connectedCaptor.capture());
-        doNothing().when(device).enableServicesResolvedNotifications(servicesResolvedCaptor.capture());
+        doNothing().when(device).enablePrimitiveRSSINotifications(rssiCaptor.capture());
+        doNothing().when(device).enablePrimitiveBlockedNotifications(blockedCaptor.capture());
+        doNothing().when(device).enablePrimitiveConnectedNotifications(connectedCaptor.capture());
+        doNothing().when(device).enablePrimitiveServicesResolvedNotifications(servicesResolvedCaptor.capture());
 
         governor.addGenericBluetoothDeviceListener(genericDeviceListener);
         governor.addBluetoothSmartDeviceListener(bluetoothSmartDeviceListener);
@@ -161,10 +171,10 @@ public class DeviceGovernorImplTest {
     public void testInit() throws Exception {
         governor.init(device);
 
-        verify(device, times(1)).enableRSSINotifications(rssiCaptor.getValue());
-        verify(device, times(1)).enableBlockedNotifications(blockedCaptor.getValue());
-        verify(device, times(1)).enableConnectedNotifications(connectedCaptor.getValue());
-        verify(device, times(1)).enableServicesResolvedNotifications(servicesResolvedCaptor.getValue());
+        verify(device, times(1)).enablePrimitiveRSSINotifications(rssiCaptor.getValue());
+        verify(device, times(1)).enablePrimitiveBlockedNotifications(blockedCaptor.getValue());
+        verify(device, times(1)).enablePrimitiveConnectedNotifications(connectedCaptor.getValue());
+        verify(device, times(1)).enablePrimitiveServicesResolvedNotifications(servicesResolvedCaptor.getValue());
 
         verifyNoMoreInteractions(device, genericDeviceListener, bluetoothSmartDeviceListener);
     }
@@ -336,7 +346,7 @@ public class DeviceGovernorImplTest {
         governor.update(device);
         verify(genericDeviceListener, times(0)).offline();
 
-        Whitebox.setInternalState(governor, "lastActivity", Date.from(Instant.now().minusSeconds(onlineTimeout)));
+        setLastActivity(onlineTimeout);
         governor.setBlockedControl(true);
         when(device.isBlocked()).thenReturn(true);
 
@@ -344,6 +354,31 @@ public class DeviceGovernorImplTest {
         verify(genericDeviceListener, times(1)).offline();
     }
 
+    @Test
+    public void testUpdateOnlineHysteresis() throws Exception {
+        governor.setBlockedControl(true);
+        when(device.isBlocked()).thenReturn(true);
+        governor.setOnlineTimeout(20);
+        governor.setOfflineHysteresis(10);
+        assertEquals(10, governor.getOfflineHysteresis());
+
+        setLastActivity(25);
+        governor.update(device);
+        verify(genericDeviceListener, times(0)).online();
+
+        setLastActivity(0);
+        governor.update(device);
+        verify(genericDeviceListener, times(1)).online();
+
+        setLastActivity(25);
+        governor.update(device);
+        verify(genericDeviceListener, times(0)).offline();
+
+        setLastActivity(30);
+        governor.update(device);
+        verify(genericDeviceListener, times(1)).offline();
+    }
+
     @Test
     public void testReset() throws Exception {
         Whitebox.setInternalState(governor, "online", false);
@@ -491,14 +526,33 @@ public class DeviceGovernorImplTest {
 
     @Test
     public void testIsOnline() throws Exception {
-        int onlineTimeout = 20;
-        governor.setOnlineTimeout(onlineTimeout);
+        governor.setBlockedControl(true);
+        when(device.isBlocked()).thenReturn(true);
+        governor.setOnlineTimeout(20);
+        governor.setOfflineHysteresis(10);
 
-        Whitebox.setInternalState(governor, "lastActivity", Date.from(Instant.now()));
+        setLastActivity(0);
+        assertFalse(governor.isOnline());
+        governor.update(device);
         assertTrue(governor.isOnline());
 
-        Whitebox.setInternalState(governor, "lastActivity", Date.from(Instant.now().minusSeconds(onlineTimeout)));
+        // consistent with online/offline events, the offline hysteresis applies
+        setLastActivity(25);
+        governor.update(device);
+        assertTrue(governor.isOnline());
+        verify(genericDeviceListener, never()).offline();
+
+        setLastActivity(30);
+        governor.update(device);
         assertFalse(governor.isOnline());
+        verify(genericDeviceListener, times(1)).offline();
+    }
+
+    private void setLastActivity(int secondsAgo) {
+        Whitebox.setInternalState(governor, "lastActivity",
+                System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(secondsAgo));
+        Whitebox.setInternalState(governor, "lastActivityNanos",
+                System.nanoTime() - TimeUnit.SECONDS.toNanos(secondsAgo));
     }
 
     @Test
@@ -618,6 +672,35 @@ public class DeviceGovernorImplTest {
         assertEquals(CHARACTERISTIC_2_URL, governors.get(1).getURL());
     }
 
+    @Test
+    public void testReadAll() throws Exception {
+        List<Characteristic> characteristics = device.getServices().get(0).getCharacteristics();
+        Characteristic characteristic1 = characteristics.get(0);
+        Characteristic characteristic2 = characteristics.get(1);
+        when(characteristic1.readValue()).thenReturn(new byte[] {1});
+        when(characteristic2.readValue()).thenThrow(new IllegalStateException("read failed"));
+        URL unknown = URL.copyWith(SERVICE_1, "00002a21-0000-1000-8000-00805f9b34fb");
+
+        BatchReadResult result = governor.readAll(
+                Arrays.asList(CHARACTERISTIC_1_URL.copyWithProtocol("tinyb"), CHARACTERISTIC_2_URL, unknown));
+        assertFalse(result.isSuccessful());
+        assertArrayEquals(new byte[] {1}, result.getValue(CHARACTERISTIC_1_URL));
+        assertTrue(result.getError(CHARACTERISTIC_2_URL) instanceof IllegalStateException);
+        assertTrue(result.getError(unknown) instanceof NotReadyException);
+        assertEquals(1, governor.getGattOperationStatistics().getOperations());
+
+        // transport reads characteristics in batch, missing values are read one by one
+        Map<URL, byte[]> batch = new HashMap<>();
+        batch.put(CHARACTERISTIC_2_URL, new byte[] {2});
+        when(device.readValues(any())).thenReturn(batch);
+        result = governor.readAll(Arrays.asList(CHARACTERISTIC_1_URL, CHARACTERISTIC_2_URL));
+        assertTrue(result.isSuccessful());
+        assertArrayEquals(new byte[] {1}, result.getValue(CHARACTERISTIC_1_URL));
+        assertArrayEquals(new byte[] {2}, result.getValue(CHARACTERISTIC_2_URL));
+        verify(characteristic1, times(2)).readValue();
+        verify(characteristic2, times(1)).readValue();
+    }
+
     @Test
     public void testToString() throws Exception {
         when(device.getAlias()).thenReturn(ALIAS).thenReturn(null);
@@ -768,6 +851,121 @@ public class DeviceGovernorImplTest {
         verify(listener, times(1)).rssiChanged(RSSI);
     }
 
+    @Test
+    public void testRssiFilterFactory() {
+        GenericBluetoothDeviceListener listener = mock(GenericBluetoothDeviceListener.class);
+        governor.addGenericBluetoothDeviceListener(listener);
+
+        governor.setRssiFilterFactory(() -> new MovingAverageFilter(2));
+        assertEquals(0, (short) governor.getRssiFilter().current());
+
+        governor.updateRSSI((short) -60);
+        governor.updateRSSI((short) -70);
+
+        verify(listener, times(1)).rssiChanged((short) -60);
+        verify(listener, times(1)).rssiChanged((short) -65);
+        assertEquals(-65, (short) governor.getRssiFilter().current());
+    }
+
+    @Test
+    public void testDefaultRssiFilterIsPrimitive() {
+        DeviceGovernorImpl governor = new DeviceGovernorImpl(bluetoothManager, URL);
+        Object holder = Whitebox.getInternalState(governor, "rssiFilter");
+        assertTrue(Whitebox.getInternalState(holder, "shortFilter") instanceof KalmanFilter);
+        // the generic view can be configured as a Kalman filter
+        RssiKalmanFilter filter = (RssiKalmanFilter) governor.getRssiFilter();
+        filter.setMeasurementNoise(10);
+        assertEquals(10, ((KalmanFilter) Whitebox.getInternalState(holder, "shortFilter")).getMeasurementNoise(),
+                0.0);
+
+        RssiKalmanFilter expected = new RssiKalmanFilter(filter.getProcessNoise(), 10);
+        governor.updateRSSI((short) -60);
+        governor.updateRSSI((short) -70);
+        expected.next((short) -60);
+        assertEquals(expected.next((short) -70), governor.getRssiFilter().current());
+    }
+
+    @Test
+    public void testRssiHistory() {
+        assertNull(governor.getRssiHistory());
+        assertEquals(0, governor.getRssiHistorySize());
+
+        governor.setRssiHistorySize(10);
+        governor.setRssiFilteringEnabled(false);
+        governor.updateRSSI((short) -60);
+        governor.updateRSSI((short) -70);
+
+        assertEquals(10, governor.getRssiHistorySize());
+        assertEquals(2, governor.getRssiHistory().size());
+        assertEquals(-65.0, governor.getRssiHistory().getMean(60000), 0.0);
+
+        governor.setRssiHistorySize(0);
+        assertNull(governor.getRssiHistory());
+    }
+
+    @Test
+    public void testRssiReportingPolicy() {
+        GenericBluetoothDeviceListener listener = mock(GenericBluetoothDeviceListener.class);
+        governor.addGenericBluetoothDeviceListener(listener);
+        governor.setRssiFilteringEnabled(false);
+        governor.setRssiReportingRate(0);
+        governor.setRssiReportingPolicyFactory(() -> new DeadbandRssiReportingPolicy(5, 0, 0));
+
+        governor.updateRSSI((short) -60);
+        governor.updateRSSI((short) -62);
+        governor.updateRSSI((short) -66);
+
+        verify(listener, times(1)).rssiChanged((short) -60);
+        verify(listener, never()).rssiChanged((short) -62);
+        verify(listener, times(1)).rssiChanged((short) -66);
+
+        governor.setRssiReportingPolicyFactory(null);
+        governor.updateRSSI((short) -67);
+        verify(listener, times(1)).rssiChanged((short) -67);
+    }
+
+    @Test
+    public void testRssiReportingPolicyNotCalledConcurrently() throws Exception {
+        governor.setRssiFilteringEnabled(false);
+        AtomicBoolean reporting = new AtomicBoolean();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        governor.setRssiReportingPolicyFactory(() -> (rssi, now) -> {
+            if (!reporting.compareAndSet(false, true)) {
+                overlapped.set(true);
+            }
+            reporting.set(false);
+            return false;
+        });
+
+        Runnable producer = () -> {
+            for (int i = 0; i < 10000; i++) {
+                governor.updateRSSI((short) -60);
+            }
+        };
+        Thread first = new Thread(producer);
+        Thread second = new Thread(producer);
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+
+        assertFalse(overlapped.get());
+        assertEquals(20000, governor.getRssiSamplesFiltered());
+    }
+
+    @Test
+    public void testRssiSamplesCounters() {
+        governor.setRssiReportingRate(5000);
+
+        governor.updateRSSI(RSSI);
+        governor.updateRSSI(RSSI);
+        governor.updateRSSI(RSSI);
+
+        // samples are never dropped even if they are not reported
+        assertEquals(3, governor.getRssiSamplesReceived());
+        assertEquals(3, governor.getRssiSamplesFiltered());
+    }
+
     @Test
     public void testNotifyRSSIReportingRate() {
         GenericBluetoothDeviceListener listener = mock(GenericBluetoothDeviceListener.class);
@@ -878,22 +1076,22 @@ public class DeviceGovernorImplTest {
 
     @Test
     public void testConnectionNotification() {
-        ArgumentCaptor<Notification> notificationCaptor = ArgumentCaptor.forClass(Notification.class);
+        ArgumentCaptor<BooleanNotification> notificationCaptor = ArgumentCaptor.forClass(BooleanNotification.class);
 
-        doNothing().when(device).enableConnectedNotifications(notificationCaptor.capture());
+        doNothing().when(device).enablePrimitiveConnectedNotifications(notificationCaptor.capture());
 
         // init method will enable notifications, if they are not enabled already
         governor.init(device);
 
-        verify(device, times(1)).enableConnectedNotifications(notificationCaptor.getValue());
+        verify(device, times(1)).enablePrimitiveConnectedNotifications(notificationCaptor.getValue());
 
-        notificationCaptor.getValue().notify(Boolean.TRUE);
+        notificationCaptor.getValue().notify(true);
 
         verify(bluetoothSmartDeviceListener, times(1)).connected();
         verify(governor, times(1)).notifyConnected(true);
         verify(governor, times(1)).updateLastChanged();
 
-        notificationCaptor.getValue().notify(Boolean.FALSE);
+        notificationCaptor.getValue().notify(false);
         verify(bluetoothSmartDeviceListener, times(1)).disconnected();
         verify(governor, times(1)).notifyConnected(false);
         verify(governor, times(2)).updateLastChanged();
@@ -901,23 +1099,23 @@ public class DeviceGovernorImplTest {
 
     @Test
     public void testServicesResolvedNotification() {
-        ArgumentCaptor<Notification> notificationCaptor = ArgumentCaptor.forClass(Notification.class);
+        ArgumentCaptor<BooleanNotification> notificationCaptor = ArgumentCaptor.forClass(BooleanNotification.class);
 
-        doNothing().when(device).enableServicesResolvedNotifications(notificationCaptor.capture());
+        doNothing().when(device).enablePrimitiveServicesResolvedNotifications(notificationCaptor.capture());
 
         // init method will enable notifications, if they are not enabled already
         governor.init(device);
 
-        verify(device, times(1)).enableServicesResolvedNotifications(notificationCaptor.getValue());
+        verify(device, times(1)).enablePrimitiveServicesResolvedNotifications(notificationCaptor.getValue());
 
-        notificationCaptor.getValue().notify(Boolean.TRUE);
+        notificationCaptor.getValue().notify(true);
 
         verify(bluetoothSmartDeviceListener, times(1)).servicesResolved(any());
         verify(governor, times(1)).notifyServicesResolved(true);
         verify(governor, times(1)).updateLastChanged();
         verify(bluetoothManager, times(1)).updateDescendants(URL);
 
-        notificationCaptor.getValue().notify(Boolean.FALSE);
+        notificationCaptor.getValue().notify(false);
         verify(bluetoothSmartDeviceListener, times(1)).servicesUnresolved();
         verify(governor, times(1)).notifyServicesResolved(false);
         verify(governor, times(2)).updateLastChanged();
@@ -926,14 +1124,14 @@ public class DeviceGovernorImplTest {
 
     @Test
     public void testRSSINotification() {
-        ArgumentCaptor<Notification> notificationCaptor = ArgumentCaptor.forClass(Notification.class);
+        ArgumentCaptor<ShortNotification> notificationCaptor = ArgumentCaptor.forClass(ShortNotification.class);
 
-        doNothing().when(device).enableRSSINotifications(notificationCaptor.capture());
+        doNothing().when(device).enablePrimitiveRSSINotifications(notificationCaptor.capture());
 
         // init method will enable notifications, if they are not enabled already
         governor.init(device);
 
-        verify(device, times(1)).enableRSSINotifications(notificationCaptor.getValue());
+        verify(device, times(1)).enablePrimitiveRSSINotifications(notificationCaptor.getValue());
 
         notificationCaptor.getValue().notify(RSSI);
 
@@ -944,14 +1142,14 @@ public class DeviceGovernorImplTest {
 
     @Test
     public void testBlockedNotification() {
-        ArgumentCaptor<Notification> notificationCaptor = ArgumentCaptor.forClass(Notification.class);
+        ArgumentCaptor<BooleanNotification> notificationCaptor = ArgumentCaptor.forClass(BooleanNotification.class);
 
-        doNothing().when(device).enableBlockedNotifications(notificationCaptor.capture());
+        doNothing().when(device).enablePrimitiveBlockedNotifications(notificationCaptor.capture());
 
         // init method will enable notifications, if they are not enabled already
         governor.init(device);
 
-        verify(device, times(1)).enableBlockedNotifications(notificationCaptor.getValue());
+        verify(device, times(1)).enablePrimitiveBlockedNotifications(notificationCaptor.getValue());
 
         notificationCaptor.getValue().notify(true);
 
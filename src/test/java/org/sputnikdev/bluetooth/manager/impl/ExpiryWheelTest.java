@@ -0,0 +1,121 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class ExpiryWheelTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ExpiryWheel wheel = new ExpiryWheel(100, 8);
+
+    @Test
+    public void testExpired() throws Exception {
+        CountingEntry entry = new CountingEntry();
+        wheel.advance(0);
+        wheel.schedule(entry, 250 * MS);
+
+        wheel.advance(200 * MS);
+        assertEquals(0, entry.expired.get());
+        wheel.advance(300 * MS);
+        assertEquals(1, entry.expired.get());
+        wheel.advance(10000 * MS);
+        assertEquals(1, entry.expired.get());
+    }
+
+    @Test
+    public void testRearm() throws Exception {
+        CountingEntry entry = new CountingEntry();
+        wheel.advance(0);
+        wheel.schedule(entry, 250 * MS);
+        wheel.advance(200 * MS);
+        // lazy re-arm, beyond the wheel span
+        wheel.schedule(entry, 1500 * MS);
+
+        wheel.advance(300 * MS);
+        wheel.advance(900 * MS);
+        assertEquals(0, entry.expired.get());
+        wheel.advance(1400 * MS);
+        assertEquals(0, entry.expired.get());
+        wheel.advance(1500 * MS);
+        assertEquals(1, entry.expired.get());
+
+        // can be scheduled again after expiry
+        wheel.schedule(entry, 1700 * MS);
+        wheel.advance(1700 * MS);
+        assertEquals(2, entry.expired.get());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        CountingEntry entry = new CountingEntry();
+        wheel.advance(0);
+        wheel.schedule(entry, 250 * MS);
+        wheel.cancel(entry);
+        wheel.advance(1000 * MS);
+        assertEquals(0, entry.expired.get());
+
+        // cancellation is final, e.g. activity updates after the owner has been disposed
+        wheel.schedule(entry, 1200 * MS);
+        wheel.advance(1200 * MS);
+        assertEquals(0, entry.expired.get());
+    }
+
+    @Test
+    public void testCancelScheduledAfterExpiry() throws Exception {
+        CountingEntry entry = new CountingEntry();
+        wheel.advance(0);
+        wheel.schedule(entry, 250 * MS);
+        wheel.advance(300 * MS);
+        assertEquals(1, entry.expired.get());
+
+        // not in the wheel anymore
+        wheel.cancel(entry);
+        wheel.schedule(entry, 500 * MS);
+        wheel.advance(1000 * MS);
+        assertEquals(1, entry.expired.get());
+    }
+
+    @Test
+    public void testScheduledBeforeStarted() throws Exception {
+        CountingEntry entry = new CountingEntry();
+        wheel.schedule(entry, 250 * MS);
+        wheel.advance(500 * MS);
+        assertEquals(1, entry.expired.get());
+    }
+
+    @Test
+    public void testManyEntries() throws Exception {
+        CountingEntry[] entries = new CountingEntry[1000];
+        wheel.advance(0);
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new CountingEntry();
+            wheel.schedule(entries[i], (i + 1) * MS);
+        }
+        wheel.advance(500 * MS);
+        int expired = 0;
+        for (CountingEntry entry : entries) {
+            expired += entry.expired.get();
+        }
+        assertEquals(500, expired);
+        wheel.advance(1000 * MS);
+        for (CountingEntry entry : entries) {
+            assertEquals(1, entry.expired.get());
+        }
+    }
+
+    private static class CountingEntry extends ExpiryWheel.Entry {
+        private final AtomicInteger expired = new AtomicInteger();
+
+        @Override
+        void expired() {
+            expired.incrementAndGet();
+        }
+    }
+
+}
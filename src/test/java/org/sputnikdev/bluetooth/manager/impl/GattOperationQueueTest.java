@@ -0,0 +1,134 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+import org.junit.Test;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.GattOperationPriority;
+import org.sputnikdev.bluetooth.manager.NotReadyException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class GattOperationQueueTest {
+
+    private static final URL URL = new URL("tinyb://11:22:33:44:55:66/12:34:56:78:90:12");
+
+    private GattOperationQueue queue = new GattOperationQueue(URL, MonotonicClock.SYSTEM);
+
+    @Test
+    public void testPriorities() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> executed = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            executor.submit(() -> queue.execute(GattOperationPriority.NORMAL, 0, () -> {
+                started.countDown();
+                await(release);
+                return executed.add("first");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            executor.submit(() -> queue.execute(GattOperationPriority.BACKGROUND, 0, () -> executed.add("poll")));
+            waitForQueueLength(1);
+            executor.submit(() -> queue.execute(GattOperationPriority.NORMAL, 0, () -> executed.add("read")));
+            waitForQueueLength(2);
+            executor.submit(() -> queue.execute(GattOperationPriority.URGENT, 0, () -> executed.add("write")));
+            waitForQueueLength(3);
+
+            release.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals("[first, write, read, poll]", executed.toString());
+        assertEquals(4, queue.getOperations());
+        assertEquals(0, queue.getQueueLength());
+        assertTrue(queue.getMaxWaitTime() > 0);
+        assertTrue(queue.getMaxExecutionTime() >= queue.getAverageExecutionTime());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> queue.execute(GattOperationPriority.NORMAL, 0, () -> {
+                started.countDown();
+                return await(release);
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            try {
+                queue.execute(GattOperationPriority.URGENT, 50, () -> true);
+                fail();
+            } catch (NotReadyException ignore) { }
+            assertEquals(1, queue.getTimeouts());
+            assertEquals(0, queue.getQueueLength());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testOverrun() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // a hung operation holds the queue for no longer than its timeout
+            Future<Boolean> hung = executor.submit(() -> queue.execute(GattOperationPriority.NORMAL, 50, () -> {
+                started.countDown();
+                return await(release);
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertEquals(Integer.valueOf(1), queue.execute(GattOperationPriority.NORMAL, 5000, () -> 1));
+            assertEquals(1, queue.getOverruns());
+            assertEquals(0, queue.getTimeouts());
+
+            // the hung operation completes whenever it returns and does not affect the queue
+            release.countDown();
+            assertTrue(hung.get(5, TimeUnit.SECONDS));
+            assertEquals(Integer.valueOf(2), queue.execute(GattOperationPriority.NORMAL, 50, () -> 2));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testNestedOperation() throws Exception {
+        // e.g. a notification listener reading a characteristic of the same device
+        assertEquals(Integer.valueOf(1),
+                queue.execute(GattOperationPriority.NORMAL, 50,
+                    () -> queue.execute(GattOperationPriority.NORMAL, 50, () -> 1)));
+    }
+
+    private void waitForQueueLength(int length) throws InterruptedException {
+        for (int i = 0; i < 500 && queue.getQueueLength() < length; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(length, queue.getQueueLength());
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class IndexPoolTest {
+
+    @Test
+    public void testAcquireRelease() throws Exception {
+        IndexPool pool = new IndexPool(2);
+        assertEquals(0, pool.acquire());
+        assertEquals(1, pool.acquire());
+        pool.release(0);
+        assertEquals(0, pool.acquire());
+        assertEquals(2, pool.acquire());
+        pool.release(1);
+        assertEquals(1, pool.acquire());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExhausted() throws Exception {
+        IndexPool pool = new IndexPool(0);
+        pool.acquire();
+        pool.acquire();
+    }
+
+}
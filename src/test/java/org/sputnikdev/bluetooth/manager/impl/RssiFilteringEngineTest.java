@@ -0,0 +1,124 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+import org.junit.Test;
+import org.sputnikdev.bluetooth.RssiKalmanFilter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class RssiFilteringEngineTest {
+
+    private static final short[] SAMPLES = {-60, -65, -58, -70, -62, -61, -80, -59, -63, -64};
+
+    private RssiFilteringEngine engine = new RssiFilteringEngine();
+
+    @Test
+    public void testFilterMatchesKalmanFilter() throws Exception {
+        RssiKalmanFilter expected = new RssiKalmanFilter();
+        RssiFilteringEngine.EngineFilter single = engine.createFilter();
+        RssiFilteringEngine.EngineFilter batch = engine.createFilter();
+
+        for (short sample : SAMPLES) {
+            assertEquals((short) expected.next(sample), single.next(sample));
+        }
+        assertEquals((short) expected.current(), batch.next(SAMPLES, SAMPLES.length));
+        assertEquals((short) expected.current(), single.current());
+        assertEquals((short) expected.current(), batch.current());
+    }
+
+    @Test
+    public void testNoiseParameters() throws Exception {
+        RssiFilteringEngine.EngineFilter filter = engine.createFilter();
+        RssiKalmanFilter expected = new RssiKalmanFilter(0.5, 10);
+        assertEquals(new RssiKalmanFilter().getProcessNoise(), filter.getProcessNoise(), 0.0);
+        assertEquals(new RssiKalmanFilter().getMeasurementNoise(), filter.getMeasurementNoise(), 0.0);
+
+        filter.setProcessNoise(0.5);
+        filter.setMeasurementNoise(10);
+        assertEquals(0.5, filter.getProcessNoise(), 0.0);
+        assertEquals(10, filter.getMeasurementNoise(), 0.0);
+
+        for (short sample : SAMPLES) {
+            expected.next(sample);
+        }
+        assertEquals((short) expected.current(), filter.next(SAMPLES, SAMPLES.length));
+    }
+
+    @Test
+    public void testGenericView() throws Exception {
+        RssiFilteringEngine.EngineFilter filter = engine.createFilter();
+        // the handle is not a Kalman filter itself, a generic view is created on demand
+        RssiKalmanFilter view = (RssiKalmanFilter) ShortFilterAdapters.toFilter(filter);
+        assertSame(filter, ShortFilterAdapters.toShortFilter(view));
+
+        view.setMeasurementNoise(10);
+        assertEquals(10, filter.getMeasurementNoise(), 0.0);
+        filter.next(SAMPLES, SAMPLES.length);
+        assertEquals(filter.current(), (short) view.current());
+    }
+
+    @Test
+    public void testReleaseReuse() throws Exception {
+        RssiFilteringEngine.EngineFilter first = engine.createFilter();
+        RssiFilteringEngine.EngineFilter second = engine.createFilter();
+        assertEquals(2, engine.size());
+        assertTrue(first.getId() != second.getId());
+
+        first.next(SAMPLES, SAMPLES.length);
+        first.release();
+        first.release();
+        assertEquals(1, engine.size());
+        assertEquals(0, first.current());
+
+        RssiFilteringEngine.EngineFilter third = engine.createFilter();
+        assertEquals(first.getId(), third.getId());
+        // state is reset for a reused id
+        assertEquals(0, third.current());
+        assertEquals(2, engine.size());
+    }
+
+    @Test
+    public void testReleaseDuringOperation() throws Exception {
+        RssiFilteringEngine.EngineFilter filter = engine.createFilter();
+        // an operation (e.g. draining RSSI samples) is in progress while the filter gets released
+        filter.enter();
+        filter.release();
+        assertEquals(0, filter.current());
+
+        // the id is not reused until the operation completes
+        RssiFilteringEngine.EngineFilter other = engine.createFilter();
+        assertTrue(filter.getId() != other.getId());
+
+        filter.exit();
+        RssiFilteringEngine.EngineFilter reused = engine.createFilter();
+        assertEquals(filter.getId(), reused.getId());
+        reused.next(SAMPLES, SAMPLES.length);
+        assertEquals(0, filter.current());
+        // releasing again does not free the id that now belongs to another filter
+        filter.release();
+        assertEquals(2, engine.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReleasedFilter() throws Exception {
+        RssiFilteringEngine.EngineFilter filter = engine.createFilter();
+        filter.release();
+        filter.next((short) -60);
+    }
+
+    @Test
+    public void testManyFilters() throws Exception {
+        int count = 3000;
+        RssiFilteringEngine.EngineFilter[] filters = new RssiFilteringEngine.EngineFilter[count];
+        for (int i = 0; i < count; i++) {
+            filters[i] = engine.createFilter();
+            filters[i].next((short) -(i % 100 + 1));
+        }
+        for (int i = 0; i < count; i++) {
+            assertEquals(-(i % 100 + 1), filters[i].current());
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class RssiHistoryImplTest {
+
+    private MonotonicClock clock = mock(MonotonicClock.class);
+    private RssiHistoryImpl history;
+
+    @Before
+    public void setUp() {
+        history = new RssiHistoryImpl(5, clock);
+        when(clock.nanoTime()).thenReturn(millis(10000));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        assertEquals(5, history.capacity());
+        assertEquals(0, history.size());
+        assertEquals(0, history.count(Long.MAX_VALUE));
+        assertEquals(0.0, history.getMean(1000), 0.0);
+        assertEquals(0.0, history.getVariance(1000), 0.0);
+        assertEquals(0, history.getPercentile(50, 1000));
+        assertEquals(0.0, history.getSampleRate(1000), 0.0);
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        history.add(new short[] {-80, -70}, 2, millis(7000));
+        history.add(new short[] {-60, -50, -40}, 3, millis(9500));
+
+        assertEquals(5, history.size());
+        assertEquals(5, history.count(3000));
+        assertEquals(3, history.count(1000));
+
+        assertEquals(-60.0, history.getMean(3000), 0.0);
+        assertEquals(-50.0, history.getMean(1000), 0.0);
+        assertEquals(200.0, history.getVariance(3000), 0.0001);
+        assertEquals(200.0 / 3, history.getVariance(1000), 0.0001);
+
+        assertEquals(-60, history.getPercentile(50, 3000));
+        assertEquals(-80, history.getPercentile(0, 3000));
+        assertEquals(-40, history.getPercentile(100, 3000));
+        assertEquals(-50, history.getPercentile(50, 1000));
+        // the histogram is reset after each calculation
+        assertEquals(-60, history.getPercentile(50, 3000));
+
+        assertEquals(3.0, history.getSampleRate(1000), 0.0);
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        history.add(new short[] {-10, -20, -30, -40}, 4, millis(9000));
+        history.add(new short[] {-50, -60, -70}, 3, millis(9500));
+
+        assertEquals(5, history.size());
+        short[] rssi = new short[10];
+        long[] timestamps = new long[10];
+        assertEquals(5, history.copy(rssi, timestamps, 5000));
+        assertEquals(-30, rssi[0]);
+        assertEquals(millis(9000), timestamps[0]);
+        assertEquals(-70, rssi[4]);
+        assertEquals(millis(9500), timestamps[4]);
+
+        // limited by the destination size, most recent samples are taken
+        assertEquals(2, history.copy(new short[2], timestamps, 5000));
+        assertEquals(millis(9500), timestamps[0]);
+    }
+
+    @Test
+    public void testWallClockJump() throws Exception {
+        history.add(new short[] {-60, -50}, 2, millis(9500));
+        // wall clock adjustments do not affect windows
+        when(clock.currentTimeMillis()).thenReturn(0L, Long.MAX_VALUE);
+        assertEquals(2, history.count(1000));
+        assertEquals(2, history.count(1000));
+        when(clock.nanoTime()).thenReturn(millis(11000));
+        assertEquals(0, history.count(1000));
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        RssiHistoryImpl history = new RssiHistoryImpl(64, MonotonicClock.SYSTEM);
+        short[] batch = new short[8];
+        Arrays.fill(batch, (short) -60);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 100000; i++) {
+                history.add(batch, batch.length, System.nanoTime());
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            double mean = history.getMean(60000);
+            assertTrue(mean == 0 || mean == -60);
+            assertEquals(0.0, history.getVariance(60000), 0.0);
+        }
+        writer.join();
+        assertEquals(64, history.count(60000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() throws Exception {
+        history.getPercentile(101, 1000);
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+}
@@ -0,0 +1,51 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+import org.junit.Test;
+import org.mockito.internal.util.reflection.Whitebox;
+import org.sputnikdev.bluetooth.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class RssiSnapshotImplTest {
+
+    private static final URL ADAPTER_URL = new URL("/11:22:33:44:55:66");
+
+    @Test
+    public void testAddAndGrow() {
+        RssiSnapshotImpl snapshot = new RssiSnapshotImpl();
+        snapshot.reset(100);
+        for (int i = 0; i < 200; i++) {
+            snapshot.add(i, ADAPTER_URL.copyWithDevice(String.format("12:34:56:78:90:%02X", i)), ADAPTER_URL,
+                    (short) -i, i / 10.0, i);
+        }
+        assertEquals(100, snapshot.getTimestamp());
+        assertEquals(200, snapshot.size());
+        assertEquals(150, snapshot.getDeviceId(150));
+        assertEquals(ADAPTER_URL.copyWithDevice("12:34:56:78:90:96"), snapshot.getURL(150));
+        assertEquals(ADAPTER_URL, snapshot.getAdapterURL(150));
+        assertEquals(-150, snapshot.getRSSI(150));
+        assertEquals(15.0, snapshot.getEstimatedDistance(150), 0.0);
+        assertEquals(150, snapshot.getLastAdvertised(150));
+    }
+
+    @Test
+    public void testReset() {
+        RssiSnapshotImpl snapshot = new RssiSnapshotImpl();
+        snapshot.add(1, ADAPTER_URL.copyWithDevice("12:34:56:78:90:12"), ADAPTER_URL, (short) -60, 1.0, 1);
+        snapshot.reset(200);
+        assertEquals(0, snapshot.size());
+        assertEquals(200, snapshot.getTimestamp());
+        // references to the previous devices are released
+        assertNull(((URL[]) Whitebox.getInternalState(snapshot, "urls"))[0]);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testIndexOutOfBounds() {
+        RssiSnapshotImpl snapshot = new RssiSnapshotImpl();
+        snapshot.add(1, ADAPTER_URL.copyWithDevice("12:34:56:78:90:12"), ADAPTER_URL, (short) -60, 1.0, 1);
+        snapshot.getRSSI(1);
+    }
+
+}
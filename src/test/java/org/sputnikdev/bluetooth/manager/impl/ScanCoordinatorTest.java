@@ -0,0 +1,115 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sputnikdev.bluetooth.URL;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class ScanCoordinatorTest {
+
+    private static final URL ADAPTER_1 = new URL("tinyb://11:22:33:44:55:66");
+    private static final URL ADAPTER_2 = new URL("tinyb://11:22:33:44:55:77");
+
+    private BluetoothManagerImpl bluetoothManager = mock(BluetoothManagerImpl.class);
+    private AdapterLoadTracker tracker = new AdapterLoadTracker();
+    private AdapterGovernorImpl adapter1 = mock(AdapterGovernorImpl.class);
+    private AdapterGovernorImpl adapter2 = mock(AdapterGovernorImpl.class);
+
+    @Before
+    public void setUp() {
+        when(bluetoothManager.getAdapterLoadTracker()).thenReturn(tracker);
+        when(adapter1.getURL()).thenReturn(ADAPTER_1);
+        when(adapter2.getURL()).thenReturn(ADAPTER_2);
+    }
+
+    @Test
+    public void testStaggeredWindows() throws Exception {
+        ScanCoordinator coordinator = new ScanCoordinator(bluetoothManager, 1000, 0.5, 0);
+        coordinator.register(adapter1);
+        coordinator.register(adapter2);
+
+        coordinator.tick(millis(100));
+        assertTrue(coordinator.isScanAllowed(ADAPTER_1));
+        assertFalse(coordinator.isScanAllowed(ADAPTER_2));
+        verify(bluetoothManager).scheduleUpdate(adapter2);
+        verify(bluetoothManager, never()).scheduleUpdate(adapter1);
+
+        coordinator.tick(millis(1600));
+        assertFalse(coordinator.isScanAllowed(ADAPTER_1));
+        assertTrue(coordinator.isScanAllowed(ADAPTER_2));
+
+        // the adapter has its own duty cycle
+        when(adapter1.getScanDutyCycle()).thenReturn(1.0);
+        coordinator.tick(millis(2700));
+        assertTrue(coordinator.isScanAllowed(ADAPTER_1));
+        assertTrue(coordinator.isScanAllowed(ADAPTER_2));
+
+        // not registered adapters are not affected
+        assertTrue(coordinator.isScanAllowed(new URL("tinyb://11:22:33:44:55:88")));
+    }
+
+    @Test
+    public void testGapsCovered() throws Exception {
+        // windows: [0, 200) and [500, 700)
+        ScanCoordinator coordinator = new ScanCoordinator(bluetoothManager, 1000, 0.2, 0);
+        coordinator.register(adapter1);
+        coordinator.register(adapter2);
+
+        coordinator.tick(millis(100));
+        assertTrue(coordinator.isScanAllowed(ADAPTER_1));
+        assertFalse(coordinator.isScanAllowed(ADAPTER_2));
+
+        // gaps are covered by the adapter whose window has started last
+        coordinator.tick(millis(300));
+        assertTrue(coordinator.isScanAllowed(ADAPTER_1));
+        assertFalse(coordinator.isScanAllowed(ADAPTER_2));
+
+        coordinator.tick(millis(800));
+        assertFalse(coordinator.isScanAllowed(ADAPTER_1));
+        assertTrue(coordinator.isScanAllowed(ADAPTER_2));
+    }
+
+    @Test
+    public void testPauseBusyAdapters() throws Exception {
+        ScanCoordinator coordinator = new ScanCoordinator(bluetoothManager, 1000, 1, 2);
+        coordinator.register(adapter1);
+        coordinator.register(adapter2);
+        tracker.connected(ADAPTER_1);
+        tracker.connected(ADAPTER_1);
+
+        coordinator.tick(millis(100));
+        assertFalse(coordinator.isScanAllowed(ADAPTER_1));
+        assertTrue(coordinator.isScanAllowed(ADAPTER_2));
+
+        // all adapters are busy, the least loaded one keeps scanning
+        tracker.connected(ADAPTER_2);
+        tracker.connected(ADAPTER_2);
+        tracker.connected(ADAPTER_2);
+        coordinator.tick(millis(200));
+        assertTrue(coordinator.isScanAllowed(ADAPTER_1));
+        assertFalse(coordinator.isScanAllowed(ADAPTER_2));
+
+        coordinator.unregister(adapter1);
+        coordinator.tick(millis(300));
+        assertTrue(coordinator.isScanAllowed(ADAPTER_2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDutyCycle() throws Exception {
+        new ScanCoordinator(bluetoothManager, 1000, 0, 0);
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class ShortMpscRingBufferTest {
+
+    @Test
+    public void testCapacity() throws Exception {
+        assertEquals(2, new ShortMpscRingBuffer(1).capacity());
+        assertEquals(4, new ShortMpscRingBuffer(3).capacity());
+        assertEquals(256, new ShortMpscRingBuffer(256).capacity());
+    }
+
+    @Test
+    public void testOfferDrain() throws Exception {
+        ShortMpscRingBuffer buffer = new ShortMpscRingBuffer(4);
+        short[] batch = new short[4];
+
+        assertEquals(0, buffer.drainTo(batch));
+
+        assertTrue(buffer.offer((short) -50));
+        assertTrue(buffer.offer((short) -51));
+        assertTrue(buffer.offer((short) -52));
+        assertTrue(buffer.offer((short) -53));
+        assertFalse(buffer.offer((short) -54));
+
+        assertEquals(4, buffer.drainTo(batch));
+        assertEquals(-50, batch[0]);
+        assertEquals(-53, batch[3]);
+
+        // wrapping around
+        assertTrue(buffer.offer((short) -60));
+        assertEquals(1, buffer.drainTo(batch));
+        assertEquals(-60, batch[0]);
+    }
+
+    @Test
+    public void testDrainPermit() throws Exception {
+        ShortMpscRingBuffer buffer = new ShortMpscRingBuffer(4);
+        assertTrue(buffer.enterDrain());
+        assertFalse(buffer.enterDrain());
+        assertFalse(buffer.enterDrain());
+        // two drain requests were missed, so another pass is required
+        assertEquals(2, buffer.exitDrain(1));
+        assertEquals(0, buffer.exitDrain(2));
+        assertTrue(buffer.enterDrain());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        int producers = 4;
+        int samples = 100000;
+        ShortMpscRingBuffer buffer = new ShortMpscRingBuffer(16);
+        short[] batch = new short[16];
+        AtomicLong drained = new AtomicLong();
+        AtomicLong sum = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(producers);
+
+        for (int p = 0; p < producers; p++) {
+            new Thread(() -> {
+                for (int i = 0; i < samples; i++) {
+                    short value = (short) -(i % 100);
+                    while (!buffer.offer(value)) {
+                        drain(buffer, batch, drained, sum);
+                        Thread.yield();
+                    }
+                    drain(buffer, batch, drained, sum);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        assertEquals(producers * samples, drained.get());
+        long expectedSum = 0;
+        for (int i = 0; i < samples; i++) {
+            expectedSum -= i % 100;
+        }
+        assertEquals(expectedSum * producers, sum.get());
+    }
+
+    private static void drain(ShortMpscRingBuffer buffer, short[] batch, AtomicLong drained, AtomicLong sum) {
+        if (buffer.enterDrain()) {
+            int missed = 1;
+            do {
+                int count;
+                while ((count = buffer.drainTo(batch)) > 0) {
+                    for (int i = 0; i < count; i++) {
+                        sum.addAndGet(batch[i]);
+                    }
+                    drained.addAndGet(count);
+                }
+                missed = buffer.exitDrain(missed);
+            } while (missed != 0);
+        }
+    }
+
+}
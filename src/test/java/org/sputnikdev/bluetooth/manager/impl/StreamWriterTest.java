@@ -0,0 +1,86 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.TransportTimeoutException;
+import org.sputnikdev.bluetooth.manager.WriteStreamResult;
+import org.sputnikdev.bluetooth.manager.transport.Characteristic;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class StreamWriterTest {
+
+    private static final URL URL = new URL("/11:22:33:44:55:66/12:34:56:78:90:12/0000180f-0000-1000-8000-00805f9b34fb"
+            + "/00002a19-0000-1000-8000-00805f9b34fb");
+
+    private Characteristic characteristic = mock(Characteristic.class);
+    private ByteArrayOutputStream written = new ByteArrayOutputStream();
+    private int failures;
+    private byte[] data = new byte[1000];
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        when(characteristic.getMaxPayloadSize()).thenReturn(20);
+        when(characteristic.writeValue(any())).then(invocation -> {
+            if (failures > 0) {
+                failures--;
+                return false;
+            }
+            byte[] chunk = (byte[]) invocation.getArguments()[0];
+            written.write(chunk, 0, chunk.length);
+            return true;
+        });
+    }
+
+    @Test
+    public void testWriteStream() throws Exception {
+        StreamWriter writer = new StreamWriter(URL, characteristic,
+                new GattOperationQueue(URL, MonotonicClock.SYSTEM), null, 0, MonotonicClock.SYSTEM);
+        WriteStreamResult result = writer.write(new ByteArrayInputStream(data, 0, 990));
+        assertArrayEquals(Arrays.copyOf(data, 990), written.toByteArray());
+        assertEquals(990, result.getBytes());
+        assertEquals(50, result.getPackets());
+        assertEquals(0, result.getRetransmits());
+    }
+
+    @Test
+    public void testRetransmit() throws Exception {
+        failures = 2;
+        StreamWriter writer = new StreamWriter(URL, characteristic, null, null, 0, MonotonicClock.SYSTEM);
+        WriteStreamResult result = writer.write(ByteBuffer.wrap(data));
+        assertArrayEquals(data, written.toByteArray());
+        assertEquals(1000, result.getBytes());
+        assertEquals(50, result.getPackets());
+        // the first chunk of a 4 chunk burst fails, then the first chunk of a halved (2 chunks) burst fails
+        assertEquals(6, result.getRetransmits());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAbort() throws Exception {
+        failures = Integer.MAX_VALUE;
+        new StreamWriter(URL, characteristic, null, null, 0, MonotonicClock.SYSTEM).write(ByteBuffer.wrap(data));
+    }
+
+    @Test(expected = TransportTimeoutException.class)
+    public void testTransportTimeout() throws Exception {
+        TransportBulkhead bulkhead = mock(TransportBulkhead.class);
+        when(bulkhead.call(any())).thenThrow(new TransportTimeoutException("timeout"));
+        // a timed out chunk might have been written, it is not retransmitted
+        new StreamWriter(URL, characteristic, null, bulkhead, 0, MonotonicClock.SYSTEM).write(ByteBuffer.wrap(data));
+    }
+
+}
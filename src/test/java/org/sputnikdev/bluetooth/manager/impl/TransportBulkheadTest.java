@@ -0,0 +1,123 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+import org.junit.After;
+import org.junit.Test;
+import org.sputnikdev.bluetooth.manager.NotReadyException;
+import org.sputnikdev.bluetooth.manager.TransportStatistics;
+import org.sputnikdev.bluetooth.manager.TransportTimeoutException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class TransportBulkheadTest {
+
+    private ExecutorService executor = Executors.newCachedThreadPool();
+    private MonotonicClock clock = mock(MonotonicClock.class);
+    private CountDownLatch hang = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        hang.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        TransportBulkhead bulkhead = new TransportBulkhead("tinyb", 10, 20, 20, executor, clock);
+        assertEquals("ok", bulkhead.call(() -> "ok"));
+
+        for (int i = 0; i < TransportBulkhead.FAILURE_THRESHOLD; i++) {
+            assertNotReady(bulkhead);
+        }
+        assertEquals(TransportStatistics.State.OPEN, bulkhead.getState());
+        assertEquals(TransportBulkhead.FAILURE_THRESHOLD, bulkhead.getTimeouts());
+        assertEquals(TransportBulkhead.FAILURE_THRESHOLD, bulkhead.getActiveCalls());
+
+        // fails fast while open
+        try {
+            bulkhead.call(() -> "ok");
+            fail();
+        } catch (NotReadyException ignore) { }
+        assertEquals(1, bulkhead.getRejectedCalls());
+
+        // half open, a failed probe opens the breaker again
+        when(clock.nanoTime()).thenReturn(TimeUnit.MILLISECONDS.toNanos(TransportBulkhead.OPEN_TIME_MS));
+        assertEquals(TransportStatistics.State.HALF_OPEN, bulkhead.getState());
+        assertNotReady(bulkhead);
+        assertEquals(TransportStatistics.State.OPEN, bulkhead.getState());
+
+        // a successful probe closes the breaker
+        when(clock.nanoTime()).thenReturn(TimeUnit.MILLISECONDS.toNanos(TransportBulkhead.OPEN_TIME_MS * 2));
+        assertEquals("ok", bulkhead.call(() -> "ok"));
+        assertEquals(TransportStatistics.State.CLOSED, bulkhead.getState());
+
+        // hung calls return eventually and release the budget
+        hang.countDown();
+        for (int i = 0; i < 500 && bulkhead.getActiveCalls() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, bulkhead.getActiveCalls());
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        TransportBulkhead bulkhead = new TransportBulkhead("tinyb", 1, 20, 20, executor, clock);
+        assertNotReady(bulkhead);
+        // the hung call still holds the budget
+        try {
+            bulkhead.call(() -> "ok");
+            fail();
+        } catch (NotReadyException ignore) { }
+        assertEquals(1, bulkhead.getRejectedCalls());
+        assertEquals(TransportStatistics.State.CLOSED, bulkhead.getState());
+    }
+
+    @Test
+    public void testConnectTimeout() throws Exception {
+        TransportBulkhead bulkhead = new TransportBulkhead("tinyb", 10, 5000, 20, executor, clock);
+        CountDownLatch connecting = new CountDownLatch(1);
+        // a slow connect outlives the GATT I/O timeout
+        assertEquals(true, bulkhead.connect(() -> {
+            try {
+                return !connecting.await(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }));
+        assertEquals(0, bulkhead.getTimeouts());
+        assertNotReady(bulkhead);
+        assertEquals(1, bulkhead.getTimeouts());
+        assertEquals(5000, bulkhead.getConnectTimeout());
+        assertEquals(20, bulkhead.getTimeout());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTransportError() throws Exception {
+        TransportBulkhead bulkhead = new TransportBulkhead("tinyb", 1, 20, 20, executor, clock);
+        bulkhead.call(() -> {
+            throw new IllegalArgumentException();
+        });
+    }
+
+    private void assertNotReady(TransportBulkhead bulkhead) {
+        try {
+            bulkhead.call(() -> {
+                try {
+                    return hang.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            });
+            fail();
+        } catch (TransportTimeoutException ignore) { }
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.sputnikdev.bluetooth.manager.impl;
+
+import org.junit.Test;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.ValueDecoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+
+public class ValueDecoderRegistryTest {
+
+    private static final URL DEVICE = new URL("/11:22:33:44:55:66/12:34:56:78:90:12");
+
+    private ValueDecoderRegistry registry = new ValueDecoderRegistry();
+
+    @Test
+    public void testResolveDefaults() throws Exception {
+        ValueDecoder battery = registry.resolve(characteristic("2a19"));
+        assertEquals(200, battery.decodeInt(new byte[] {(byte) 0xC8}));
+
+        ValueDecoder temperature = registry.resolve(characteristic("2a6e"));
+        assertEquals(-1234, temperature.decodeInt(new byte[] {0x2E, (byte) 0xFB}));
+        assertEquals(-12.34f, temperature.decodeFloat(new byte[] {0x2E, (byte) 0xFB}), 0.0001);
+
+        ValueDecoder heartRate = registry.resolve(characteristic("2a37"));
+        assertEquals(72, heartRate.decodeInt(new byte[] {0x00, 0x48}));
+        assertEquals(300, heartRate.decodeInt(new byte[] {0x01, 0x2C, 0x01}));
+
+        assertNull(registry.resolve(characteristic("2a00")));
+        assertNull(registry.resolve(DEVICE));
+    }
+
+    @Test
+    public void testRegister() throws Exception {
+        ValueDecoder decoder = mock(ValueDecoder.class);
+        registry.register("0000AA01-0000-1000-8000-00805F9B34FB", decoder);
+        assertSame(decoder, registry.resolve(characteristic("aa01")));
+
+        registry.register("2a19", decoder);
+        assertSame(decoder, registry.resolve(characteristic("2A19")));
+    }
+
+    @Test
+    public void testValueFormats() throws Exception {
+        assertEquals(-1, ValueFormat.SINT8.toInt(new byte[] {(byte) 0xFF}, 0));
+        assertEquals(0xFFFF, ValueFormat.UINT16.toInt(new byte[] {(byte) 0xFF, (byte) 0xFF}, 0));
+        assertEquals(-2, ValueFormat.SINT24.toInt(new byte[] {(byte) 0xFE, (byte) 0xFF, (byte) 0xFF}, 0));
+        assertEquals(4294967295.0f, ValueFormat.UINT32.toFloat(new byte[] {-1, -1, -1, -1}, 0), 1);
+        // 36.4 = 364 * 10^-1
+        assertEquals(36.4f, ValueFormat.FLOAT.toFloat(new byte[] {0x6C, 0x01, 0x00, (byte) 0xFF}, 0), 0.0001);
+        assertEquals(36.4f, ValueFormat.SFLOAT.toFloat(new byte[] {0x6C, (byte) 0xF1}, 0), 0.0001);
+        assertTrue(Float.isNaN(ValueFormat.SFLOAT.toFloat(new byte[] {(byte) 0xFF, 0x07}, 0)));
+        assertTrue(Float.isNaN(ValueFormat.FLOAT.toFloat(new byte[] {(byte) 0xFF, (byte) 0xFF, 0x7F, 0x00}, 0)));
+    }
+
+    private static URL characteristic(String uuid) {
+        String fullUUID = uuid.length() == 4 ? "0000" + uuid + "-0000-1000-8000-00805f9b34fb" : uuid;
+        return DEVICE.copyWithService("0000180f-0000-1000-8000-00805f9b34fb").copyWithCharacteristic(fullUUID);
+    }
+
+}
@@ -2,9 +2,11 @@ package org.sputnikdev.bluetooth.manager.transport;
 
 import org.junit.Test;
 
+import java.util.EnumSet;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType.*;
 
@@ -33,6 +35,18 @@ public class CharacteristicAccessTypeTest {
         assertEquals(INDICATE, fromBitField(0b00100000));
         assertEquals(AUTHENTICATED_SIGNED_WRITES, fromBitField(0b01000000));
         assertEquals(EXTENDED_PROPERTIES, fromBitField(0b10000000));
+        assertNull(fromBitField(0b00000011));
+        assertNull(fromBitField(0x100));
+        assertNull(fromBitField(-1));
+    }
+
+    @Test
+    public void testToBitField() throws Exception {
+        assertEquals(0, toBitField(EnumSet.noneOf(CharacteristicAccessType.class)));
+        assertEquals(0b00011010, toBitField(EnumSet.of(NOTIFY, READ, WRITE)));
+        for (int flags = 0; flags < 256; flags++) {
+            assertEquals(flags, toBitField(parse(flags)));
+        }
     }
 
     @Test
@@ -54,5 +68,9 @@ public class CharacteristicAccessTypeTest {
         assertTrue(actual.contains(NOTIFY));
         assertTrue(actual.contains(READ));
         assertTrue(actual.contains(WRITE));
+
+        // parsed sets can be modified by callers without affecting each other
+        actual.add(INDICATE);
+        assertEquals(EnumSet.of(NOTIFY, READ, WRITE), parse(notifyReadAndWrite));
     }
 }
\ No newline at end of file